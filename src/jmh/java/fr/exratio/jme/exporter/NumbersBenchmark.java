@@ -0,0 +1,108 @@
+package fr.exratio.jme.exporter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import fr.exratio.jme.exporter.benchmark.FloatsBenchmark;
+import fr.exratio.jme.exporter.benchmark.FloatsBenchmark.Values;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The parse and format of a json array of floats by {@link DecimalParser} and {@link
+ * ShortestDecimal}, against Jackson's getFloatValue and writeNumber(float) they replace. It is in
+ * the package of those classes to call them. The allocations of the gc profiler divided by the
+ * count of values are the bytes allocated per value, the parser and generator of each operation
+ * included.
+ *
+ * @author NyouB
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NumbersBenchmark {
+
+  @Param public Values values;
+
+  private final JsonFactory factory = new JsonFactory();
+  private float[] floats;
+  private byte[] bytes;
+  private ByteArrayOutputStream out;
+  private final char[] chars = new char[ShortestDecimal.MAX_LENGTH];
+
+  @Setup
+  public void setup() throws IOException {
+    floats = FloatsBenchmark.values(values);
+    out = new ByteArrayOutputStream();
+    writeJackson();
+    bytes = out.toByteArray();
+  }
+
+  @Benchmark
+  public float parseJackson() throws IOException {
+    float res = 0;
+    try (JsonParser parser = factory.createParser(bytes)) {
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        if (parser.currentToken() == JsonToken.VALUE_NUMBER_FLOAT) {
+          res += parser.getFloatValue();
+        }
+      }
+    }
+    return res;
+  }
+
+  @Benchmark
+  public float parseDecimal() throws IOException {
+    float res = 0;
+    try (JsonParser parser = factory.createParser(bytes)) {
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        if (parser.currentToken() == JsonToken.VALUE_NUMBER_FLOAT) {
+          res += DecimalParser.floatValue(parser);
+        }
+      }
+    }
+    return res;
+  }
+
+  @Benchmark
+  public int writeJackson() throws IOException {
+    out.reset();
+    try (JsonGenerator generator = factory.createGenerator(out)) {
+      generator.writeStartArray();
+      for (float value : floats) {
+        generator.writeNumber(value);
+      }
+      generator.writeEndArray();
+    }
+    return out.size();
+  }
+
+  @Benchmark
+  public int writeShortest() throws IOException {
+    out.reset();
+    try (JsonGenerator generator = factory.createGenerator(out)) {
+      generator.writeStartArray();
+      for (float value : floats) {
+        generator.writeRawValue(chars, 0, ShortestDecimal.format(value, chars, 0));
+      }
+      generator.writeEndArray();
+    }
+    return out.size();
+  }
+}
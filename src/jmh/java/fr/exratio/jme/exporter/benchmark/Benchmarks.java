@@ -0,0 +1,63 @@
+package fr.exratio.jme.exporter.benchmark;
+
+import com.jme3.asset.AssetManager;
+import fr.exratio.jme.exporter.benchmark.FloatsBenchmark.Encoding;
+import fr.exratio.jme.exporter.benchmark.FloatsBenchmark.Series;
+import fr.exratio.jme.exporter.benchmark.FloatsBenchmark.Values;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.openjdk.jmh.Main;
+
+/**
+ * Prints the output size of each benchmarked save, which does not change between iterations, then
+ * runs the JMH benchmarks with the given JMH arguments.
+ *
+ * @author NyouB
+ */
+public class Benchmarks {
+
+  private Benchmarks() {}
+
+  public static void main(String[] args) throws Exception {
+    printOutputSizes();
+    Main.main(args);
+  }
+
+  static void printOutputSizes() throws IOException {
+    AssetManager assetManager = Scene.assetManager();
+    System.out.println("# Output size (bytes)");
+    System.out.printf("%-12s", "scene");
+    for (Format format : Format.values()) {
+      if (format != Format.JSON_STREAMING) {
+        System.out.printf("%14s", format);
+      }
+    }
+    System.out.println();
+    for (Scene scene : Scene.values()) {
+      System.out.printf("%-12s", scene);
+      for (Format format : Format.values()) {
+        if (format != Format.JSON_STREAMING) {
+          System.out.printf("%14d", format.save(scene.create(assetManager)).length);
+        }
+      }
+      System.out.println();
+    }
+    System.out.println();
+    System.out.printf("%-12s", "values");
+    for (Encoding encoding : Encoding.values()) {
+      System.out.printf("%14s", encoding);
+    }
+    System.out.println();
+    for (Values values : Values.values()) {
+      System.out.printf("%-12s", values);
+      for (Encoding encoding : Encoding.values()) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FloatsBenchmark.exporter(encoding)
+            .save(new Series(FloatsBenchmark.values(values), false), out);
+        System.out.printf("%14d", out.size());
+      }
+      System.out.println();
+    }
+    System.out.println();
+  }
+}
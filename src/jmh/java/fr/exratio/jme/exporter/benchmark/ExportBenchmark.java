@@ -0,0 +1,56 @@
+package fr.exratio.jme.exporter.benchmark;
+
+import com.jme3.export.JmeExporter;
+import com.jme3.export.Savable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The save of each scene in each format. The output stream is reused, so the allocations of the
+ * gc profiler are the ones of the exporter.
+ *
+ * @author NyouB
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExportBenchmark {
+
+  @Param public Scene scene;
+
+  @Param({"JSON", "JSON_BINARY", "J3O", "XML"})
+  public Format format;
+
+  private Savable savable;
+  private JmeExporter exporter;
+  private ByteArrayOutputStream out;
+
+  @Setup
+  public void setup() throws IOException {
+    savable = scene.create(Scene.assetManager());
+    exporter = format.exporter();
+    out = new ByteArrayOutputStream(format.save(savable).length);
+  }
+
+  @Benchmark
+  public int save() throws IOException {
+    out.reset();
+    exporter.save(savable, out);
+    return out.size();
+  }
+}
@@ -0,0 +1,190 @@
+package fr.exratio.jme.exporter.benchmark;
+
+import com.jme3.anim.AnimClip;
+import com.jme3.anim.AnimComposer;
+import com.jme3.anim.AnimTrack;
+import com.jme3.anim.TransformTrack;
+import com.jme3.export.InputCapsule;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.OutputCapsule;
+import com.jme3.export.Savable;
+import com.jme3.math.Quaternion;
+import com.jme3.scene.Node;
+import com.jme3.terrain.geomipmap.TerrainQuad;
+import com.jme3.util.BufferUtils;
+import fr.exratio.jme.exporter.JsonExporter;
+import fr.exratio.jme.exporter.JsonImporter;
+import fr.exratio.jme.exporter.Quantization;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The save and load of a float array or buffer in each encoding: json numbers, a base64 payload,
+ * the xor encoding and half floats. The values are the height map of the TerrainQuad of the
+ * terrain scene, and the key times and the rotations of the clip of the animation one. The
+ * allocations of the gc profiler divided by the count of values are the bytes allocated per value.
+ *
+ * @author NyouB
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FloatsBenchmark {
+
+  public enum Values {
+    HEIGHTS,
+    KEY_TIMES,
+    /** The x, y, z and w of the rotations of every track, track after track. */
+    ROTATIONS
+  }
+
+  public enum Encoding {
+    TEXT,
+    BASE64,
+    XOR,
+    HALF_FLOAT
+  }
+
+  @Param public Values values;
+
+  @Param({"false", "true"})
+  public boolean buffer;
+
+  @Param public Encoding encoding;
+
+  private Series series;
+  private JsonExporter exporter;
+  private ByteArrayOutputStream out;
+  private byte[] bytes;
+
+  @Setup
+  public void setup() throws IOException {
+    series = new Series(values(values), buffer);
+    exporter = exporter(encoding);
+    out = new ByteArrayOutputStream();
+    exporter.save(series, out);
+    bytes = out.toByteArray();
+  }
+
+  @Benchmark
+  public int save() throws IOException {
+    out.reset();
+    exporter.save(series, out);
+    return out.size();
+  }
+
+  @Benchmark
+  public Savable loadTree() throws IOException {
+    return new JsonImporter().load(new ByteArrayInputStream(bytes));
+  }
+
+  @Benchmark
+  public Savable loadStreaming() throws IOException {
+    JsonImporter importer = new JsonImporter();
+    importer.setStreaming(true);
+    return importer.load(new ByteArrayInputStream(bytes));
+  }
+
+  public static float[] values(Values values) {
+    if (values == Values.HEIGHTS) {
+      return ((TerrainQuad) Scene.TERRAIN.create(null)).getHeightMap();
+    }
+    Node animated = (Node) Scene.ANIMATION.create(null);
+    AnimClip clip = animated.getControl(AnimComposer.class).getAnimClip(Scene.CLIP);
+    AnimTrack[] tracks = clip.getTracks();
+    if (values == Values.KEY_TIMES) {
+      return ((TransformTrack) tracks[0]).getTimes();
+    }
+    int count = 0;
+    for (AnimTrack track : tracks) {
+      count += ((TransformTrack) track).getRotations().length;
+    }
+    float[] res = new float[count * 4];
+    int i = 0;
+    for (AnimTrack track : tracks) {
+      for (Quaternion rotation : ((TransformTrack) track).getRotations()) {
+        res[i++] = rotation.getX();
+        res[i++] = rotation.getY();
+        res[i++] = rotation.getZ();
+        res[i++] = rotation.getW();
+      }
+    }
+    return res;
+  }
+
+  static JsonExporter exporter(Encoding encoding) {
+    JsonExporter res = new JsonExporter();
+    switch (encoding) {
+      case BASE64:
+        res.setBinaryArrays(true);
+        break;
+      case XOR:
+        res.setXorFloats(Series.VALUES, true);
+        break;
+      case HALF_FLOAT:
+        res.setQuantization(Series.VALUES, Quantization.halfFloat());
+        break;
+      default:
+        break;
+    }
+    return res;
+  }
+
+  /** A float array or buffer. */
+  public static class Series implements Savable {
+
+    static final String VALUES = "values";
+
+    private float[] array;
+    private FloatBuffer buffer;
+
+    public Series() {}
+
+    Series(float[] values, boolean buffer) {
+      if (buffer) {
+        this.buffer = BufferUtils.createFloatBuffer(values);
+      } else {
+        this.array = values;
+      }
+    }
+
+    @Override
+    public void write(JmeExporter ex) throws IOException {
+      OutputCapsule capsule = ex.getCapsule(this);
+      capsule.write(buffer != null, "buffer", false);
+      if (buffer != null) {
+        capsule.write(buffer, VALUES, null);
+      } else {
+        capsule.write(array, VALUES, null);
+      }
+    }
+
+    @Override
+    public void read(JmeImporter im) throws IOException {
+      InputCapsule capsule = im.getCapsule(this);
+      if (capsule.readBoolean("buffer", false)) {
+        buffer = capsule.readFloatBuffer(VALUES, null);
+      } else {
+        array = capsule.readFloatArray(VALUES, null);
+      }
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package fr.exratio.jme.exporter.benchmark;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.Savable;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.export.binary.BinaryImporter;
+import com.jme3.export.xml.XMLExporter;
+import com.jme3.export.xml.XMLImporter;
+import fr.exratio.jme.exporter.JsonExporter;
+import fr.exratio.jme.exporter.JsonImporter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * The ways to save and load a scene: the json ones, and the j3o and xml formats of jME as the
+ * baselines.
+ *
+ * @author NyouB
+ */
+public enum Format {
+  /** The default json export, loaded as a tree. */
+  JSON {
+    @Override
+    JmeExporter exporter() {
+      return new JsonExporter();
+    }
+
+    @Override
+    Savable load(byte[] bytes, AssetManager assetManager) throws IOException {
+      JsonImporter importer = new JsonImporter();
+      importer.setAssetManager(assetManager);
+      return importer.load(new ByteArrayInputStream(bytes));
+    }
+  },
+  /** The default json export, loaded by the streaming reader. */
+  JSON_STREAMING {
+    @Override
+    JmeExporter exporter() {
+      return new JsonExporter();
+    }
+
+    @Override
+    Savable load(byte[] bytes, AssetManager assetManager) throws IOException {
+      JsonImporter importer = new JsonImporter();
+      importer.setAssetManager(assetManager);
+      importer.setStreaming(true);
+      return importer.load(new ByteArrayInputStream(bytes));
+    }
+  },
+  /** The arrays and buffers written as binary payloads, loaded by the streaming reader. */
+  JSON_BINARY {
+    @Override
+    JmeExporter exporter() {
+      JsonExporter res = new JsonExporter();
+      res.setBinaryArrays(true);
+      return res;
+    }
+
+    @Override
+    Savable load(byte[] bytes, AssetManager assetManager) throws IOException {
+      return JSON_STREAMING.load(bytes, assetManager);
+    }
+  },
+  /** The binary format of jME. */
+  J3O {
+    @Override
+    JmeExporter exporter() {
+      return new BinaryExporter();
+    }
+
+    @Override
+    Savable load(byte[] bytes, AssetManager assetManager) throws IOException {
+      BinaryImporter importer = new BinaryImporter();
+      importer.setAssetManager(assetManager);
+      return importer.load(bytes);
+    }
+  },
+  /** The xml format of jME. */
+  XML {
+    @Override
+    JmeExporter exporter() {
+      return new XMLExporter();
+    }
+
+    @Override
+    Savable load(byte[] bytes, AssetManager assetManager) throws IOException {
+      XMLImporter importer = new XMLImporter();
+      importer.setAssetManager(assetManager);
+      return importer.load(new ByteArrayInputStream(bytes));
+    }
+  };
+
+  /** @return a new exporter, which may be reused for the next saves */
+  abstract JmeExporter exporter();
+
+  abstract Savable load(byte[] bytes, AssetManager assetManager) throws IOException;
+
+  byte[] save(Savable savable) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    exporter().save(savable, out);
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,49 @@
+package fr.exratio.jme.exporter.benchmark;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.export.Savable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The load of each scene in each format, from the bytes of a save done once.
+ *
+ * @author NyouB
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImportBenchmark {
+
+  @Param public Scene scene;
+
+  @Param public Format format;
+
+  private AssetManager assetManager;
+  private byte[] bytes;
+
+  @Setup
+  public void setup() throws IOException {
+    assetManager = Scene.assetManager();
+    bytes = format.save(scene.create(assetManager));
+  }
+
+  @Benchmark
+  public Savable load() throws IOException {
+    return format.load(bytes, assetManager);
+  }
+}
@@ -0,0 +1,62 @@
+package fr.exratio.jme.exporter.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jme3.export.Savable;
+import fr.exratio.jme.exporter.ObjectMapperHelper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The write and read of the scenes through a mapper of {@link ObjectMapperHelper#defaultMapper()}.
+ * The materials are left out: the mapper reads them without an asset manager.
+ *
+ * @author NyouB
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+
+  @Param({"BOXES", "SPHERE", "TERRAIN", "HIERARCHY", "ANIMATION"})
+  public Scene scene;
+
+  private ObjectMapper mapper;
+  private Savable savable;
+  private ByteArrayOutputStream out;
+  private byte[] bytes;
+
+  @Setup
+  public void setup() throws IOException {
+    mapper = ObjectMapperHelper.defaultMapper();
+    savable = scene.create(null);
+    bytes = mapper.writeValueAsBytes(savable);
+    out = new ByteArrayOutputStream(bytes.length);
+  }
+
+  @Benchmark
+  public int write() throws IOException {
+    out.reset();
+    mapper.writeValue(out, savable);
+    return out.size();
+  }
+
+  @Benchmark
+  public Savable read() throws IOException {
+    return mapper.readValue(bytes, Savable.class);
+  }
+}
@@ -0,0 +1,195 @@
+package fr.exratio.jme.exporter.benchmark;
+
+import com.jme3.anim.AnimClip;
+import com.jme3.anim.AnimComposer;
+import com.jme3.anim.AnimTrack;
+import com.jme3.anim.TransformTrack;
+import com.jme3.asset.AssetInfo;
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.AssetLoadException;
+import com.jme3.asset.AssetLocator;
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.asset.plugins.UrlAssetInfo;
+import com.jme3.export.Savable;
+import com.jme3.material.Material;
+import com.jme3.material.RenderState.BlendMode;
+import com.jme3.material.plugins.J3MLoader;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import com.jme3.scene.shape.Sphere;
+import com.jme3.terrain.geomipmap.TerrainQuad;
+import java.io.IOException;
+import java.net.URL;
+
+/**
+ * The scenes exported and imported by the benchmarks, built in memory with fixed sizes and values
+ * so the results of two releases can be compared.
+ *
+ * @author NyouB
+ */
+public enum Scene {
+  /** A node of 1000 geometries, each with its own box mesh. */
+  BOXES {
+    @Override
+    Savable create(AssetManager assetManager) {
+      Node res = new Node("boxes");
+      for (int i = 0; i < 1000; i++) {
+        Geometry box = new Geometry("box" + i, new Box(0.5f, 0.5f, 0.5f));
+        box.setLocalTranslation(i % 10, i / 10 % 10, i / 100);
+        res.attachChild(box);
+      }
+      return res;
+    }
+  },
+  /** A single sphere mesh of 65536 vertices. */
+  SPHERE {
+    @Override
+    Savable create(AssetManager assetManager) {
+      return new Geometry("sphere", new Sphere(256, 256, 1));
+    }
+  },
+  /** A terrain of 513x513 heights in patches of 65x65. */
+  TERRAIN {
+    @Override
+    Savable create(AssetManager assetManager) {
+      return new TerrainQuad("terrain", 65, TERRAIN_SIZE, heights(TERRAIN_SIZE));
+    }
+  },
+  /** A chain of 128 nodes, each with 8 leaf nodes. */
+  HIERARCHY {
+    @Override
+    Savable create(AssetManager assetManager) {
+      Node res = new Node("level0");
+      Node parent = res;
+      for (int i = 0; i < 128; i++) {
+        for (int j = 0; j < 8; j++) {
+          Node leaf = new Node("leaf" + i + "_" + j);
+          leaf.setLocalTranslation(j, 0, 1);
+          leaf.setLocalRotation(
+              new Quaternion().fromAngleAxis(j * FastMath.QUARTER_PI, Vector3f.UNIT_Y));
+          leaf.setUserData("index", j);
+          parent.attachChild(leaf);
+        }
+        Node child = new Node("level" + (i + 1));
+        parent.attachChild(child);
+        parent = child;
+      }
+      return res;
+    }
+  },
+  /** 256 geometries sharing a box mesh, each with its own lighting material. */
+  MATERIALS {
+    @Override
+    Savable create(AssetManager assetManager) {
+      Node res = new Node("materials");
+      Mesh mesh = new Box(0.5f, 0.5f, 0.5f);
+      for (int i = 0; i < 256; i++) {
+        Material material = new Material(assetManager, "Common/MatDefs/Light/Lighting.j3md");
+        material.setBoolean("UseMaterialColors", true);
+        material.setColor("Ambient", new ColorRGBA(0.1f, 0.1f, 0.1f, 1));
+        material.setColor("Diffuse", new ColorRGBA(i / 256f, 0.5f, 1 - i / 256f, 1));
+        material.setColor("Specular", ColorRGBA.White);
+        material.setFloat("Shininess", i % 64 + 1);
+        if (i % 2 == 0) {
+          material.getAdditionalRenderState().setBlendMode(BlendMode.Alpha);
+        }
+        Geometry geometry = new Geometry("geometry" + i, mesh);
+        geometry.setMaterial(material);
+        geometry.setLocalTranslation(i % 16, i / 16, 0);
+        res.attachChild(geometry);
+      }
+      return res;
+    }
+  },
+  /** 32 joints animated by a clip of 30 seconds at 30 keys per second. */
+  ANIMATION {
+    @Override
+    Savable create(AssetManager assetManager) {
+      Node res = new Node("animated");
+      AnimComposer composer = new AnimComposer();
+      res.addControl(composer);
+      composer.addAnimClip(clip(res, 32, 900));
+      return res;
+    }
+  };
+
+  static final int TERRAIN_SIZE = 513;
+  static final String CLIP = "walk";
+
+  abstract Savable create(AssetManager assetManager);
+
+  /** @return an asset manager loading the material definitions of jme3-core */
+  static AssetManager assetManager() {
+    DesktopAssetManager res = new DesktopAssetManager();
+    res.registerLocator("/", ClassLoaderLocator.class);
+    res.registerLoader(J3MLoader.class, "j3m", "j3md");
+    return res;
+  }
+
+  /** @return the smooth heights of a terrain, row by row */
+  static float[] heights(int size) {
+    float[] res = new float[size * size];
+    for (int z = 0; z < size; z++) {
+      for (int x = 0; x < size; x++) {
+        res[z * size + x] =
+            40 * FastMath.sin(x * 0.011f) * FastMath.cos(z * 0.017f)
+                + 6 * FastMath.sin((x + z) * 0.07f)
+                + FastMath.sin(x * 0.9f) * FastMath.sin(z * 0.8f);
+      }
+    }
+    return res;
+  }
+
+  /** @return a clip with a transform track per joint, the joints being attached to the root */
+  static AnimClip clip(Node root, int jointCount, int keyCount) {
+    float[] times = new float[keyCount];
+    for (int i = 0; i < keyCount; i++) {
+      times[i] = i / 30f;
+    }
+    AnimTrack[] tracks = new AnimTrack[jointCount];
+    for (int j = 0; j < jointCount; j++) {
+      Node joint = new Node("joint" + j);
+      root.attachChild(joint);
+      Vector3f[] translations = new Vector3f[keyCount];
+      Quaternion[] rotations = new Quaternion[keyCount];
+      Vector3f[] scales = new Vector3f[keyCount];
+      for (int i = 0; i < keyCount; i++) {
+        float angle = FastMath.sin(times[i] * (j + 1) * 0.5f);
+        translations[i] = new Vector3f(j, angle * 0.1f, 0);
+        rotations[i] = new Quaternion().fromAngleAxis(angle, Vector3f.UNIT_X);
+        scales[i] = new Vector3f(1, 1, 1);
+      }
+      tracks[j] = new TransformTrack(joint, times, translations, rotations, scales);
+    }
+    AnimClip res = new AnimClip(CLIP);
+    res.setTracks(tracks);
+    return res;
+  }
+
+  /** Locates the assets in the classpath without the desktop system of jme3-desktop. */
+  public static class ClassLoaderLocator implements AssetLocator {
+
+    @Override
+    public void setRootPath(String rootPath) {}
+
+    @Override
+    public AssetInfo locate(AssetManager manager, AssetKey key) {
+      URL url = Scene.class.getClassLoader().getResource(key.getName());
+      if (url == null) {
+        return null;
+      }
+      try {
+        return UrlAssetInfo.create(manager, key, url);
+      } catch (IOException e) {
+        throw new AssetLoadException("Failed to open " + url, e);
+      }
+    }
+  }
+}
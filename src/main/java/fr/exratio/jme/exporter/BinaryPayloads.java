@@ -0,0 +1,594 @@
+package fr.exratio.jme.exporter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.POJONode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.jme3.util.BufferUtils;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Encode and decode numeric arrays and buffers as a compact binary payload.
+ *
+ * <p>A payload is a json object holding the element type and the little-endian raw bytes of the
+ * values in base64: {"type":"f32","length":12,"data":"AADAPw..."}. It stays plain json while
+ * avoiding the cost of writing and parsing every number as text. The byte length comes before the
+ * data so a streaming reader can decode it into a buffer of the right size.
+ *
+ * <p>When a sidecar file is written, the bytes go to the sidecar instead and the payload only
+ * holds their position in it: {"type":"f32","offset":1024,"length":4096}.
+ *
+ * <p>Floats written with a lossy {@link Quantization} are half floats, or 8 or 16-bit integers
+ * following the minimum and the maximum value as two f32, and are read back as floats.
+ *
+ * <p>Integers may also be written as {@link DeltaVarints}, and floats as {@link XorFloats}, which
+ * are read back as the same values.
+ */
+final class BinaryPayloads {
+
+  static final String TYPE = "type";
+  static final String DATA = "data";
+  static final String OFFSET = "offset";
+  static final String LENGTH = "length";
+
+  static final String INT8 = "i8";
+  static final String INT16 = "i16";
+  static final String INT32 = "i32";
+  static final String INT64 = "i64";
+  static final String FLOAT32 = "f32";
+  static final String FLOAT64 = "f64";
+  static final String FLOAT16 = "f16";
+  static final String FIXED8 = "q8";
+  static final String FIXED16 = "q16";
+  static final String DELTA32 = "d32";
+  static final String DELTA16 = "d16";
+  static final String XOR32 = "x32";
+
+  private BinaryPayloads() {}
+
+  /** @return true if the node is a payload object rather than a json array of numbers */
+  static boolean isPayload(JsonNode node) {
+    return node != null && node.isObject() && node.has(TYPE);
+  }
+
+  static void write(JsonGenerator generator, float[] values, SidecarWriter sidecar)
+      throws IOException {
+    write(generator, FLOAT32, FloatBuffer.wrap(values), values.length * 4, sidecar);
+  }
+
+  static void write(JsonGenerator generator, double[] values, SidecarWriter sidecar)
+      throws IOException {
+    write(generator, FLOAT64, DoubleBuffer.wrap(values), values.length * 8, sidecar);
+  }
+
+  static void write(JsonGenerator generator, int[] values, SidecarWriter sidecar)
+      throws IOException {
+    write(generator, INT32, IntBuffer.wrap(values), values.length * 4, sidecar);
+  }
+
+  static void write(JsonGenerator generator, long[] values, SidecarWriter sidecar)
+      throws IOException {
+    write(generator, INT64, LongBuffer.wrap(values), values.length * 8, sidecar);
+  }
+
+  static void write(JsonGenerator generator, short[] values, SidecarWriter sidecar)
+      throws IOException {
+    write(generator, INT16, ShortBuffer.wrap(values), values.length * 2, sidecar);
+  }
+
+  /** Buffers are written from 0 to their limit without moving their position. */
+  static void write(JsonGenerator generator, FloatBuffer buffer, SidecarWriter sidecar)
+      throws IOException {
+    FloatBuffer source = buffer.duplicate();
+    source.rewind();
+    write(generator, FLOAT32, source, source.remaining() * 4, sidecar);
+  }
+
+  /** Write the values with a half float or fixed point quantization. */
+  static void write(
+      JsonGenerator generator, FloatBuffer buffer, Quantization quantization, SidecarWriter sidecar)
+      throws IOException {
+    FloatBuffer source = buffer.duplicate();
+    source.rewind();
+    int count = source.remaining();
+    ByteBuffer bytes;
+    String type;
+    if (quantization.getKind() == Quantization.Kind.HALF_FLOAT) {
+      type = FLOAT16;
+      bytes = ByteBuffer.allocate(count * 2).order(ByteOrder.LITTLE_ENDIAN);
+      for (int i = 0; i < count; i++) {
+        bytes.putShort(Quantization.toHalf(source.get(i)));
+      }
+    } else {
+      boolean wide = quantization.getPrecision() == 16;
+      type = wide ? FIXED16 : FIXED8;
+      float min = Float.POSITIVE_INFINITY;
+      float max = Float.NEGATIVE_INFINITY;
+      // NaN values are left out of the range
+      for (int i = 0; i < count; i++) {
+        float value = source.get(i);
+        if (value < min) {
+          min = value;
+        }
+        if (value > max) {
+          max = value;
+        }
+      }
+      if (min > max) {
+        min = 0;
+        max = 0;
+      }
+      bytes = ByteBuffer.allocate(8 + count * (wide ? 2 : 1)).order(ByteOrder.LITTLE_ENDIAN);
+      bytes.putFloat(min).putFloat(max);
+      for (int i = 0; i < count; i++) {
+        int fixed = quantization.toFixed(source.get(i), min, max);
+        if (wide) {
+          bytes.putShort((short) fixed);
+        } else {
+          bytes.put((byte) fixed);
+        }
+      }
+    }
+    bytes.flip();
+    write(generator, type, bytes, bytes.remaining(), sidecar);
+  }
+
+  /** Write the values xor encoded. */
+  static void writeXor(JsonGenerator generator, FloatBuffer buffer, SidecarWriter sidecar)
+      throws IOException {
+    ByteBuffer bytes = XorFloats.encode(buffer);
+    write(generator, XOR32, bytes, bytes.remaining(), sidecar);
+  }
+
+  /** Write the values as varint deltas. */
+  static void writeDeltas(JsonGenerator generator, IntBuffer buffer, SidecarWriter sidecar)
+      throws IOException {
+    ByteBuffer bytes = DeltaVarints.encode(buffer);
+    write(generator, DELTA32, bytes, bytes.remaining(), sidecar);
+  }
+
+  static void writeDeltas(JsonGenerator generator, ShortBuffer buffer, SidecarWriter sidecar)
+      throws IOException {
+    ByteBuffer bytes = DeltaVarints.encode(buffer);
+    write(generator, DELTA16, bytes, bytes.remaining(), sidecar);
+  }
+
+  static void write(JsonGenerator generator, IntBuffer buffer, SidecarWriter sidecar)
+      throws IOException {
+    IntBuffer source = buffer.duplicate();
+    source.rewind();
+    write(generator, INT32, source, source.remaining() * 4, sidecar);
+  }
+
+  static void write(JsonGenerator generator, ShortBuffer buffer, SidecarWriter sidecar)
+      throws IOException {
+    ShortBuffer source = buffer.duplicate();
+    source.rewind();
+    write(generator, INT16, source, source.remaining() * 2, sidecar);
+  }
+
+  static void write(JsonGenerator generator, ByteBuffer buffer, SidecarWriter sidecar)
+      throws IOException {
+    ByteBuffer source = buffer.duplicate();
+    source.rewind();
+    write(generator, INT8, source, source.remaining(), sidecar);
+  }
+
+  private static void write(
+      JsonGenerator generator, String type, Buffer source, int byteLength, SidecarWriter sidecar)
+      throws IOException {
+    generator.writeStartObject();
+    generator.writeStringField(TYPE, type);
+    if (sidecar != null) {
+      generator.writeNumberField(OFFSET, sidecar.append(source));
+      generator.writeNumberField(LENGTH, byteLength);
+    } else {
+      generator.writeNumberField(LENGTH, byteLength);
+      generator.writeFieldName(DATA);
+      if (generator instanceof TokenBuffer) {
+        // a token buffer cannot stream binary data, it keeps a copy of the bytes anyway
+        byte[] bytes = new byte[byteLength];
+        new DataInputStream(new LittleEndianInputStream(source)).readFully(bytes);
+        generator.writeBinary(bytes);
+      } else {
+        generator.writeBinary(new LittleEndianInputStream(source), byteLength);
+      }
+    }
+    generator.writeEndObject();
+  }
+
+  /**
+   * Read the payload object the parser is on. The base64 data of a payload holding its length is
+   * decoded from the parser straight into a buffer of that length, direct if asked, without going
+   * through a string or an intermediate array.
+   */
+  static JsonNode read(JsonParser parser, boolean direct) throws IOException {
+    ObjectNode res = JsonNodeFactory.instance.objectNode();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      JsonToken token = parser.nextToken();
+      if (DATA.equals(name) && token == JsonToken.VALUE_STRING && res.has(LENGTH)) {
+        res.set(DATA, new POJONode(decode(parser, res.get(LENGTH).asInt(), direct)));
+      } else if (token == JsonToken.VALUE_EMBEDDED_OBJECT
+          && parser.getEmbeddedObject() instanceof ByteBuffer) {
+        // decoded when buffered by the streaming reader
+        res.set(name, new POJONode(parser.getEmbeddedObject()));
+      } else {
+        res.set(name, parser.readValueAsTree());
+      }
+    }
+    return res;
+  }
+
+  /** @return the base64 data the parser is on, decoded into a little-endian buffer */
+  static ByteBuffer decode(JsonParser parser, int length, boolean direct) throws IOException {
+    if (length < 0) {
+      throw new IOException("Invalid payload length " + length);
+    }
+    ByteBuffer res = direct ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+    int read = parser.readBinaryValue(new ByteBufferOutputStream(res));
+    if (read != length) {
+      throw new IOException("The payload holds " + read + " bytes instead of " + length);
+    }
+    res.flip();
+    return res.order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /** @return the bytes decoded by {@link #read(JsonParser, boolean)}, or null */
+  private static ByteBuffer decoded(JsonNode payload) {
+    JsonNode data = payload.get(DATA);
+    if (data instanceof POJONode && ((POJONode) data).getPojo() instanceof ByteBuffer) {
+      return ((ByteBuffer) ((POJONode) data).getPojo()).duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+    return null;
+  }
+
+  /** @return the raw values of the payload, in little-endian order */
+  static ByteBuffer bytes(JsonNode payload, SidecarReader sidecar) throws IOException {
+    if (payload.has(OFFSET)) {
+      if (sidecar == null) {
+        throw new IOException("The payload is stored in a sidecar file that was not loaded");
+      }
+      return sidecar.slice(payload.get(OFFSET).asLong(), payload.get(LENGTH).asInt());
+    }
+    ByteBuffer decoded = decoded(payload);
+    if (decoded != null) {
+      return decoded;
+    }
+    JsonNode data = payload.get(DATA);
+    byte[] bytes = data == null ? new byte[0] : data.binaryValue();
+    return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  static String type(JsonNode payload) {
+    return payload.get(TYPE).asText();
+  }
+
+  static float[] readFloats(JsonNode payload, SidecarReader sidecar) throws IOException {
+    ByteBuffer bytes = bytes(payload, sidecar);
+    String type = type(payload);
+    if (FLOAT32.equals(type)) {
+      float[] res = new float[bytes.remaining() / 4];
+      bytes.asFloatBuffer().get(res);
+      return res;
+    }
+    if (XOR32.equals(type)) {
+      return XorFloats.decode(bytes);
+    }
+    if (FLOAT16.equals(type)) {
+      float[] res = new float[bytes.remaining() / 2];
+      for (int i = 0; i < res.length; i++) {
+        res[i] = Quantization.fromHalf(bytes.getShort());
+      }
+      return res;
+    }
+    if (FIXED8.equals(type) || FIXED16.equals(type)) {
+      boolean wide = FIXED16.equals(type);
+      float min = bytes.getFloat();
+      float max = bytes.getFloat();
+      float[] res = new float[bytes.remaining() / (wide ? 2 : 1)];
+      for (int i = 0; i < res.length; i++) {
+        int fixed = wide ? bytes.getShort() & 0xffff : bytes.get() & 0xff;
+        res[i] = Quantization.fromFixed(fixed, min, max, wide ? 16 : 8);
+      }
+      return res;
+    }
+    double[] values = readDoubles(bytes, type);
+    float[] res = new float[values.length];
+    for (int i = 0; i < values.length; i++) {
+      res[i] = (float) values[i];
+    }
+    return res;
+  }
+
+  static double[] readDoubles(JsonNode payload, SidecarReader sidecar) throws IOException {
+    return readDoubles(bytes(payload, sidecar), type(payload));
+  }
+
+  static int[] readInts(JsonNode payload, SidecarReader sidecar) throws IOException {
+    ByteBuffer bytes = bytes(payload, sidecar);
+    String type = type(payload);
+    if (INT32.equals(type)) {
+      int[] res = new int[bytes.remaining() / 4];
+      bytes.asIntBuffer().get(res);
+      return res;
+    }
+    if (DELTA32.equals(type) || DELTA16.equals(type)) {
+      return DeltaVarints.decodeInts(bytes);
+    }
+    long[] values = readLongs(bytes, type);
+    int[] res = new int[values.length];
+    for (int i = 0; i < values.length; i++) {
+      res[i] = (int) values[i];
+    }
+    return res;
+  }
+
+  static short[] readShorts(JsonNode payload, SidecarReader sidecar) throws IOException {
+    ByteBuffer bytes = bytes(payload, sidecar);
+    String type = type(payload);
+    if (INT16.equals(type)) {
+      short[] res = new short[bytes.remaining() / 2];
+      bytes.asShortBuffer().get(res);
+      return res;
+    }
+    if (DELTA32.equals(type) || DELTA16.equals(type)) {
+      return DeltaVarints.decodeShorts(bytes);
+    }
+    long[] values = readLongs(bytes, type);
+    short[] res = new short[values.length];
+    for (int i = 0; i < values.length; i++) {
+      res[i] = (short) values[i];
+    }
+    return res;
+  }
+
+  static long[] readLongs(JsonNode payload, SidecarReader sidecar) throws IOException {
+    return readLongs(bytes(payload, sidecar), type(payload));
+  }
+
+  static byte[] readBytes(JsonNode payload, SidecarReader sidecar) throws IOException {
+    ByteBuffer bytes = bytes(payload, sidecar);
+    String type = type(payload);
+    if (INT8.equals(type)) {
+      if (bytes.hasArray() && bytes.arrayOffset() == 0 && bytes.array().length == bytes.limit()) {
+        return bytes.array();
+      }
+      byte[] res = new byte[bytes.remaining()];
+      bytes.get(res);
+      return res;
+    }
+    long[] values = readLongs(bytes, type);
+    byte[] res = new byte[values.length];
+    for (int i = 0; i < values.length; i++) {
+      res[i] = (byte) values[i];
+    }
+    return res;
+  }
+
+  /*
+   * Buffers of the payload own type are filled by a bulk put from a little-endian view of the
+   * decoded bytes, without going through a primitive array. Direct buffers stored in a sidecar
+   * opened with views are returned as a view of the mapping without any copy.
+   */
+
+  static FloatBuffer readFloatBuffer(JsonNode payload, SidecarReader sidecar, boolean direct)
+      throws IOException {
+    if (!FLOAT32.equals(type(payload))) {
+      float[] values = readFloats(payload, sidecar);
+      return NioBuffers.floatBuffer(values, values.length, direct);
+    }
+    FloatBuffer source = bytes(payload, sidecar).asFloatBuffer();
+    if (direct && isView(payload, sidecar)) {
+      return source;
+    }
+    FloatBuffer res =
+        direct
+            ? BufferUtils.createFloatBuffer(source.remaining())
+            : FloatBuffer.allocate(source.remaining());
+    res.put(source);
+    if (direct) {
+      res.flip();
+    }
+    return res;
+  }
+
+  static IntBuffer readIntBuffer(JsonNode payload, SidecarReader sidecar, boolean direct)
+      throws IOException {
+    if (!INT32.equals(type(payload))) {
+      int[] values = readInts(payload, sidecar);
+      return NioBuffers.intBuffer(values, values.length, direct);
+    }
+    IntBuffer source = bytes(payload, sidecar).asIntBuffer();
+    if (direct && isView(payload, sidecar)) {
+      return source;
+    }
+    IntBuffer res =
+        direct
+            ? BufferUtils.createIntBuffer(source.remaining())
+            : IntBuffer.allocate(source.remaining());
+    res.put(source);
+    if (direct) {
+      res.flip();
+    }
+    return res;
+  }
+
+  static ShortBuffer readShortBuffer(JsonNode payload, SidecarReader sidecar, boolean direct)
+      throws IOException {
+    if (!INT16.equals(type(payload))) {
+      short[] values = readShorts(payload, sidecar);
+      return NioBuffers.shortBuffer(values, values.length, direct);
+    }
+    ShortBuffer source = bytes(payload, sidecar).asShortBuffer();
+    if (direct && isView(payload, sidecar)) {
+      return source;
+    }
+    ShortBuffer res =
+        direct
+            ? BufferUtils.createShortBuffer(source.remaining())
+            : ShortBuffer.allocate(source.remaining());
+    res.put(source);
+    if (direct) {
+      res.flip();
+    }
+    return res;
+  }
+
+  static ByteBuffer readByteBuffer(JsonNode payload, SidecarReader sidecar, boolean direct)
+      throws IOException {
+    if (!INT8.equals(type(payload))) {
+      byte[] values = readBytes(payload, sidecar);
+      return NioBuffers.byteBuffer(values, values.length, direct);
+    }
+    ByteBuffer source = bytes(payload, sidecar);
+    if (direct && isView(payload, sidecar)) {
+      return source;
+    }
+    if (!direct && isDecodedHeap(payload)) {
+      // at the end of its data in the default order, like the copies
+      source.position(source.limit());
+      return source.order(ByteOrder.BIG_ENDIAN);
+    }
+    ByteBuffer res =
+        direct
+            ? BufferUtils.createByteBuffer(source.remaining())
+            : ByteBuffer.allocate(source.remaining());
+    res.put(source);
+    if (direct) {
+      res.flip();
+    }
+    return res;
+  }
+
+  /**
+   * Views are only handed out when the little-endian bytes match the native byte order, on a
+   * sidecar opened with views or on a direct buffer the data was decoded into.
+   */
+  private static boolean isView(JsonNode payload, SidecarReader sidecar) {
+    if (ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN) {
+      return false;
+    }
+    if (payload.has(OFFSET)) {
+      return sidecar != null && sidecar.isViews();
+    }
+    ByteBuffer decoded = decoded(payload);
+    return decoded != null && decoded.isDirect();
+  }
+
+  /** A heap byte buffer the data was decoded into can be handed out as it is. */
+  private static boolean isDecodedHeap(JsonNode payload) {
+    ByteBuffer decoded = decoded(payload);
+    return decoded != null && !decoded.isDirect();
+  }
+
+  /** Writes the decoded base64 data into a buffer of the expected size. */
+  private static final class ByteBufferOutputStream extends OutputStream {
+
+    private final ByteBuffer target;
+
+    ByteBufferOutputStream(ByteBuffer target) {
+      this.target = target;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if (!target.hasRemaining()) {
+        throw new IOException("The payload holds more bytes than its length");
+      }
+      target.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (target.remaining() < len) {
+        throw new IOException("The payload holds more bytes than its length");
+      }
+      target.put(b, off, len);
+    }
+  }
+
+  private static double[] readDoubles(ByteBuffer bytes, String type) throws IOException {
+    if (FLOAT64.equals(type)) {
+      double[] res = new double[bytes.remaining() / 8];
+      bytes.asDoubleBuffer().get(res);
+      return res;
+    }
+    if (FLOAT32.equals(type)) {
+      FloatBuffer source = bytes.asFloatBuffer();
+      double[] res = new double[source.remaining()];
+      for (int i = 0; i < res.length; i++) {
+        res[i] = source.get(i);
+      }
+      return res;
+    }
+    long[] values = readLongs(bytes, type);
+    double[] res = new double[values.length];
+    for (int i = 0; i < values.length; i++) {
+      res[i] = values[i];
+    }
+    return res;
+  }
+
+  private static long[] readLongs(ByteBuffer bytes, String type) throws IOException {
+    long[] res;
+    switch (type) {
+      case INT8:
+        res = new long[bytes.remaining()];
+        for (int i = 0; i < res.length; i++) {
+          res[i] = bytes.get(i);
+        }
+        return res;
+      case INT16:
+        ShortBuffer shorts = bytes.asShortBuffer();
+        res = new long[shorts.remaining()];
+        for (int i = 0; i < res.length; i++) {
+          res[i] = shorts.get(i);
+        }
+        return res;
+      case INT32:
+        IntBuffer ints = bytes.asIntBuffer();
+        res = new long[ints.remaining()];
+        for (int i = 0; i < res.length; i++) {
+          res[i] = ints.get(i);
+        }
+        return res;
+      case INT64:
+        res = new long[bytes.remaining() / 8];
+        bytes.asLongBuffer().get(res);
+        return res;
+      case DELTA32:
+      case DELTA16:
+        int[] deltas = DeltaVarints.decodeInts(bytes);
+        res = new long[deltas.length];
+        for (int i = 0; i < res.length; i++) {
+          res[i] = deltas[i];
+        }
+        return res;
+      case FLOAT32:
+      case FLOAT64:
+        double[] values = readDoubles(bytes, type);
+        res = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+          res[i] = (long) values[i];
+        }
+        return res;
+      default:
+        throw new IOException("Unknown payload type " + type);
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package fr.exratio.jme.exporter;
+
+import fr.exratio.jme.exporter.CompressedOutputStream.Block;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the blocks of a {@link Compression} container, the header excluded. A background thread
+ * reads and decompresses the next blocks while the current one is parsed.
+ */
+final class CompressedInputStream extends InputStream {
+
+  // the block being read and two decompressed ahead
+  private static final int BLOCK_COUNT = 3;
+  private static final Block END = new Block(0);
+
+  private final DataInputStream in;
+  private final BlockingQueue<Block> free = new ArrayBlockingQueue<>(BLOCK_COUNT);
+  private final BlockingQueue<Block> full = new ArrayBlockingQueue<>(BLOCK_COUNT + 1);
+  private final Thread worker;
+  private volatile IOException failure;
+  private Block block;
+  private int position;
+
+  CompressedInputStream(InputStream in) {
+    this.in = new DataInputStream(in);
+    for (int i = 0; i < BLOCK_COUNT; i++) {
+      free.add(new Block(CompressedOutputStream.BLOCK_SIZE));
+    }
+    worker = new Thread(this::decompress, "jme-json-decompression");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!fill()) {
+      return -1;
+    }
+    return block.data[position++] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!fill()) {
+      return -1;
+    }
+    int count = Math.min(len, block.length - position);
+    System.arraycopy(block.data, position, b, off, count);
+    position += count;
+    return count;
+  }
+
+  @Override
+  public int available() {
+    return block == null || block == END ? 0 : block.length - position;
+  }
+
+  /** Stop the decompression. The underlying stream is left open. */
+  @Override
+  public void close() {
+    worker.interrupt();
+  }
+
+  /** @return false at the end of the container */
+  private boolean fill() throws IOException {
+    while (block == null || (block != END && position == block.length)) {
+      if (block != null) {
+        free.add(block);
+      }
+      try {
+        block = full.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      }
+      position = 0;
+    }
+    if (block == END && failure != null) {
+      throw new IOException("Decompression failed", failure);
+    }
+    return block != END;
+  }
+
+  private void decompress() {
+    Inflater inflater = new Inflater();
+    byte[] compressed = new byte[0];
+    try {
+      int rawLength;
+      while ((rawLength = in.readInt()) != 0) {
+        if (rawLength < 0 || rawLength > CompressedOutputStream.BLOCK_SIZE) {
+          throw new IOException("Invalid block length " + rawLength);
+        }
+        int length = in.readInt();
+        if (length <= 0 || length > CompressedOutputStream.MAX_COMPRESSED_SIZE) {
+          throw new IOException("Invalid compressed block length " + length);
+        }
+        if (compressed.length < length) {
+          compressed = new byte[length];
+        }
+        in.readFully(compressed, 0, length);
+        Block raw = free.take();
+        inflater.reset();
+        inflater.setInput(compressed, 0, length);
+        raw.length = 0;
+        while (raw.length < rawLength && !inflater.finished()) {
+          int count = inflater.inflate(raw.data, raw.length, rawLength - raw.length);
+          if (count == 0 && inflater.needsInput()) {
+            throw new IOException("Truncated compressed block");
+          }
+          raw.length += count;
+        }
+        if (raw.length < rawLength) {
+          throw new IOException("Compressed block shorter than its length " + rawLength);
+        }
+        full.put(raw);
+      }
+    } catch (InterruptedException e) {
+      // closed by the reader
+      return;
+    } catch (IOException e) {
+      failure = e;
+    } catch (DataFormatException e) {
+      failure = new IOException(e);
+    } finally {
+      inflater.end();
+    }
+    full.add(END);
+  }
+}
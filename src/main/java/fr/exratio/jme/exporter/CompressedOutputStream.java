@@ -0,0 +1,206 @@
+package fr.exratio.jme.exporter;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a {@link Compression} container. The written bytes are cut in blocks which a background
+ * thread compresses and writes, each one as its raw length, its compressed length and its data. An
+ * empty block ends the container.
+ */
+final class CompressedOutputStream extends OutputStream {
+
+  static final int BLOCK_SIZE = 1 << 18;
+  // more than a block can take once compressed, whatever its data
+  static final int MAX_COMPRESSED_SIZE = BLOCK_SIZE + BLOCK_SIZE / 8;
+  // the block being filled, the one being compressed and one waiting for it
+  private static final int BLOCK_COUNT = 3;
+
+  private final DataOutputStream out;
+  private final Compression compression;
+  private final BlockingQueue<Block> free = new ArrayBlockingQueue<>(BLOCK_COUNT);
+  private final BlockingQueue<Block> full = new ArrayBlockingQueue<>(BLOCK_COUNT);
+  private final Thread worker;
+  private volatile IOException failure;
+  private Block block;
+  private boolean finished;
+
+  CompressedOutputStream(OutputStream out, Compression compression) throws IOException {
+    this.out = new DataOutputStream(out);
+    this.compression = compression;
+    this.out.write(Compression.MAGIC);
+    this.out.write(Compression.VERSION);
+    this.out.write(compression.getId());
+    for (int i = 0; i < BLOCK_COUNT; i++) {
+      free.add(new Block(BLOCK_SIZE));
+    }
+    block = free.remove();
+    worker = new Thread(this::compress, "jme-json-compression");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    if (block.length == block.data.length) {
+      submit();
+    }
+    block.data[block.length++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      if (block.length == block.data.length) {
+        submit();
+      }
+      int count = Math.min(len, block.data.length - block.length);
+      System.arraycopy(b, off, block.data, block.length, count);
+      block.length += count;
+      off += count;
+      len -= count;
+    }
+  }
+
+  /** The blocks are only written when full or on {@link #finish()}. */
+  @Override
+  public void flush() throws IOException {
+    checkFailure();
+  }
+
+  /** Write the remaining data and the end of the container, without closing the stream. */
+  void finish() throws IOException {
+    if (finished) {
+      return;
+    }
+    finished = true;
+    if (block.length > 0) {
+      submit();
+    }
+    // an empty block stops the worker
+    block.length = 0;
+    put(full, block);
+    try {
+      worker.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+    checkFailure();
+    out.flush();
+  }
+
+  /**
+   * Stop the worker without writing the end of the container, when the save failed. Does nothing
+   * once the worker stopped.
+   */
+  void abort() {
+    finished = true;
+    worker.interrupt();
+    try {
+      worker.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      finish();
+    } finally {
+      out.close();
+    }
+  }
+
+  private void submit() throws IOException {
+    checkFailure();
+    put(full, block);
+    try {
+      block = free.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+    block.length = 0;
+  }
+
+  private void checkFailure() throws IOException {
+    if (failure != null) {
+      throw new IOException("Compression failed", failure);
+    }
+  }
+
+  private static void put(BlockingQueue<Block> queue, Block block) throws IOException {
+    try {
+      queue.put(block);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+
+  private void compress() {
+    Deflater deflater = compression.newDeflater();
+    byte[] compressed = new byte[MAX_COMPRESSED_SIZE];
+    try {
+      Block raw;
+      while ((raw = full.take()).length > 0) {
+        if (failure == null) {
+          try {
+            compressed = compress(deflater, raw, compressed);
+          } catch (IOException e) {
+            failure = e;
+          }
+        }
+        // keep taking the blocks after a failure so the writer is never blocked
+        free.put(raw);
+      }
+      if (failure == null) {
+        out.writeInt(0);
+        out.writeInt(0);
+      }
+    } catch (InterruptedException e) {
+      failure = new InterruptedIOException();
+    } catch (IOException e) {
+      failure = e;
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private byte[] compress(Deflater deflater, Block raw, byte[] compressed) throws IOException {
+    deflater.reset();
+    deflater.setInput(raw.data, 0, raw.length);
+    deflater.finish();
+    int length = 0;
+    while (!deflater.finished()) {
+      if (length == compressed.length) {
+        byte[] larger = new byte[compressed.length * 2];
+        System.arraycopy(compressed, 0, larger, 0, length);
+        compressed = larger;
+      }
+      length += deflater.deflate(compressed, length, compressed.length - length);
+    }
+    out.writeInt(raw.length);
+    out.writeInt(length);
+    out.write(compressed, 0, length);
+    return compressed;
+  }
+
+  /** A buffer and the length of its data. */
+  static final class Block {
+
+    byte[] data;
+    int length;
+
+    Block(int capacity) {
+      data = new byte[capacity];
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package fr.exratio.jme.exporter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The compression of the documents saved by {@link JsonExporter}.
+ *
+ * <p>A compressed document is a container: the "JMEZ" magic bytes, a format version and the codec
+ * id, followed by blocks compressed independently on a background thread. {@link JsonImporter}
+ * detects the container when loading, as well as plain gzip streams.
+ *
+ * @author NyouB
+ */
+public enum Compression {
+  /** No container, the document is written as is. */
+  NONE(0, Deflater.NO_COMPRESSION),
+  /** Deflate blocks at the default level. */
+  DEFLATE(1, Deflater.DEFAULT_COMPRESSION),
+  /** Deflate blocks at the fastest level, when the save latency matters more than the size. */
+  FAST(2, Deflater.BEST_SPEED);
+
+  static final byte[] MAGIC = {'J', 'M', 'E', 'Z'};
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = MAGIC.length + 2;
+  private static final int GZIP_MAGIC_0 = 0x1f;
+  private static final int GZIP_MAGIC_1 = 0x8b;
+
+  private final int id;
+  private final int level;
+
+  Compression(int id, int level) {
+    this.id = id;
+    this.level = level;
+  }
+
+  int getId() {
+    return id;
+  }
+
+  Deflater newDeflater() {
+    return new Deflater(level);
+  }
+
+  static Compression fromId(int id) throws IOException {
+    for (Compression compression : values()) {
+      if (compression.id == id && compression != NONE) {
+        return compression;
+      }
+    }
+    throw new IOException("Unknown compression codec " + id);
+  }
+
+  /**
+   * @return a stream of the decompressed document when the stream starts with a compressed
+   *     container or a gzip header, otherwise a stream of the document as is
+   */
+  static InputStream decompress(InputStream in) throws IOException {
+    // closing the returned stream releases the inflater, the given stream is left to the caller
+    InputStream unclosed =
+        new FilterInputStream(in) {
+          @Override
+          public void close() {}
+        };
+    PushbackInputStream pushback = new PushbackInputStream(unclosed, HEADER_SIZE);
+    byte[] header = new byte[HEADER_SIZE];
+    int length = 0;
+    int read;
+    while (length < header.length
+        && (read = pushback.read(header, length, header.length - length)) > 0) {
+      length += read;
+    }
+    if (length == HEADER_SIZE && startsWithMagic(header)) {
+      if (header[MAGIC.length] != VERSION) {
+        throw new IOException("Unknown compressed container version " + header[MAGIC.length]);
+      }
+      // every codec is a deflate one, the id is only checked
+      fromId(header[MAGIC.length + 1]);
+      return new CompressedInputStream(pushback);
+    }
+    if (length > 0) {
+      pushback.unread(header, 0, length);
+    }
+    if (length >= 2
+        && (header[0] & 0xff) == GZIP_MAGIC_0
+        && (header[1] & 0xff) == GZIP_MAGIC_1) {
+      return new GZIPInputStream(pushback);
+    }
+    return pushback;
+  }
+
+  private static boolean startsWithMagic(byte[] header) {
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (header[i] != MAGIC[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,118 @@
+package fr.exratio.jme.exporter;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+
+/**
+ * Parses the floating point numbers of a {@link JsonParser} from its characters. Jackson parses
+ * them from a new string, which is one allocation per number of a vertex buffer.
+ *
+ * <p>A number of at most 15 significant digits and a power of ten of at most 22 is the product or
+ * quotient of two exact doubles, which is correctly rounded. Every float written by {@link
+ * Float#toString} is such a number in practice. The other numbers are left to Jackson.
+ */
+final class DecimalParser {
+
+  // the powers of ten which are exact doubles
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+    1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+  // the significands below 2^53 are exact doubles
+  private static final int MAX_DIGITS = 15;
+  private static final int MAX_EXPONENT_DIGITS = 4;
+
+  private DecimalParser() {}
+
+  /** @return the value of the number the parser is on */
+  static double doubleValue(JsonParser parser) throws IOException {
+    if (parser.currentToken() == JsonToken.VALUE_NUMBER_FLOAT) {
+      double res =
+          parse(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+      if (!Double.isNaN(res)) {
+        return res;
+      }
+    }
+    return parser.getValueAsDouble();
+  }
+
+  static float floatValue(JsonParser parser) throws IOException {
+    return (float) doubleValue(parser);
+  }
+
+  /** @return the value of a json number, or NaN when it has to be parsed by Jackson */
+  static double parse(char[] chars, int offset, int length) {
+    int end = offset + length;
+    int i = offset;
+    boolean negative = i < end && chars[i] == '-';
+    if (negative) {
+      i++;
+    }
+    long significand = 0;
+    int digits = 0;
+    int exponent = 0;
+    boolean fraction = false;
+    boolean anyDigit = false;
+    for (; i < end; i++) {
+      char c = chars[i];
+      if (c >= '0' && c <= '9') {
+        anyDigit = true;
+        if (significand == 0 && c == '0') {
+          // leading zeros are not significant
+          if (fraction) {
+            exponent--;
+          }
+          continue;
+        }
+        if (++digits > MAX_DIGITS) {
+          return Double.NaN;
+        }
+        significand = significand * 10 + (c - '0');
+        if (fraction) {
+          exponent--;
+        }
+      } else if (c == '.' && !fraction) {
+        fraction = true;
+      } else {
+        break;
+      }
+    }
+    if (!anyDigit) {
+      return Double.NaN;
+    }
+    if (i < end) {
+      if (chars[i] != 'e' && chars[i] != 'E') {
+        return Double.NaN;
+      }
+      i++;
+      boolean negativeExponent = i < end && chars[i] == '-';
+      if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+        i++;
+      }
+      if (i == end || end - i > MAX_EXPONENT_DIGITS) {
+        return Double.NaN;
+      }
+      int value = 0;
+      for (; i < end; i++) {
+        char c = chars[i];
+        if (c < '0' || c > '9') {
+          return Double.NaN;
+        }
+        value = value * 10 + (c - '0');
+      }
+      exponent += negativeExponent ? -value : value;
+    }
+    if (significand == 0) {
+      return negative ? -0.0 : 0.0;
+    }
+    if (exponent < -22 || exponent > 22) {
+      return Double.NaN;
+    }
+    double res =
+        exponent >= 0
+            ? significand * POWERS_OF_TEN[exponent]
+            : significand / POWERS_OF_TEN[-exponent];
+    return negative ? -res : res;
+  }
+}
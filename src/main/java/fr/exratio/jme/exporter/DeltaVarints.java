@@ -0,0 +1,112 @@
+package fr.exratio.jme.exporter;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+/**
+ * Encodes integers as the difference with the previous one, zigzag mapped to a positive number and
+ * packed in as few bytes as needed, 7 bits per byte with the high bit set on all but the last.
+ * Index buffers mostly reference vertices close to the previous ones, so most indices take a
+ * single byte instead of two or four.
+ *
+ * <p>The bytes start with the count of values, packed the same way. The differences are computed
+ * on 32-bit integers, wrapping around on overflow, so every sequence is encoded losslessly.
+ */
+final class DeltaVarints {
+
+  /** Shorter arrays are smaller written as they are than as a payload. */
+  static final int MIN_COUNT = 16;
+
+  private DeltaVarints() {}
+
+  /** @return the encoded values of the buffer, from 0 to its limit */
+  static ByteBuffer encode(IntBuffer buffer) {
+    IntBuffer source = buffer.duplicate();
+    source.rewind();
+    return encode(source, source.remaining());
+  }
+
+  static ByteBuffer encode(ShortBuffer buffer) {
+    ShortBuffer source = buffer.duplicate();
+    source.rewind();
+    return encode(source, source.remaining());
+  }
+
+  private static ByteBuffer encode(Buffer source, int count) {
+    // most deltas take one or two bytes, the array grows for the others
+    byte[] bytes = new byte[count * 2 + 10];
+    int pos = putVarint(bytes, 0, count);
+    IntBuffer ints = source instanceof IntBuffer ? (IntBuffer) source : null;
+    ShortBuffer shorts = ints == null ? (ShortBuffer) source : null;
+    int previous = 0;
+    for (int i = 0; i < count; i++) {
+      int value = ints != null ? ints.get(i) : shorts.get(i);
+      int delta = value - previous;
+      previous = value;
+      if (bytes.length - pos < 5) {
+        bytes = Arrays.copyOf(bytes, bytes.length * 2);
+      }
+      pos = putVarint(bytes, pos, (delta << 1) ^ (delta >> 31));
+    }
+    return ByteBuffer.wrap(bytes, 0, pos);
+  }
+
+  private static int putVarint(byte[] bytes, int pos, int value) {
+    while ((value & ~0x7f) != 0) {
+      bytes[pos++] = (byte) (value | 0x80);
+      value >>>= 7;
+    }
+    bytes[pos++] = (byte) value;
+    return pos;
+  }
+
+  static int[] decodeInts(ByteBuffer bytes) throws IOException {
+    int[] res = new int[getCount(bytes)];
+    int previous = 0;
+    for (int i = 0; i < res.length; i++) {
+      int zigzag = getVarint(bytes);
+      previous += (zigzag >>> 1) ^ -(zigzag & 1);
+      res[i] = previous;
+    }
+    return res;
+  }
+
+  static short[] decodeShorts(ByteBuffer bytes) throws IOException {
+    short[] res = new short[getCount(bytes)];
+    int previous = 0;
+    for (int i = 0; i < res.length; i++) {
+      int zigzag = getVarint(bytes);
+      previous += (zigzag >>> 1) ^ -(zigzag & 1);
+      res[i] = (short) previous;
+    }
+    return res;
+  }
+
+  /** Every value takes at least a byte, a larger count is a corrupted payload. */
+  private static int getCount(ByteBuffer bytes) throws IOException {
+    int res = getVarint(bytes);
+    if (res < 0 || res > bytes.remaining()) {
+      throw new IOException("Invalid count of values " + res);
+    }
+    return res;
+  }
+
+  private static int getVarint(ByteBuffer bytes) throws IOException {
+    int res = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      if (!bytes.hasRemaining()) {
+        break;
+      }
+      byte b = bytes.get();
+      res |= (b & 0x7f) << shift;
+      if (b >= 0) {
+        return res;
+      }
+    }
+    throw new IOException("Truncated or malformed varint");
+  }
+}
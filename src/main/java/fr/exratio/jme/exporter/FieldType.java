@@ -0,0 +1,36 @@
+package fr.exratio.jme.exporter;
+
+/**
+ * The type of the values a savable writes or reads through a capsule, as reported to a {@link
+ * SavableListener}. The arrays, two-dimensional arrays and lists of a type are one array type.
+ *
+ * @author NyouB
+ */
+public enum FieldType {
+  BYTE,
+  SHORT,
+  INT,
+  LONG,
+  FLOAT,
+  DOUBLE,
+  BOOLEAN,
+  STRING,
+  ENUM,
+  BIT_SET,
+  SAVABLE,
+  BYTE_ARRAY,
+  SHORT_ARRAY,
+  INT_ARRAY,
+  LONG_ARRAY,
+  FLOAT_ARRAY,
+  DOUBLE_ARRAY,
+  BOOLEAN_ARRAY,
+  STRING_ARRAY,
+  SAVABLE_ARRAY,
+  /** The savable maps, by savable, string or int key. */
+  SAVABLE_MAP,
+  BYTE_BUFFER,
+  SHORT_BUFFER,
+  INT_BUFFER,
+  FLOAT_BUFFER
+}
@@ -0,0 +1,88 @@
+package fr.exratio.jme.exporter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.jme3.export.Savable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The class names and string values of a document, written once in its header and referred to by
+ * their index in the body.
+ *
+ * <p>A document with a dictionary is an object: {"classes":[...],"strings":[...],"root":[classId,
+ * {fields}]}. Savables are written as [classId, {fields}], string and enum fields as the id of
+ * their value.
+ */
+final class JsonDictionary {
+
+  static final String CLASSES = "classes";
+  static final String STRINGS = "strings";
+  static final String ROOT = "root";
+
+  private final List<String> classNames = new ArrayList<>();
+  private final List<String> strings = new ArrayList<>();
+  // written documents: the id of each entry
+  private final Map<String, Integer> classIds = new HashMap<>();
+  private final Map<String, Integer> stringIds = new HashMap<>();
+
+  int classId(String className) {
+    return id(className, classNames, classIds);
+  }
+
+  int stringId(String value) {
+    return id(value, strings, stringIds);
+  }
+
+  private static int id(String value, List<String> values, Map<String, Integer> ids) {
+    Integer id = ids.get(value);
+    if (id == null) {
+      id = values.size();
+      values.add(value);
+      ids.put(value, id);
+    }
+    return id;
+  }
+
+  /** Write the "classes" and "strings" fields of the header. */
+  void write(JsonGenerator generator) throws IOException {
+    generator.writeArrayFieldStart(CLASSES);
+    for (String className : classNames) {
+      generator.writeString(className);
+    }
+    generator.writeEndArray();
+    generator.writeArrayFieldStart(STRINGS);
+    for (String value : strings) {
+      generator.writeString(value);
+    }
+    generator.writeEndArray();
+  }
+
+  /** Read a field of the header. */
+  void read(String field, JsonNode values) {
+    List<String> target =
+        CLASSES.equals(field) ? classNames : STRINGS.equals(field) ? strings : null;
+    if (target == null || values == null) {
+      return;
+    }
+    for (JsonNode value : values) {
+      target.add(value.asText());
+    }
+  }
+
+  String string(int id) {
+    return strings.get(id);
+  }
+
+  String className(int id) {
+    return classNames.get(id);
+  }
+
+  /** @return a new instance of the class with the given id */
+  Savable newInstance(int id) throws Exception {
+    return SavableFactory.newInstance(classNames.get(id));
+  }
+}
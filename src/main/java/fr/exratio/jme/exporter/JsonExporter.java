@@ -35,15 +35,23 @@ package fr.exratio.jme.exporter;
 import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.jme3.export.JmeExporter;
 import com.jme3.export.OutputCapsule;
 import com.jme3.export.Savable;
+import com.jme3.scene.VertexBuffer;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * A Json serialisation exporter which can take advantage of the existing serialization methods
@@ -54,6 +62,22 @@ public class JsonExporter implements JmeExporter {
 
   private JsonOutputCapsule jsonOutputCapsule;
   private JsonGenerator jsonGenerator;
+  private boolean binaryArrays = false;
+  private boolean sidecar = false;
+  private boolean dictionary = false;
+  private SidecarWriter sidecarWriter;
+  private JsonFactory factory = new JsonFactory();
+  private Compression compression = Compression.NONE;
+  private boolean parallel = false;
+  private boolean omitDefaults = false;
+  private boolean deltaIntegers = false;
+  private Set<String> xorFloatFields = new HashSet<>();
+  private Map<String, Quantization> fieldQuantizations = new HashMap<>();
+  private Map<VertexBuffer.Type, Quantization> bufferQuantizations =
+      new EnumMap<>(VertexBuffer.Type.class);
+  private SavableListener listener;
+  // the bytes of the save in progress, counted when there is a listener
+  private CountingOutputStream counter;
 
   public JsonExporter() {
     JsonFactory jfactory = new JsonFactory();
@@ -87,31 +111,294 @@ public class JsonExporter implements JmeExporter {
 
   @Override
   public void save(Savable object, OutputStream f) throws IOException {
+    if (compression != Compression.NONE) {
+      CompressedOutputStream compressed = new CompressedOutputStream(f, compression);
+      try {
+        write(object, compressed);
+        compressed.finish();
+      } finally {
+        // the worker is already stopped unless the save failed
+        compressed.abort();
+      }
+    } else {
+      write(object, f);
+    }
+  }
 
+  private void write(Savable object, OutputStream f) throws IOException {
+    counter = listener != null ? new CountingOutputStream(f) : null;
     // Initialize Document when saving so we don't retain state of previous export
-    JsonFactory jfactory = new JsonFactory();
-    JsonGenerator jGenerator = jfactory.createGenerator(f, JsonEncoding.UTF8);
-    jsonOutputCapsule = new JsonOutputCapsule(jGenerator, this);
-    jsonOutputCapsule.write(object.getClass().getCanonicalName(), "type", null);
-    object.write(this);
+    jsonGenerator = factory.createGenerator(counter != null ? counter : f, JsonEncoding.UTF8);
+    if (dictionary) {
+      // ids are given while writing: the body is buffered so the dictionary can come first
+      JsonDictionary header = new JsonDictionary();
+      TokenBuffer body = new TokenBuffer(null, false);
+      jsonOutputCapsule = new JsonOutputCapsule(body, this, header);
+      jsonOutputCapsule.writeSavableElem(object);
+      jsonGenerator.writeStartObject();
+      header.write(jsonGenerator);
+      jsonGenerator.writeFieldName(JsonDictionary.ROOT);
+      // the buffered floats are formatted as when written directly
+      new JsonOutputCapsule(jsonGenerator, this).copy(body);
+      jsonGenerator.writeEndObject();
+    } else {
+      jsonOutputCapsule = new JsonOutputCapsule(jsonGenerator, this);
+      // the root is written as [className, {fields}], the way JsonImporter.load() reads it
+      jsonOutputCapsule.writeSavableElem(object);
+    }
+    jsonGenerator.flush();
     f.flush();
+    counter = null;
   }
 
   @Override
   public void save(Savable object, File f) throws IOException {
+    if (!sidecar) {
+      FileOutputStream fos = new FileOutputStream(f);
+      try {
+        save(object, fos);
+      } finally {
+        fos.close();
+      }
+      return;
+    }
+    File sidecarFile = SidecarWriter.sidecarFile(f);
+    if (sidecarFile.equals(f.getAbsoluteFile())) {
+      throw new IOException("The sidecar of " + f + " would overwrite it");
+    }
     FileOutputStream fos = new FileOutputStream(f);
     try {
+      sidecarWriter = new SidecarWriter(sidecarFile);
       save(object, fos);
     } finally {
       fos.close();
+      if (sidecarWriter != null) {
+        sidecarWriter.close();
+        sidecarWriter = null;
+      }
     }
   }
 
   @Override
   public OutputCapsule getCapsule(Savable object) {
+    if (listener != null) {
+      // some savables give null rather than themselves
+      return new ListenedOutputCapsule(
+          jsonOutputCapsule, jsonOutputCapsule.getSavableType(), listener);
+    }
     return jsonOutputCapsule;
   }
 
+  /**
+   * When enabled, numeric arrays and NIO buffers are written as a base64 payload of their
+   * little-endian raw bytes tagged with the element type, instead of a json array of numbers.
+   */
+  public boolean isBinaryArrays() {
+    return binaryArrays;
+  }
+
+  public void setBinaryArrays(boolean binaryArrays) {
+    this.binaryArrays = binaryArrays;
+  }
+
+  /**
+   * When enabled, {@link #save(Savable, File)} writes the NIO buffers and the large numeric arrays
+   * to a .bin file next to the json one, which only keeps their offset and length in it. Saving
+   * to a stream is not affected.
+   */
+  public boolean isSidecar() {
+    return sidecar;
+  }
+
+  public void setSidecar(boolean sidecar) {
+    this.sidecar = sidecar;
+  }
+
+  /**
+   * When enabled, class names and string values are written once in a header dictionary and
+   * referred to by id in the document. The document is buffered until the header is written.
+   */
+  public boolean isDictionary() {
+    return dictionary;
+  }
+
+  public void setDictionary(boolean dictionary) {
+    this.dictionary = dictionary;
+  }
+
+  /**
+   * The factory of the generators used to save to streams and files: a JsonFactory by default, or
+   * the SmileFactory or CBORFactory of the jackson-dataformat modules for a binary document. Those
+   * formats write the binary arrays as raw bytes instead of base64.
+   */
+  public JsonFactory getFactory() {
+    return factory;
+  }
+
+  public void setFactory(JsonFactory factory) {
+    this.factory = factory;
+  }
+
+  /**
+   * The compression of the saved documents, none by default. A compressed document is detected by
+   * {@link JsonImporter}. The sidecar file is never compressed so it can be memory mapped.
+   */
+  public Compression getCompression() {
+    return compression;
+  }
+
+  public void setCompression(Compression compression) {
+    this.compression = compression == null ? Compression.NONE : compression;
+  }
+
+  /**
+   * When enabled, the elements of the large savable arrays and lists, such as the children of a
+   * node, are written by the common fork/join pool. The document is the same as when written
+   * sequentially, but the savables have to support being written concurrently. Saving with a
+   * sidecar file is always sequential.
+   */
+  public boolean isParallel() {
+    return parallel;
+  }
+
+  public void setParallel(boolean parallel) {
+    this.parallel = parallel;
+  }
+
+  /**
+   * When enabled, the fields equal to the default value given to the capsule are not written:
+   * primitives and strings compared by value, arrays by content, savables, lists, maps and
+   * buffers by identity. They are read back as that same default value.
+   */
+  public boolean isOmitDefaults() {
+    return omitDefaults;
+  }
+
+  public void setOmitDefaults(boolean omitDefaults) {
+    this.omitDefaults = omitDefaults;
+  }
+
+  /**
+   * When enabled, the int and short arrays and buffers, such as index buffers, are written as the
+   * varint encoded differences between consecutive values, in a binary payload. Index buffers
+   * mostly reference nearby vertices, so most of their values take a single byte. Arrays of less
+   * than 16 values are written as usual.
+   */
+  public boolean isDeltaIntegers() {
+    return deltaIntegers;
+  }
+
+  public void setDeltaIntegers(boolean deltaIntegers) {
+    this.deltaIntegers = deltaIntegers;
+  }
+
+  /**
+   * When enabled for a field name, the float arrays and buffers of that name are written xor
+   * encoded in a binary payload, which is lossless. It fits smooth series whose neighbouring
+   * values share most of their bits, such as heightmaps or the times of animation keys
+   * ("times").
+   */
+  public boolean isXorFloats(String name) {
+    return !xorFloatFields.isEmpty() && xorFloatFields.contains(name);
+  }
+
+  public void setXorFloats(String name, boolean xorFloats) {
+    if (xorFloats) {
+      xorFloatFields.add(name);
+    } else {
+      xorFloatFields.remove(name);
+    }
+  }
+
+  /**
+   * The lossy quantization of the float fields, arrays and buffers with the given name, or null
+   * when they are written exactly.
+   */
+  public Quantization getQuantization(String name) {
+    return fieldQuantizations.get(name);
+  }
+
+  /** Set the quantization of the fields with the given name, or remove it when null. */
+  public void setQuantization(String name, Quantization quantization) {
+    if (quantization == null) {
+      fieldQuantizations.remove(name);
+    } else {
+      fieldQuantizations.put(name, quantization);
+    }
+  }
+
+  /**
+   * The lossy quantization of the data of the vertex buffers of the given type, such as {@link
+   * VertexBuffer.Type#Position}, or null when it is written exactly. It takes precedence over the
+   * quantization of the field name.
+   */
+  public Quantization getQuantization(VertexBuffer.Type type) {
+    return bufferQuantizations.get(type);
+  }
+
+  public void setQuantization(VertexBuffer.Type type, Quantization quantization) {
+    if (quantization == null) {
+      bufferQuantizations.remove(type);
+    } else {
+      bufferQuantizations.put(type, quantization);
+    }
+  }
+
+  /**
+   * The listener told about the savables and fields written, with the time and bytes they take.
+   * Nothing is measured when there is none, the default.
+   */
+  public SavableListener getListener() {
+    return listener;
+  }
+
+  public void setListener(SavableListener listener) {
+    this.listener = listener;
+  }
+
+  /** @return the quantization of a field, written by a vertex buffer of the type when not null */
+  Quantization getQuantization(String name, VertexBuffer.Type type) {
+    if (type != null && !bufferQuantizations.isEmpty()) {
+      Quantization res = bufferQuantizations.get(type);
+      if (res != null) {
+        return res;
+      }
+    }
+    return fieldQuantizations.isEmpty() ? null : fieldQuantizations.get(name);
+  }
+
+  /** @return an exporter with the same options, to write a chunk of a parallel export */
+  JsonExporter fork() {
+    JsonExporter res = new JsonExporter((JsonGenerator) null, null);
+    res.binaryArrays = binaryArrays;
+    res.dictionary = dictionary;
+    res.factory = factory;
+    res.omitDefaults = omitDefaults;
+    res.deltaIntegers = deltaIntegers;
+    res.xorFloatFields = xorFloatFields;
+    res.fieldQuantizations = fieldQuantizations;
+    res.bufferQuantizations = bufferQuantizations;
+    res.listener = listener;
+    return res;
+  }
+
+  /**
+   * @return the bytes written so far through the generator, or -1 if it is not the one of a save
+   *     to a stream or a file with a listener
+   */
+  long getBytesWritten(JsonGenerator generator) {
+    int buffered = generator.getOutputBuffered();
+    if (counter == null || generator != jsonGenerator || buffered < 0) {
+      return -1;
+    }
+    return counter.count + buffered;
+  }
+
+  /** @return the sidecar file of the save in progress, or null */
+  SidecarWriter getSidecarWriter() {
+    return sidecarWriter;
+  }
+
   public static JsonExporter getInstance() {
     return new JsonExporter();
   }
@@ -131,4 +418,25 @@ public class JsonExporter implements JmeExporter {
   public void setJsonGenerator(JsonGenerator jsonGenerator) {
     this.jsonGenerator = jsonGenerator;
   }
+
+  private static final class CountingOutputStream extends FilterOutputStream {
+
+    private long count;
+
+    private CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
 }
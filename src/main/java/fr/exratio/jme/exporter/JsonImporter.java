@@ -1,6 +1,8 @@
 package fr.exratio.jme.exporter;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jme3.asset.AssetInfo;
 import com.jme3.asset.AssetManager;
 import com.jme3.asset.DesktopAssetManager;
@@ -14,8 +16,24 @@ import java.io.InputStream;
 
 public class JsonImporter implements JmeImporter {
 
+  private static final ObjectMapper DEFAULT_MAPPER = new ObjectMapper();
+
   private AssetManager assetManager;
-  private JsonInputCapsule jsonInputCapsule;
+  private InputCapsule jsonInputCapsule;
+  private boolean streaming = false;
+  private boolean directBuffers = false;
+  private boolean sidecarViews = false;
+  private boolean parallel = false;
+  private boolean memoryMapped = false;
+  private SidecarReader sidecarReader;
+  private ObjectMapper objectMapper = DEFAULT_MAPPER;
+  private SavableListener listener;
+  // the class of the savable being read and the time of the ones nested in it, for the listener
+  private Class<? extends Savable> savableType;
+  private long nestedNanos;
+  // the field a savable asked its listened capsule for, reported when the capsule looks it up
+  private Class<? extends Savable> listenedClass;
+  private FieldType listenedType;
   int formatVersion = 0;
 
   public JsonImporter() {
@@ -51,14 +69,172 @@ public class JsonImporter implements JmeImporter {
     this.assetManager = assetManager;
   }
 
+  /**
+   * When enabled, {@link #load(InputStream)} reads the document with a {@link
+   * JsonStreamInputCapsule} instead of building the whole json tree first.
+   */
+  public boolean isStreaming() {
+    return streaming;
+  }
+
+  public void setStreaming(boolean streaming) {
+    this.streaming = streaming;
+  }
+
+  /**
+   * When enabled, NIO buffers are read as direct buffers ready to be sent to the GPU, with their
+   * position at 0 and their limit at the end of the data, like the ones created by {@link
+   * com.jme3.util.BufferUtils}. Otherwise they are heap buffers with their position left at the end
+   * of the data.
+   */
+  public boolean isDirectBuffers() {
+    return directBuffers;
+  }
+
+  public void setDirectBuffers(boolean directBuffers) {
+    this.directBuffers = directBuffers;
+  }
+
+  /**
+   * When enabled with direct buffers, the buffers stored in the sidecar .bin file of a document are
+   * returned as read-only views of its memory mapping instead of being copied.
+   */
+  public boolean isSidecarViews() {
+    return sidecarViews;
+  }
+
+  public void setSidecarViews(boolean sidecarViews) {
+    this.sidecarViews = sidecarViews;
+  }
+
+  /**
+   * When enabled, the elements of the large savable arrays and lists of a document read as a tree,
+   * such as the children of a node, are read by the common fork/join pool and assembled in order.
+   * The savables have to support being read concurrently. The streaming mode is always sequential.
+   */
+  public boolean isParallel() {
+    return parallel;
+  }
+
+  public void setParallel(boolean parallel) {
+    this.parallel = parallel;
+  }
+
+  /**
+   * When enabled, {@link #load(File)} and {@link #load(AssetInfo)} for an asset of a local file
+   * read the document through a memory mapping of the file instead of a stream. On some systems
+   * a mapped file cannot be deleted until the mapping is garbage collected.
+   */
+  public boolean isMemoryMapped() {
+    return memoryMapped;
+  }
+
+  public void setMemoryMapped(boolean memoryMapped) {
+    this.memoryMapped = memoryMapped;
+  }
+
+  /** @return an importer with the same options and resources, to read a chunk in parallel */
+  JsonImporter fork() {
+    JsonImporter res = new JsonImporter();
+    res.assetManager = assetManager;
+    res.directBuffers = directBuffers;
+    res.sidecarViews = sidecarViews;
+    res.sidecarReader = sidecarReader;
+    res.objectMapper = objectMapper;
+    res.formatVersion = formatVersion;
+    res.listener = listener;
+    return res;
+  }
+
+  /**
+   * The factory of the parsers used to read streams and files: a JsonFactory by default, or the
+   * SmileFactory or CBORFactory of the jackson-dataformat modules to read the documents written by
+   * a {@link JsonExporter} using the same factory.
+   */
+  public JsonFactory getFactory() {
+    return objectMapper.getFactory();
+  }
+
+  public void setFactory(JsonFactory factory) {
+    objectMapper = factory == null ? DEFAULT_MAPPER : new ObjectMapper(factory);
+  }
+
+  /**
+   * The listener told about the savables and fields read, with the time they take and whether the
+   * fields are in the document. Nothing is measured when there is none, the default.
+   */
+  public SavableListener getListener() {
+    return listener;
+  }
+
+  public void setListener(SavableListener listener) {
+    this.listener = listener;
+  }
+
+  /** Read the fields of a savable, measured when there is a listener. */
+  void readFields(Savable savable) throws IOException {
+    if (listener == null) {
+      savable.read(this);
+      return;
+    }
+    Class<? extends Savable> outerType = savableType;
+    long outerNanos = nestedNanos;
+    savableType = savable.getClass();
+    nestedNanos = 0;
+    long start = System.nanoTime();
+    try {
+      savable.read(this);
+    } finally {
+      long nanos = System.nanoTime() - start;
+      // the nested savables are reported with their own time
+      listener.savableRead(savableType, nanos - nestedNanos);
+      savableType = outerType;
+      nestedNanos = outerNanos + nanos;
+    }
+  }
+
+  /** Keep the class and the type of the field a savable asks for, until it is looked up. */
+  void listenField(Class<? extends Savable> type, FieldType fieldType) {
+    listenedClass = type;
+    listenedType = fieldType;
+  }
+
+  /**
+   * Report the field a savable asked for, when the capsule looks it up. The streaming capsule
+   * looks some fields up a second time in a tree, which are not reported again.
+   */
+  void fieldLookedUp(String name, boolean found) {
+    if (listenedType != null) {
+      FieldType fieldType = listenedType;
+      listenedType = null;
+      listener.fieldRead(listenedClass, name, fieldType, found);
+    }
+  }
+
+  ObjectMapper getObjectMapper() {
+    return objectMapper;
+  }
+
+  /** @return the sidecar file of the load in progress, or null */
+  SidecarReader getSidecarReader() {
+    return sidecarReader;
+  }
+
   public Savable load() throws IOException {
-    return jsonInputCapsule.readSavableFromCurrentArrayElem(null);
+    if (jsonInputCapsule instanceof JsonStreamInputCapsule) {
+      return ((JsonStreamInputCapsule) jsonInputCapsule).readSavableFromCurrentArrayElem(null);
+    }
+    return ((JsonInputCapsule) jsonInputCapsule).readSavableFromCurrentArrayElem(null);
   }
 
   public Savable load(AssetInfo info) throws IOException {
     assetManager = info.getManager();
     InputStream in = info.openStream();
     try {
+      // the assets of a FileLocator are read from a FileInputStream
+      if (memoryMapped && in instanceof FileInputStream) {
+        return load(new MappedInputStream(((FileInputStream) in).getChannel()));
+      }
       return load(in);
     } finally {
       if (in != null) {
@@ -67,24 +243,56 @@ public class JsonImporter implements JmeImporter {
     }
   }
 
+  /**
+   * The sidecar .bin file written next to the json one, if any, is memory mapped. The json one is
+   * too when {@link #isMemoryMapped()}.
+   */
   public Savable load(File f) throws IOException {
     FileInputStream fis = null;
+    File sidecarFile = SidecarWriter.sidecarFile(f);
     try {
+      if (sidecarFile.isFile() && !sidecarFile.equals(f.getAbsoluteFile())) {
+        sidecarReader = new SidecarReader(sidecarFile, sidecarViews);
+      }
       fis = new FileInputStream(f);
-      Savable sav = load(fis);
+      Savable sav = load(memoryMapped ? new MappedInputStream(fis.getChannel()) : fis);
       return sav;
     } finally {
       if (fis != null) fis.close();
+      if (sidecarReader != null) {
+        sidecarReader.close();
+        sidecarReader = null;
+      }
     }
   }
 
+  /**
+   * A document saved with a {@link Compression}, or gzipped, is decompressed. The stream is not
+   * closed.
+   */
   public Savable load(InputStream f) throws IOException {
-    //
-    jsonInputCapsule = new JsonInputCapsule(f, this);
-    return load();
+    InputStream in = Compression.decompress(f);
+    try {
+      if (streaming) {
+        jsonInputCapsule = new JsonStreamInputCapsule(in, this);
+      } else {
+        jsonInputCapsule = new JsonInputCapsule(in, this);
+      }
+      return load();
+    } finally {
+      in.close();
+    }
+  }
+
+  void setJsonInputCapsule(InputCapsule jsonInputCapsule) {
+    this.jsonInputCapsule = jsonInputCapsule;
   }
 
   public InputCapsule getCapsule(Savable id) {
+    if (listener != null) {
+      // some savables give null rather than themselves
+      return new ListenedInputCapsule(jsonInputCapsule, savableType, this);
+    }
     return jsonInputCapsule;
   }
 
@@ -4,9 +4,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jme3.export.InputCapsule;
 import com.jme3.export.Savable;
-import com.jme3.export.SavableClassUtil;
 import com.jme3.util.IntMap;
-import com.sun.org.apache.xerces.internal.impl.dv.util.Base64;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
@@ -14,9 +12,11 @@ import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import org.slf4j.Logger;
@@ -30,6 +30,19 @@ public class JsonInputCapsule implements InputCapsule {
   private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
   private JsonNode rootNode = null;
   private JsonNode currentNode = null;
+  // savables already read, by the id they were written with
+  private final IntMap<Savable> savables = new IntMap<>();
+  // [className, fields] of every savable of the document, indexed on the first forward reference
+  private IntMap<JsonNode[]> definitions;
+  // class names and strings of a document written with a header dictionary
+  private JsonDictionary dictionary;
+  // the capsule this one reads a chunk of a parallel import for, whose savables are shared
+  private JsonInputCapsule parent;
+  // the fields of the current node, in the order read() is expected to ask for them
+  private FieldCursor cursor;
+  private long fieldHits;
+  private long fieldMisses;
+  private long fieldIndexes;
 
   private Element currentElem;
 
@@ -41,16 +54,18 @@ public class JsonInputCapsule implements InputCapsule {
       String version = rootNode.get("format_version").textValue();
       importer.formatVersion = version.equals("") ? 0 : Integer.parseInt(version);
     }
+    readHeader();
   }
 
   public JsonInputCapsule(InputStream stream, JsonImporter importer) throws IOException {
-    rootNode = OBJECT_MAPPER.readTree(stream);
+    rootNode = importer.getObjectMapper().readTree(stream);
     currentNode = rootNode;
     this.importer = importer;
     if (rootNode.has("format_version")) {
       String version = rootNode.get("format_version").textValue();
       importer.formatVersion = version.equals("") ? 0 : Integer.parseInt(version);
     }
+    readHeader();
   }
 
   public JsonInputCapsule(String json, JsonImporter importer) throws IOException {
@@ -61,6 +76,18 @@ public class JsonInputCapsule implements InputCapsule {
       String version = rootNode.get("format_version").textValue();
       importer.formatVersion = version.equals("") ? 0 : Integer.parseInt(version);
     }
+    readHeader();
+  }
+
+  /** A capsule reading a chunk of a parallel import, which only has to index the chunk. */
+  JsonInputCapsule(
+      JsonInputCapsule parent, JsonImporter importer, IntMap<JsonNode[]> definitions) {
+    this.rootNode = parent.rootNode;
+    this.currentNode = rootNode;
+    this.importer = importer;
+    this.dictionary = parent.dictionary;
+    this.parent = parent;
+    this.definitions = definitions;
   }
 
   @Override
@@ -68,11 +95,84 @@ public class JsonInputCapsule implements InputCapsule {
     return 0;
   }
 
+  void setCurrentNode(JsonNode currentNode) {
+    this.currentNode = currentNode;
+  }
+
+  /**
+   * @return the number of fields found as the next field of their savable, which is the case when
+   *     read() asks for the fields in the order write() wrote them
+   */
+  public long getFieldHits() {
+    return fieldHits;
+  }
+
+  /** @return the number of fields looked up by name, found or not */
+  public long getFieldMisses() {
+    return fieldMisses;
+  }
+
+  /**
+   * @return the number of savables whose fields were indexed by name, which is the case when
+   *     read() asks for them in another order than write() several times
+   */
+  public long getFieldIndexes() {
+    return fieldIndexes;
+  }
+
+  void setDictionary(JsonDictionary dictionary) {
+    this.dictionary = dictionary;
+  }
+
+  /** A document with a dictionary is a {"classes", "strings", "root"} object. */
+  private void readHeader() {
+    JsonNode root = rootNode.get(JsonDictionary.ROOT);
+    if (root == null) {
+      return;
+    }
+    dictionary = new JsonDictionary();
+    dictionary.read(JsonDictionary.CLASSES, rootNode.get(JsonDictionary.CLASSES));
+    dictionary.read(JsonDictionary.STRINGS, rootNode.get(JsonDictionary.STRINGS));
+    currentNode = root;
+  }
+
+  /** @return the text of a string or enum value, which is an id when a dictionary is used */
+  private String text(JsonNode node) {
+    if (dictionary != null && node.isInt()) {
+      return dictionary.string(node.asInt());
+    }
+    return node.asText();
+  }
+
+  /** @return a new instance of the class written as a name or as a dictionary id */
+  private Savable newSavable(JsonNode classNode) throws Exception {
+    if (dictionary != null && classNode.isInt()) {
+      return dictionary.newInstance(classNode.asInt());
+    }
+    return SavableFactory.newInstance(classNode.asText());
+  }
+
+  /** @return the value of a field of the current node, or null if it has no such field */
+  private JsonNode field(String name) {
+    if (cursor == null || cursor.node != currentNode) {
+      cursor = new FieldCursor(currentNode);
+    }
+    JsonNode res = cursor.get(name);
+    if (importer.getListener() != null) {
+      importer.fieldLookedUp(name, res != null);
+    }
+    return res;
+  }
+
   public byte readByte(String name, byte defVal) throws IOException {
-    if (!currentNode.has(name)) {
+    JsonNode value = field(name);
+    if (value == null) {
       return defVal;
     }
-    String tmpString = currentNode.get(name).asText();
+    if (value.isNumber()) {
+      return (byte) value.intValue();
+    }
+    String tmpString = value.asText();
     if (tmpString == null || tmpString.length() < 1) {
       return defVal;
     }
@@ -85,43 +185,43 @@ public class JsonInputCapsule implements InputCapsule {
   }
 
   public byte[] readByteArray(String name, byte[] defVal) throws IOException {
-    if (!currentNode.has(name)) {
+    JsonNode value = field(name);
+    if (value == null || value.isNull()) {
       return defVal;
     }
-    String tmpString = currentNode.get(name).asText();
-    if (tmpString == null || tmpString.length() < 1) {
-      return defVal;
-    }
-    return Base64.decode(tmpString);
+    byte[] res = value.binaryValue();
+    return res == null || res.length < 1 ? defVal : res;
   }
 
   public byte[][] readByteArray2D(String name, byte[][] defVal) throws IOException {
-    if (!currentNode.has(name)) {
-      return defVal;
-    }
-    JsonNode nodeArray = currentNode.get(name);
+    JsonNode nodeArray = field(name);
     if (nodeArray == null || nodeArray.size() < 1) {
       return defVal;
     }
     byte[][] res = new byte[nodeArray.size()][];
     for (int i = 0; i < nodeArray.size(); i++) {
-      res[i] = Base64.decode(nodeArray.get(i).asText());
+      JsonNode value = nodeArray.get(i);
+      res[i] = value.isNull() ? null : value.binaryValue();
     }
     return res;
   }
 
   public int readInt(String name, int defVal) throws IOException {
-    if (!currentNode.has(name)) {
+    JsonNode value = field(name);
+    if (value == null) {
       return defVal;
     }
-    return currentNode.get(name).asInt(defVal);
+    return value.asInt(defVal);
   }
 
   public int[] readIntArray(String name, int[] defVal) throws IOException {
-    if (!currentNode.has(name)) {
+    JsonNode arrayNode = field(name);
+    if (arrayNode == null) {
       return defVal;
     }
-    JsonNode arrayNode = currentNode.get(name);
+    if (BinaryPayloads.isPayload(arrayNode)) {
+      return BinaryPayloads.readInts(arrayNode, getSidecar());
+    }
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
     }
@@ -134,10 +234,7 @@ public class JsonInputCapsule implements InputCapsule {
   }
 
   public int[][] readIntArray2D(String name, int[][] defVal) throws IOException {
-    if (!currentNode.has(name)) {
-      return defVal;
-    }
-    JsonNode arrayNode = currentNode.get(name);
+    JsonNode arrayNode = field(name);
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
     }
@@ -155,33 +252,34 @@ public class JsonInputCapsule implements InputCapsule {
   }
 
   public float readFloat(String name, float defVal) throws IOException {
-    if (!currentNode.has(name)) {
+    JsonNode value = field(name);
+    if (value == null || !value.isValueNode() || value.isNull()) {
       return defVal;
     }
-    return Float.parseFloat(currentNode.get(name).asText());
+    return floatValue(value);
   }
 
   public float[] readFloatArray(String name, float[] defVal) throws IOException {
-    if (!currentNode.has(name)) {
+    JsonNode arrayNode = field(name);
+    if (arrayNode == null) {
       return defVal;
     }
-    JsonNode arrayNode = currentNode.get(name);
+    if (BinaryPayloads.isPayload(arrayNode)) {
+      return BinaryPayloads.readFloats(arrayNode, getSidecar());
+    }
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
     }
     float[] res = new float[arrayNode.size()];
     for (int i = 0; i < arrayNode.size(); i++) {
-      res[i] = Float.parseFloat(arrayNode.get(i).asText());
+      res[i] = floatValue(arrayNode.get(i));
     }
 
     return res;
   }
 
   public float[][] readFloatArray2D(String name, float[][] defVal) throws IOException {
-    if (!currentNode.has(name)) {
-      return defVal;
-    }
-    JsonNode arrayNode = currentNode.get(name);
+    JsonNode arrayNode = field(name);
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
     }
@@ -190,7 +288,7 @@ public class JsonInputCapsule implements InputCapsule {
       JsonNode node = arrayNode.get(i);
       float[] array = new float[node.size()];
       for (int y = 0; y < node.size(); y++) {
-        array[y] = Float.parseFloat(node.get(y).asText());
+        array[y] = floatValue(node.get(y));
         res[i] = array;
       }
     }
@@ -199,33 +297,34 @@ public class JsonInputCapsule implements InputCapsule {
   }
 
   public double readDouble(String name, double defVal) throws IOException {
-    if (!currentNode.has(name)) {
+    JsonNode value = field(name);
+    if (value == null) {
       return defVal;
     }
-    return currentNode.get(name).asDouble(defVal);
+    return value.asDouble(defVal);
   }
 
   public double[] readDoubleArray(String name, double[] defVal) throws IOException {
-    if (!currentNode.has(name)) {
+    JsonNode arrayNode = field(name);
+    if (arrayNode == null) {
       return defVal;
     }
-    JsonNode arrayNode = currentNode.get(name);
+    if (BinaryPayloads.isPayload(arrayNode)) {
+      return BinaryPayloads.readDoubles(arrayNode, getSidecar());
+    }
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
     }
     double[] res = new double[arrayNode.size()];
     for (int i = 0; i < arrayNode.size(); i++) {
-      res[i] = Double.parseDouble(arrayNode.get(i).asText());
+      res[i] = doubleValue(arrayNode.get(i));
     }
 
     return res;
   }
 
   public double[][] readDoubleArray2D(String name, double[][] defVal) throws IOException {
-    if (!currentNode.has(name)) {
-      return defVal;
-    }
-    JsonNode arrayNode = currentNode.get(name);
+    JsonNode arrayNode = field(name);
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
     }
@@ -234,7 +333,7 @@ public class JsonInputCapsule implements InputCapsule {
       JsonNode node = arrayNode.get(i);
       double[] array = new double[node.size()];
       for (int y = 0; y < node.size(); y++) {
-        array[y] = Double.parseDouble(node.get(y).asText());
+        array[y] = doubleValue(node.get(y));
         res[i] = array;
       }
     }
@@ -243,17 +342,21 @@ public class JsonInputCapsule implements InputCapsule {
   }
 
   public long readLong(String name, long defVal) throws IOException {
-    if (!currentNode.has(name)) {
+    JsonNode value = field(name);
+    if (value == null) {
       return defVal;
     }
-    return currentNode.get(name).asLong(defVal);
+    return value.asLong(defVal);
   }
 
   public long[] readLongArray(String name, long[] defVal) throws IOException {
-    if (!currentNode.has(name)) {
+    JsonNode arrayNode = field(name);
+    if (arrayNode == null) {
       return defVal;
     }
-    JsonNode arrayNode = currentNode.get(name);
+    if (BinaryPayloads.isPayload(arrayNode)) {
+      return BinaryPayloads.readLongs(arrayNode, getSidecar());
+    }
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
     }
@@ -265,10 +368,7 @@ public class JsonInputCapsule implements InputCapsule {
   }
 
   public long[][] readLongArray2D(String name, long[][] defVal) throws IOException {
-    if (!currentNode.has(name)) {
-      return defVal;
-    }
-    JsonNode arrayNode = currentNode.get(name);
+    JsonNode arrayNode = field(name);
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
     }
@@ -290,10 +390,13 @@ public class JsonInputCapsule implements InputCapsule {
   }
 
   public short[] readShortArray(String name, short[] defVal) throws IOException {
-    if (!currentNode.has(name)) {
+    JsonNode arrayNode = field(name);
+    if (arrayNode == null) {
       return defVal;
     }
-    JsonNode arrayNode = currentNode.get(name);
+    if (BinaryPayloads.isPayload(arrayNode)) {
+      return BinaryPayloads.readShorts(arrayNode, getSidecar());
+    }
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
     }
@@ -305,10 +408,7 @@ public class JsonInputCapsule implements InputCapsule {
   }
 
   public short[][] readShortArray2D(String name, short[][] defVal) throws IOException {
-    if (!currentNode.has(name)) {
-      return defVal;
-    }
-    JsonNode arrayNode = currentNode.get(name);
+    JsonNode arrayNode = field(name);
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
     }
@@ -326,17 +426,15 @@ public class JsonInputCapsule implements InputCapsule {
   }
 
   public boolean readBoolean(String name, boolean defVal) throws IOException {
-    if (!currentNode.has(name)) {
+    JsonNode value = field(name);
+    if (value == null) {
       return defVal;
     }
-    return currentNode.get(name).asBoolean(defVal);
+    return value.asBoolean(defVal);
   }
 
   public boolean[] readBooleanArray(String name, boolean[] defVal) throws IOException {
-    if (!currentNode.has(name)) {
-      return defVal;
-    }
-    JsonNode arrayNode = currentNode.get(name);
+    JsonNode arrayNode = field(name);
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
     }
@@ -348,10 +446,7 @@ public class JsonInputCapsule implements InputCapsule {
   }
 
   public boolean[][] readBooleanArray2D(String name, boolean[][] defVal) throws IOException {
-    if (!currentNode.has(name)) {
-      return defVal;
-    }
-    JsonNode arrayNode = currentNode.get(name);
+    JsonNode arrayNode = field(name);
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
     }
@@ -369,17 +464,15 @@ public class JsonInputCapsule implements InputCapsule {
   }
 
   public String readString(String name, String defVal) throws IOException {
-    if (!currentNode.has(name)) {
+    JsonNode node = field(name);
+    if (node == null) {
       return defVal;
     }
-    return currentNode.get(name).asText(defVal);
+    return node.isNull() ? defVal : text(node);
   }
 
   public String[] readStringArray(String name, String[] defVal) throws IOException {
-    if (!currentNode.has(name)) {
-      return defVal;
-    }
-    JsonNode arrayNode = currentNode.get(name);
+    JsonNode arrayNode = field(name);
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
     }
@@ -391,10 +484,7 @@ public class JsonInputCapsule implements InputCapsule {
   }
 
   public String[][] readStringArray2D(String name, String[][] defVal) throws IOException {
-    if (!currentNode.has(name)) {
-      return defVal;
-    }
-    JsonNode arrayNode = currentNode.get(name);
+    JsonNode arrayNode = field(name);
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
     }
@@ -412,10 +502,7 @@ public class JsonInputCapsule implements InputCapsule {
   }
 
   public BitSet readBitSet(String name, BitSet defVal) throws IOException {
-    if (!currentNode.has(name)) {
-      return defVal;
-    }
-    JsonNode arrayNode = currentNode.get(name);
+    JsonNode arrayNode = field(name);
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
     }
@@ -427,69 +514,132 @@ public class JsonInputCapsule implements InputCapsule {
   }
 
   public Savable readSavable(String name, Savable defVal) throws IOException {
-    if (!currentNode.has(name)) {
-      return defVal;
-    }
-    JsonNode previousNode;
-    JsonNode arrayNode = currentNode.get(name);
+    JsonNode arrayNode = field(name);
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
     }
-    String className = arrayNode.get(0).asText();
-    previousNode = currentNode;
-    currentNode = arrayNode.get(1);
-    Savable res = null;
-    try {
-      res = SavableClassUtil.fromName(className, null);
-      res.read(importer);
-    } catch (Exception e) {
-      e.printStackTrace();
-      res = defVal;
-    } finally {
-      currentNode = previousNode;
-      return res;
-    }
+    return readSavableNode(arrayNode, defVal);
   }
 
   public Savable readSavableFromCurrentArrayElem(Savable defVal) throws IOException {
-    JsonNode previousNode;
-    JsonNode fieldsNode = currentNode.get(1);
-    String className = currentNode.get(0).asText();
-    previousNode = currentNode;
+    return readSavableNode(currentNode, defVal);
+  }
+
+  /** Read a [className, {fields}] element or resolve a {"ref": id} object. */
+  Savable readSavableNode(JsonNode node, Savable defVal) {
+    if (node.isObject()) {
+      return readReference(node.path(JsonOutputCapsule.REF_FIELD).asInt(-1), defVal);
+    }
+    return readSavableFields(node.get(0), node.get(1), defVal);
+  }
+
+  Savable readSavableFields(JsonNode classNode, JsonNode fieldsNode, Savable defVal) {
+    if (fieldsNode == null) {
+      return defVal;
+    }
+    JsonNode idNode = fieldsNode.get(JsonOutputCapsule.ID_FIELD);
+    if (idNode != null) {
+      Savable known = getSavable(idNode.asInt());
+      if (known != null) {
+        // already read through a forward reference
+        return known;
+      }
+    }
+    JsonNode previousNode = currentNode;
+    FieldCursor previousCursor = cursor;
     currentNode = fieldsNode;
     Savable res = null;
     try {
-      res = SavableClassUtil.fromName(className, null);
-      res.read(importer);
+      res = newSavable(classNode);
+      // registered before its fields so back references resolve to it
+      if (idNode != null) {
+        savables.put(idNode.asInt(), res);
+      }
+      importer.readFields(res);
     } catch (Exception e) {
       e.printStackTrace();
       res = defVal;
     } finally {
       currentNode = previousNode;
+      cursor = previousCursor;
+    }
+    return res;
+  }
+
+  Savable readReference(int id, Savable defVal) {
+    Savable res = getSavable(id);
+    if (res != null) {
       return res;
     }
+    // a savable can be referenced before its definition when read() does not ask for the fields
+    // in the order write() wrote them
+    if (definitions == null) {
+      definitions = new IntMap<>();
+      index(rootNode, definitions, null);
+    }
+    JsonNode[] definition = definitions.get(id);
+    if (definition == null) {
+      logger.warn("Unresolved savable reference {}", id);
+      return defVal;
+    }
+    return readSavableFields(definition[0], definition[1], defVal);
   }
 
-  private Savable readSavableFromMapElem(String className, Savable defVal) throws IOException {
-    Savable res = null;
-    try {
-      res = SavableClassUtil.fromName(className, null);
-      res.read(importer);
-    } catch (Exception e) {
-      e.printStackTrace();
+  /** @return the savable read with the given id, by this capsule or the parallel import one */
+  Savable getSavable(int id) {
+    Savable res = savables.get(id);
+    return res == null && parent != null ? parent.getSavable(id) : res;
+  }
+
+  /** Take the savables read, and count the fields looked up, by a chunk of a parallel import. */
+  void addSavables(JsonInputCapsule chunk) {
+    for (IntMap.Entry<Savable> entry : chunk.savables) {
+      savables.put(entry.getKey(), entry.getValue());
     }
-    return res;
+    fieldHits += chunk.fieldHits;
+    fieldMisses += chunk.fieldMisses;
+    fieldIndexes += chunk.fieldIndexes;
   }
 
-  public Savable[] readSavableArray(String name, Savable[] defVal) throws IOException {
-    if (!currentNode.has(name)) {
-      return defVal;
+  /**
+   * Index the [className, {fields}] savable definitions of a tree and, if a list is given, collect
+   * the ids of its {"ref": id} references.
+   */
+  static void index(JsonNode node, IntMap<JsonNode[]> definitions, List<Integer> references) {
+    if (node.isArray()) {
+      for (int i = 0; i < node.size(); i++) {
+        JsonNode child = node.get(i);
+        JsonNode next = node.get(i + 1);
+        boolean classNode = child.isTextual() || child.isInt();
+        if (classNode && next != null && next.has(JsonOutputCapsule.ID_FIELD)) {
+          definitions.put(
+              next.get(JsonOutputCapsule.ID_FIELD).asInt(), new JsonNode[] {child, next});
+        }
+        index(child, definitions, references);
+      }
+    } else if (node.isObject()) {
+      if (references != null && node.size() == 1 && node.has(JsonOutputCapsule.REF_FIELD)) {
+        references.add(node.get(JsonOutputCapsule.REF_FIELD).asInt());
+      }
+      for (JsonNode child : node) {
+        index(child, definitions, references);
+      }
     }
-    JsonNode arrayNode = currentNode.get(name);
+  }
+
+  private boolean isParallel(int size) {
+    return parent == null && size >= ParallelImport.MIN_SAVABLES && importer.isParallel();
+  }
+
+  public Savable[] readSavableArray(String name, Savable[] defVal) throws IOException {
+    JsonNode arrayNode = field(name);
     JsonNode previousNode = currentNode;
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
     }
+    if (isParallel(arrayNode.size())) {
+      return new ParallelImport(this, importer).read(elements(arrayNode));
+    }
     Savable[] res = new Savable[arrayNode.size()];
     for (int i = 0; i < arrayNode.size(); i++) {
       currentNode = arrayNode.get(i);
@@ -499,18 +649,43 @@ public class JsonInputCapsule implements InputCapsule {
     return res;
   }
 
-  public Savable[][] readSavableArray2D(String name, Savable[][] defVal) throws IOException {
-    if (!currentNode.has(name)) {
-      return defVal;
+  private static List<JsonNode> elements(JsonNode arrayNode) {
+    List<JsonNode> res = new ArrayList<>(arrayNode.size());
+    for (JsonNode element : arrayNode) {
+      res.add(element);
     }
-    JsonNode arrayNode = currentNode.get(name);
+    return res;
+  }
+
+  public Savable[][] readSavableArray2D(String name, Savable[][] defVal) throws IOException {
+    JsonNode arrayNode = field(name);
     JsonNode previousNode = currentNode;
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
     }
     Savable[][] res = new Savable[arrayNode.size()][];
+    List<JsonNode> elements = new ArrayList<>();
+    for (JsonNode nestedArray : arrayNode) {
+      for (JsonNode element : nestedArray) {
+        elements.add(element);
+      }
+    }
+    if (isParallel(elements.size())) {
+      Savable[] all = new ParallelImport(this, importer).read(elements);
+      int offset = 0;
+      for (int i = 0; i < res.length; i++) {
+        if (!arrayNode.get(i).isNull()) {
+          res[i] = Arrays.copyOfRange(all, offset, offset + arrayNode.get(i).size());
+          offset += res[i].length;
+        }
+      }
+      return res;
+    }
     for (int i = 0; i < arrayNode.size(); i++) {
       JsonNode nestedArray = arrayNode.get(i);
+      if (nestedArray.isNull()) {
+        continue;
+      }
       Savable[] nestedSavables = new Savable[nestedArray.size()];
       for (int y = 0; y < nestedArray.size(); y++) {
         currentNode = nestedArray.get(y);
@@ -523,14 +698,18 @@ public class JsonInputCapsule implements InputCapsule {
   }
 
   public ArrayList<Savable> readSavableArrayList(String name, ArrayList defVal) throws IOException {
-    if (!currentNode.has(name)) {
+    JsonNode arrayNode = field(name);
+    if (arrayNode == null) {
       return defVal;
     }
-    JsonNode arrayNode = currentNode.get(name);
     JsonNode previousNode = currentNode;
     if (arrayNode == null) {
       return defVal;
     }
+    if (isParallel(arrayNode.size())) {
+      return new ArrayList<>(
+          Arrays.asList(new ParallelImport(this, importer).read(elements(arrayNode))));
+    }
     ArrayList<Savable> res = new ArrayList<>();
     for (int i = 0; i < arrayNode.size(); i++) {
       currentNode = arrayNode.get(i);
@@ -542,10 +721,7 @@ public class JsonInputCapsule implements InputCapsule {
 
   public ArrayList<Savable>[] readSavableArrayListArray(String name, ArrayList[] defVal)
       throws IOException {
-    if (!currentNode.has(name)) {
-      return defVal;
-    }
-    JsonNode arrayNode = currentNode.get(name);
+    JsonNode arrayNode = field(name);
     JsonNode previousNode = currentNode;
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
@@ -566,10 +742,7 @@ public class JsonInputCapsule implements InputCapsule {
 
   public ArrayList<Savable>[][] readSavableArrayListArray2D(String name, ArrayList[][] defVal)
       throws IOException {
-    if (!currentNode.has(name)) {
-      return defVal;
-    }
-    JsonNode arrayNode = currentNode.get(name);
+    JsonNode arrayNode = field(name);
     JsonNode previousNode = currentNode;
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
@@ -595,32 +768,34 @@ public class JsonInputCapsule implements InputCapsule {
 
   public ArrayList<FloatBuffer> readFloatBufferArrayList(String name, ArrayList<FloatBuffer> defVal)
       throws IOException {
-    if (!currentNode.has(name)) {
+    JsonNode arrayNode = field(name);
+    if (arrayNode == null) {
       return defVal;
     }
-    JsonNode arrayNode = currentNode.get(name);
     ArrayList<FloatBuffer> res = new ArrayList<>();
     for (int i = 0; i < arrayNode.size(); i++) {
-      JsonNode floatArrayNode = arrayNode.get(i);
-      FloatBuffer floatBuffer = FloatBuffer.allocate(floatArrayNode.size());
-      for (int y = 0; y < floatArrayNode.size(); y++) {
-        floatBuffer.put(Float.parseFloat(floatArrayNode.get(y).asText()));
+      JsonNode bufferNode = arrayNode.get(i);
+      if (BinaryPayloads.isPayload(bufferNode)) {
+        res.add(BinaryPayloads.readFloatBuffer(bufferNode, getSidecar(), isDirectBuffers()));
+        continue;
       }
-      res.add(floatBuffer);
+      float[] values = decodeFloats(bufferNode);
+      res.add(NioBuffers.floatBuffer(values, values.length, isDirectBuffers()));
     }
     return res;
   }
 
   public Map<? extends Savable, ? extends Savable> readSavableMap(
       String name, Map<? extends Savable, ? extends Savable> defVal) throws IOException {
-    if (!currentNode.has(name)) {
+    JsonNode value = field(name);
+    if (value == null) {
       return defVal;
     }
 
     JsonNode previousNode = currentNode;
 
     // the whole map object
-    currentNode = currentNode.get(name);
+    currentNode = value;
     if (currentNode == null || currentNode.size() < 1) {
       currentNode = previousNode;
       return new HashMap<>();
@@ -629,32 +804,39 @@ public class JsonInputCapsule implements InputCapsule {
 
     // each entry in a json map is a field object
     Iterator<JsonNode> list = currentNode.elements();
+    currentNode = previousNode;
     while (list.hasNext()) {
-      JsonNode keyNode = list.next();
-      // each object is serialize with an array. The first item is the classname and the second,
-      // the value
-      currentNode = list.next();
-      Savable keySavable = readSavableFromMapElem(keyNode.asText(), null);
-
-      JsonNode valueNode = list.next();
-      currentNode = list.next();
-      Savable valueSavable = readSavableFromMapElem(valueNode.asText(), null);
+      Savable keySavable = readSavableMapElem(list);
+      Savable valueSavable = readSavableMapElem(list);
       res.put(keySavable, valueSavable);
     }
-    currentNode = previousNode;
     return res;
   }
 
+  /**
+   * Savable maps are flattened: each savable is a className followed by its fields object, or a
+   * {"ref": id} object.
+   */
+  private Savable readSavableMapElem(Iterator<JsonNode> list) {
+    JsonNode node = list.next();
+    if (node.isObject()) {
+      return readReference(node.path(JsonOutputCapsule.REF_FIELD).asInt(-1), null);
+    }
+    return readSavableFields(node, list.next(), null);
+  }
+
   public Map<String, ? extends Savable> readStringSavableMap(
       String name, Map<String, ? extends Savable> defVal) throws IOException {
-    if (!currentNode.has(name)) {
+    JsonNode value = field(name);
+    if (value == null) {
       return defVal;
     }
 
     JsonNode previousNode = currentNode;
+    FieldCursor previousCursor = cursor;
 
     // the whole map object
-    currentNode = currentNode.get(name);
+    currentNode = value;
     if (currentNode == null || currentNode.size() < 1) {
       currentNode = previousNode;
       return new HashMap<>();
@@ -671,19 +853,23 @@ public class JsonInputCapsule implements InputCapsule {
       res.put(entry.getKey(), savable);
     }
     currentNode = previousNode;
+    // the savables of the map were looked up in a cursor over the map
+    cursor = previousCursor;
     return res;
   }
 
   public IntMap<? extends Savable> readIntSavableMap(String name, IntMap<? extends Savable> defVal)
       throws IOException {
-    if (!currentNode.has(name)) {
+    JsonNode value = field(name);
+    if (value == null) {
       return defVal;
     }
 
     JsonNode previousNode = currentNode;
+    FieldCursor previousCursor = cursor;
 
     // the whole map object
-    currentNode = currentNode.get(name);
+    currentNode = value;
     if (currentNode == null || currentNode.size() < 1) {
       currentNode = previousNode;
       return new IntMap<>();
@@ -700,99 +886,141 @@ public class JsonInputCapsule implements InputCapsule {
       res.put(Integer.parseInt(entry.getKey()), savable);
     }
     currentNode = previousNode;
+    // the savables of the map were looked up in a cursor over the map
+    cursor = previousCursor;
     return res;
   }
 
   /** reads from currentElem if name is null */
   public FloatBuffer readFloatBuffer(String name, FloatBuffer defVal) throws IOException {
-    if (!currentNode.has(name)) {
+    JsonNode arrayNode = field(name);
+    if (arrayNode == null) {
       return defVal;
     }
-    JsonNode arrayNode = currentNode.get(name);
+    if (BinaryPayloads.isPayload(arrayNode)) {
+      return BinaryPayloads.readFloatBuffer(arrayNode, getSidecar(), isDirectBuffers());
+    }
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
     }
-    FloatBuffer res = FloatBuffer.allocate(arrayNode.size());
-    for (int i = 0; i < arrayNode.size(); i++) {
-      res.put(Float.parseFloat(arrayNode.get(i).asText()));
-    }
-
-    return res;
+    float[] values = decodeFloats(arrayNode);
+    return NioBuffers.floatBuffer(values, values.length, isDirectBuffers());
   }
 
   public IntBuffer readIntBuffer(String name, IntBuffer defVal) throws IOException {
-    if (!currentNode.has(name)) {
+    JsonNode arrayNode = field(name);
+    if (arrayNode == null) {
       return defVal;
     }
-    JsonNode arrayNode = currentNode.get(name);
+    if (BinaryPayloads.isPayload(arrayNode)) {
+      return BinaryPayloads.readIntBuffer(arrayNode, getSidecar(), isDirectBuffers());
+    }
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
     }
-    IntBuffer res = IntBuffer.allocate(arrayNode.size());
-    for (int i = 0; i < arrayNode.size(); i++) {
-      res.put(arrayNode.get(i).asInt());
+    int[] values = new int[arrayNode.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = arrayNode.get(i).asInt();
     }
-
-    return res;
+    return NioBuffers.intBuffer(values, values.length, isDirectBuffers());
   }
 
-  public ByteBuffer readByteBuffer(String name, ByteBuffer defVal) {
-    if (!currentNode.has(name)) {
+  public ByteBuffer readByteBuffer(String name, ByteBuffer defVal) throws IOException {
+    JsonNode arrayNode = field(name);
+    if (arrayNode == null) {
       return defVal;
     }
-    JsonNode arrayNode = currentNode.get(name);
+    if (BinaryPayloads.isPayload(arrayNode)) {
+      return BinaryPayloads.readByteBuffer(arrayNode, getSidecar(), isDirectBuffers());
+    }
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
     }
-    ByteBuffer res = ByteBuffer.allocate(arrayNode.size());
-    for (int i = 0; i < arrayNode.size(); i++) {
-      res.put((byte) arrayNode.get(i).asInt());
-    }
-
-    return res;
+    byte[] values = decodeBytes(arrayNode);
+    return NioBuffers.byteBuffer(values, values.length, isDirectBuffers());
   }
 
   public ShortBuffer readShortBuffer(String name, ShortBuffer defVal) throws IOException {
-    if (!currentNode.has(name)) {
+    JsonNode arrayNode = field(name);
+    if (arrayNode == null) {
       return defVal;
     }
-    JsonNode arrayNode = currentNode.get(name);
+    if (BinaryPayloads.isPayload(arrayNode)) {
+      return BinaryPayloads.readShortBuffer(arrayNode, getSidecar(), isDirectBuffers());
+    }
     if (arrayNode == null || arrayNode.size() < 1) {
       return defVal;
     }
-    ShortBuffer res = ShortBuffer.allocate(arrayNode.size());
-    for (int i = 0; i < arrayNode.size(); i++) {
-      res.put((short) arrayNode.get(i).asInt());
+    short[] values = new short[arrayNode.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (short) arrayNode.get(i).asInt();
     }
-
-    return res;
+    return NioBuffers.shortBuffer(values, values.length, isDirectBuffers());
   }
 
   public ArrayList<ByteBuffer> readByteBufferArrayList(String name, ArrayList<ByteBuffer> defVal)
       throws IOException {
-    if (!currentNode.has(name)) {
+    JsonNode arrayNode = field(name);
+    if (arrayNode == null) {
       return defVal;
     }
-    JsonNode arrayNode = currentNode.get(name);
     ArrayList<ByteBuffer> res = new ArrayList<>();
     for (int i = 0; i < arrayNode.size(); i++) {
-      JsonNode numberArrayNode = arrayNode.get(i);
-      ByteBuffer buffer = ByteBuffer.allocate(numberArrayNode.size());
-      for (int y = 0; y < numberArrayNode.size(); y++) {
-        buffer.put(Byte.parseByte(numberArrayNode.get(y).asText()));
+      JsonNode bufferNode = arrayNode.get(i);
+      if (BinaryPayloads.isPayload(bufferNode)) {
+        res.add(BinaryPayloads.readByteBuffer(bufferNode, getSidecar(), isDirectBuffers()));
+        continue;
       }
-      res.add(buffer);
+      byte[] values = decodeBytes(bufferNode);
+      res.add(NioBuffers.byteBuffer(values, values.length, isDirectBuffers()));
     }
     return res;
   }
 
+  private boolean isDirectBuffers() {
+    return importer != null && importer.isDirectBuffers();
+  }
+
+  private SidecarReader getSidecar() {
+    return importer == null ? null : importer.getSidecarReader();
+  }
+
+  private static float[] decodeFloats(JsonNode arrayNode) {
+    float[] res = new float[arrayNode.size()];
+    for (int i = 0; i < res.length; i++) {
+      res[i] = floatValue(arrayNode.get(i));
+    }
+    return res;
+  }
+
+  private static byte[] decodeBytes(JsonNode arrayNode) {
+    byte[] res = new byte[arrayNode.size()];
+    for (int i = 0; i < res.length; i++) {
+      JsonNode node = arrayNode.get(i);
+      res[i] = node.isNumber() ? (byte) node.intValue() : Byte.parseByte(node.asText());
+    }
+    return res;
+  }
+
+  /**
+   * Numbers are read from the value of the node: the text of a numeric node is a new string. The
+   * text is only parsed for the numbers written as strings.
+   */
+  private static float floatValue(JsonNode node) {
+    return node.isNumber() ? node.floatValue() : Float.parseFloat(node.asText());
+  }
+
+  private static double doubleValue(JsonNode node) {
+    return node.isNumber() ? node.doubleValue() : Double.parseDouble(node.asText());
+  }
+
   public <T extends Enum<T>> T readEnum(String name, Class<T> enumType, T defVal)
       throws IOException {
     T ret = defVal;
     try {
-      JsonNode node = currentNode.get(name);
+      JsonNode node = field(name);
       if (node != null) {
-        String eVal = node.asText();
+        String eVal = text(node);
         if (eVal != null && eVal.length() > 0) {
           ret = Enum.valueOf(enumType, eVal);
         }
@@ -804,4 +1032,102 @@ public class JsonInputCapsule implements InputCapsule {
     return ret;
   }
 
+  /**
+   * Walks the fields of a node in order. A field asked for in turn costs a string comparison, the
+   * others a lookup by name. When the field asked for is present, the cursor goes on from it: it
+   * scans forward to it, or from the start when it was passed, and indexes the fields by name the
+   * second time one was passed.
+   */
+  private final class FieldCursor {
+
+    private final JsonNode node;
+    private Iterator<Entry<String, JsonNode>> fields;
+    // the fields and their position by name, once several were asked out of order
+    private List<Entry<String, JsonNode>> entries;
+    private Map<String, Integer> positions;
+    // the position of the next field
+    private int position = -1;
+    private Entry<String, JsonNode> next;
+    private boolean rewound;
+
+    private FieldCursor(JsonNode node) {
+      this.node = node;
+      fields = node.fields();
+      advance();
+      // the id is read by the capsule, not by read()
+      if (next != null && next.getKey().equals(JsonOutputCapsule.ID_FIELD)) {
+        advance();
+      }
+    }
+
+    private JsonNode get(String name) {
+      if (next != null && next.getKey().equals(name)) {
+        fieldHits++;
+        JsonNode res = next.getValue();
+        advance();
+        return res;
+      }
+      fieldMisses++;
+      if (positions != null) {
+        Integer found = positions.get(name);
+        if (found == null) {
+          return null;
+        }
+        position = found;
+        advance();
+        return entries.get(found).getValue();
+      }
+      // most fields missing the cursor are omitted defaults, which leave it where it is
+      JsonNode res = node.get(name);
+      if (res != null) {
+        moveAfter(name);
+      }
+      return res;
+    }
+
+    /** Move the cursor after a field of the node. */
+    private void moveAfter(String name) {
+      while (next != null && !next.getKey().equals(name)) {
+        advance();
+      }
+      if (next == null) {
+        // the field was passed
+        if (rewound) {
+          index();
+          position = positions.get(name);
+        } else {
+          rewound = true;
+          fields = node.fields();
+          position = -1;
+          advance();
+          while (!next.getKey().equals(name)) {
+            advance();
+          }
+        }
+      }
+      advance();
+    }
+
+    private void index() {
+      fieldIndexes++;
+      entries = new ArrayList<>(node.size());
+      positions = new HashMap<>();
+      Iterator<Entry<String, JsonNode>> all = node.fields();
+      while (all.hasNext()) {
+        Entry<String, JsonNode> entry = all.next();
+        positions.put(entry.getKey(), entries.size());
+        entries.add(entry);
+      }
+      fields = null;
+    }
+
+    private void advance() {
+      position++;
+      if (entries != null) {
+        next = position < entries.size() ? entries.get(position) : null;
+      } else {
+        next = fields.hasNext() ? fields.next() : null;
+      }
+    }
+  }
 }
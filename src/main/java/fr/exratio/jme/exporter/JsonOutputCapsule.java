@@ -1,52 +1,161 @@
 package fr.exratio.jme.exporter;
 
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.fasterxml.jackson.core.json.JsonWriteFeature;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.jme3.export.JmeExporter;
 import com.jme3.export.OutputCapsule;
 import com.jme3.export.Savable;
+import com.jme3.scene.VertexBuffer;
 import com.jme3.util.IntMap;
 import com.jme3.util.IntMap.Entry;
-import com.sun.org.apache.xerces.internal.impl.dv.util.Base64;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Map;
 
 public class JsonOutputCapsule implements OutputCapsule {
 
   private static final String dataAttributeName = "data";
+  // number of buffer elements copied at once when writing NIO buffers
+  private static final int BUFFER_CHUNK_SIZE = 4096;
+  static final String ID_FIELD = "@id";
+  static final String REF_FIELD = "ref";
+
   private final JsonGenerator jsonGenerator;
   private final JmeExporter exporter;
+  private final Map<Savable, Integer> savableIds = new IdentityHashMap<>();
+  // class names and strings are written as ids when a dictionary is used
+  private final JsonDictionary dictionary;
+  // the task of a parallel export this capsule writes a chunk for, if any
+  private final ParallelExport.Task task;
+  // floats and doubles are formatted by ShortestDecimal when the output is json text
+  private final boolean formatNumbers;
+  private final char[] numberChars = new char[ShortestDecimal.MAX_LENGTH];
+  private float[] floatChunk;
+  private int[] intChunk;
+  private short[] shortChunk;
+  private byte[] byteChunk;
+  // the type of the vertex buffer being written, known before its data
+  private VertexBuffer.Type bufferType;
+  // the class of the savable being written and the time and bytes of the ones nested in it, known
+  // when the exporter has a listener
+  private Class<? extends Savable> savableType;
+  private long nestedNanos;
+  private long nestedBytes;
 
   public JsonOutputCapsule(JsonGenerator jsonGenerator, JmeExporter exporter) {
+    this(jsonGenerator, exporter, null);
+  }
+
+  JsonOutputCapsule(JsonGenerator jsonGenerator, JmeExporter exporter, JsonDictionary dictionary) {
+    this(jsonGenerator, exporter, dictionary, null);
+  }
+
+  JsonOutputCapsule(
+      JsonGenerator jsonGenerator,
+      JmeExporter exporter,
+      JsonDictionary dictionary,
+      ParallelExport.Task task) {
     this.jsonGenerator = jsonGenerator;
     this.exporter = exporter;
+    this.dictionary = dictionary;
+    this.task = task;
+    // the tasks of a parallel export buffer the values, which are formatted when spliced
+    this.formatNumbers =
+        task == null
+            && jsonGenerator instanceof JsonGeneratorImpl
+            && !jsonGenerator.isEnabled(JsonWriteFeature.WRITE_NUMBERS_AS_STRINGS.mappedFeature());
+  }
+
+  private boolean isBinaryArrays() {
+    return exporter instanceof JsonExporter && ((JsonExporter) exporter).isBinaryArrays();
+  }
+
+  /** Values equal to their default are not written, as the capsules read the default back. */
+  private boolean isOmitDefaults() {
+    return exporter instanceof JsonExporter && ((JsonExporter) exporter).isOmitDefaults();
+  }
+
+  private SavableListener getListener() {
+    return exporter instanceof JsonExporter ? ((JsonExporter) exporter).getListener() : null;
+  }
+
+  /** @return the lossy quantization of the field, null when written exactly */
+  private Quantization getQuantization(String name) {
+    return exporter instanceof JsonExporter
+        ? ((JsonExporter) exporter).getQuantization(name, bufferType)
+        : null;
+  }
+
+  private boolean isXorFloats(String name) {
+    return exporter instanceof JsonExporter && ((JsonExporter) exporter).isXorFloats(name);
+  }
+
+  /** @return true if enough integers are to be written to be worth varint deltas */
+  private boolean isDeltaIntegers(int count) {
+    return count >= DeltaVarints.MIN_COUNT
+        && exporter instanceof JsonExporter
+        && ((JsonExporter) exporter).isDeltaIntegers();
+  }
+
+  /** The sidecar offsets depend on the write order, so it is only written sequentially. */
+  private boolean isParallel() {
+    return task == null
+        && exporter instanceof JsonExporter
+        && ((JsonExporter) exporter).isParallel()
+        && getSidecar() == null;
+  }
+
+  /** @return the sidecar file buffers are written to, null when everything stays in the json */
+  private SidecarWriter getSidecar() {
+    return exporter instanceof JsonExporter ? ((JsonExporter) exporter).getSidecarWriter() : null;
+  }
+
+  /** Only arrays large enough to be worth an indirection go to the sidecar file. */
+  private SidecarWriter getSidecar(int byteLength) {
+    return byteLength >= SidecarWriter.MIN_ARRAY_BYTES ? getSidecar() : null;
   }
 
   @Override
   public void write(byte value, String name, byte defVal) throws IOException {
+    if (isOmitDefaults() && value == defVal) {
+      return;
+    }
     jsonGenerator.writeStringField(name, String.valueOf(value));
   }
 
   @Override
   public void write(byte[] value, String name, byte[] defVal) throws IOException {
+    if (isOmitDefaults() && (value == null || Arrays.equals(value, defVal))) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
     if (value == null) {
       return;
     }
-
-    jsonGenerator.writeStringField(name, Base64.encode(value));
+    // base64 encoded straight into the output buffer, without an intermediate string
+    jsonGenerator.writeFieldName(name);
+    jsonGenerator.writeBinary(value);
   }
 
   @Override
   public void write(byte[][] value, String name, byte[][] defVal) throws IOException {
+    if (isOmitDefaults() && (value == null || Arrays.deepEquals(value, defVal))) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
@@ -55,19 +164,28 @@ public class JsonOutputCapsule implements OutputCapsule {
     }
     jsonGenerator.writeArrayFieldStart(name);
     for (int i = 0; i < value.length; i++) {
-      byte[] array = value[i];
-      jsonGenerator.writeString(Base64.encode(array));
+      if (value[i] == null) {
+        jsonGenerator.writeNull();
+      } else {
+        jsonGenerator.writeBinary(value[i]);
+      }
     }
     jsonGenerator.writeEndArray();
   }
 
   @Override
   public void write(int value, String name, int defVal) throws IOException {
+    if (isOmitDefaults() && value == defVal) {
+      return;
+    }
     jsonGenerator.writeNumberField(name, value);
   }
 
   @Override
   public void write(int[] value, String name, int[] defVal) throws IOException {
+    if (isOmitDefaults() && (value == null || Arrays.equals(value, defVal))) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
@@ -75,11 +193,23 @@ public class JsonOutputCapsule implements OutputCapsule {
       return;
     }
     jsonGenerator.writeFieldName(name);
+    SidecarWriter sidecar = getSidecar(value.length * 4);
+    if (isDeltaIntegers(value.length)) {
+      BinaryPayloads.writeDeltas(jsonGenerator, IntBuffer.wrap(value), sidecar);
+      return;
+    }
+    if (sidecar != null || isBinaryArrays()) {
+      BinaryPayloads.write(jsonGenerator, value, sidecar);
+      return;
+    }
     jsonGenerator.writeArray(value, 0, value.length);
   }
 
   @Override
   public void write(int[][] value, String name, int[][] defVal) throws IOException {
+    if (isOmitDefaults() && (value == null || Arrays.deepEquals(value, defVal))) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
@@ -96,26 +226,57 @@ public class JsonOutputCapsule implements OutputCapsule {
 
   @Override
   public void write(float value, String name, float defVal) throws IOException {
-    jsonGenerator.writeNumberField(name, value);
+    if (isOmitDefaults() && Float.compare(value, defVal) == 0) {
+      return;
+    }
+    Quantization quantization = getQuantization(name);
+    jsonGenerator.writeFieldName(name);
+    writeFloat(quantization != null ? quantization.round(value) : value);
   }
 
   @Override
   public void write(float[] value, String name, float[] defVal) throws IOException {
+    if (isOmitDefaults() && (value == null || Arrays.equals(value, defVal))) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
     if (value == null) {
       return;
     }
+    SidecarWriter sidecar = getSidecar(value.length * 4);
+    Quantization quantization = getQuantization(name);
+    if (quantization != null) {
+      if (quantization.getKind() != Quantization.Kind.DECIMALS) {
+        jsonGenerator.writeFieldName(name);
+        BinaryPayloads.write(jsonGenerator, FloatBuffer.wrap(value), quantization, sidecar);
+        return;
+      }
+      value = round(value, quantization);
+    }
+    if (isXorFloats(name)) {
+      jsonGenerator.writeFieldName(name);
+      BinaryPayloads.writeXor(jsonGenerator, FloatBuffer.wrap(value), sidecar);
+      return;
+    }
+    if (sidecar != null || isBinaryArrays()) {
+      jsonGenerator.writeFieldName(name);
+      BinaryPayloads.write(jsonGenerator, value, sidecar);
+      return;
+    }
     jsonGenerator.writeArrayFieldStart(name);
     for (int i = 0; i < value.length; i++) {
-      jsonGenerator.writeNumber(value[i]);
+      writeFloat(value[i]);
     }
     jsonGenerator.writeEndArray();
   }
 
   @Override
   public void write(float[][] value, String name, float[][] defVal) throws IOException {
+    if (isOmitDefaults() && (value == null || Arrays.deepEquals(value, defVal))) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
@@ -126,7 +287,7 @@ public class JsonOutputCapsule implements OutputCapsule {
     for (int i = 0; i < value.length; i++) {
       jsonGenerator.writeStartArray();
       for (int y = 0; y < value.length; y++) {
-        jsonGenerator.writeNumber(value[i][y]);
+        writeFloat(value[i][y]);
       }
       jsonGenerator.writeEndArray();
     }
@@ -135,26 +296,42 @@ public class JsonOutputCapsule implements OutputCapsule {
 
   @Override
   public void write(double value, String name, double defVal) throws IOException {
-    jsonGenerator.writeNumberField(name, value);
+    if (isOmitDefaults() && Double.compare(value, defVal) == 0) {
+      return;
+    }
+    jsonGenerator.writeFieldName(name);
+    writeDouble(value);
   }
 
   @Override
   public void write(double[] value, String name, double[] defVal) throws IOException {
+    if (isOmitDefaults() && (value == null || Arrays.equals(value, defVal))) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
     if (value == null) {
       return;
     }
+    SidecarWriter sidecar = getSidecar(value.length * 8);
+    if (sidecar != null || isBinaryArrays()) {
+      jsonGenerator.writeFieldName(name);
+      BinaryPayloads.write(jsonGenerator, value, sidecar);
+      return;
+    }
     jsonGenerator.writeArrayFieldStart(name);
     for (int i = 0; i < value.length; i++) {
-      jsonGenerator.writeNumber(value[i]);
+      writeDouble(value[i]);
     }
     jsonGenerator.writeEndArray();
   }
 
   @Override
   public void write(double[][] value, String name, double[][] defVal) throws IOException {
+    if (isOmitDefaults() && (value == null || Arrays.deepEquals(value, defVal))) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
@@ -164,24 +341,40 @@ public class JsonOutputCapsule implements OutputCapsule {
 
     jsonGenerator.writeArrayFieldStart(name);
     for (int i = 0; i < value.length; i++) {
-      jsonGenerator.writeArray(value[i], 0, value[i].length);
+      jsonGenerator.writeStartArray();
+      for (int y = 0; y < value[i].length; y++) {
+        writeDouble(value[i][y]);
+      }
+      jsonGenerator.writeEndArray();
     }
     jsonGenerator.writeEndArray();
   }
 
   @Override
   public void write(long value, String name, long defVal) throws IOException {
+    if (isOmitDefaults() && value == defVal) {
+      return;
+    }
     jsonGenerator.writeNumberField(name, value);
   }
 
   @Override
   public void write(long[] value, String name, long[] defVal) throws IOException {
+    if (isOmitDefaults() && (value == null || Arrays.equals(value, defVal))) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
     if (value == null) {
       return;
     }
+    SidecarWriter sidecar = getSidecar(value.length * 8);
+    if (sidecar != null || isBinaryArrays()) {
+      jsonGenerator.writeFieldName(name);
+      BinaryPayloads.write(jsonGenerator, value, sidecar);
+      return;
+    }
     jsonGenerator.writeArrayFieldStart(name);
     for (int i = 0; i < value.length; i++) {
       jsonGenerator.writeNumber(value[i]);
@@ -191,6 +384,9 @@ public class JsonOutputCapsule implements OutputCapsule {
 
   @Override
   public void write(long[][] value, String name, long[][] defVal) throws IOException {
+    if (isOmitDefaults() && (value == null || Arrays.deepEquals(value, defVal))) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
@@ -206,17 +402,34 @@ public class JsonOutputCapsule implements OutputCapsule {
 
   @Override
   public void write(short value, String name, short defVal) throws IOException {
+    if (isOmitDefaults() && value == defVal) {
+      return;
+    }
     jsonGenerator.writeNumberField(name, value);
   }
 
   @Override
   public void write(short[] value, String name, short[] defVal) throws IOException {
+    if (isOmitDefaults() && (value == null || Arrays.equals(value, defVal))) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
     if (value == null) {
       return;
     }
+    SidecarWriter sidecar = getSidecar(value.length * 2);
+    if (isDeltaIntegers(value.length)) {
+      jsonGenerator.writeFieldName(name);
+      BinaryPayloads.writeDeltas(jsonGenerator, ShortBuffer.wrap(value), sidecar);
+      return;
+    }
+    if (sidecar != null || isBinaryArrays()) {
+      jsonGenerator.writeFieldName(name);
+      BinaryPayloads.write(jsonGenerator, value, sidecar);
+      return;
+    }
     jsonGenerator.writeArrayFieldStart(name);
     for (int i = 0; i < value.length; i++) {
       jsonGenerator.writeNumber(value[i]);
@@ -226,6 +439,9 @@ public class JsonOutputCapsule implements OutputCapsule {
 
   @Override
   public void write(short[][] value, String name, short[][] defVal) throws IOException {
+    if (isOmitDefaults() && (value == null || Arrays.deepEquals(value, defVal))) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
@@ -245,11 +461,17 @@ public class JsonOutputCapsule implements OutputCapsule {
 
   @Override
   public void write(boolean value, String name, boolean defVal) throws IOException {
+    if (isOmitDefaults() && value == defVal) {
+      return;
+    }
     jsonGenerator.writeBooleanField(name, value);
   }
 
   @Override
   public void write(boolean[] value, String name, boolean[] defVal) throws IOException {
+    if (isOmitDefaults() && (value == null || Arrays.equals(value, defVal))) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
@@ -265,6 +487,9 @@ public class JsonOutputCapsule implements OutputCapsule {
 
   @Override
   public void write(boolean[][] value, String name, boolean[][] defVal) throws IOException {
+    if (isOmitDefaults() && (value == null || Arrays.deepEquals(value, defVal))) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
@@ -284,17 +509,40 @@ public class JsonOutputCapsule implements OutputCapsule {
 
   @Override
   public void write(String value, String name, String defVal) throws IOException {
+    if (isOmitDefaults() && (value == null || value.equals(defVal))) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
     if (value == null) {
       return;
     }
-    jsonGenerator.writeStringField(name, value);
+    writeStringValue(name, value);
+  }
+
+  private void writeStringValue(String name, String value) throws IOException {
+    if (dictionary != null) {
+      jsonGenerator.writeFieldName(name);
+      writeDictionaryId(value, false);
+    } else {
+      jsonGenerator.writeStringField(name, value);
+    }
+  }
+
+  private void writeDictionaryId(String value, boolean className) throws IOException {
+    if (task != null) {
+      task.writeDictionaryId(jsonGenerator, value, className);
+    } else {
+      jsonGenerator.writeNumber(className ? dictionary.classId(value) : dictionary.stringId(value));
+    }
   }
 
   @Override
   public void write(String[] value, String name, String[] defVal) throws IOException {
+    if (isOmitDefaults() && (value == null || Arrays.equals(value, defVal))) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
@@ -310,6 +558,9 @@ public class JsonOutputCapsule implements OutputCapsule {
 
   @Override
   public void write(String[][] value, String name, String[][] defVal) throws IOException {
+    if (isOmitDefaults() && (value == null || Arrays.deepEquals(value, defVal))) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
@@ -326,6 +577,9 @@ public class JsonOutputCapsule implements OutputCapsule {
 
   @Override
   public void write(BitSet value, String name, BitSet defVal) throws IOException {
+    if (isOmitDefaults() && (value == null || value.equals(defVal))) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
@@ -341,6 +595,9 @@ public class JsonOutputCapsule implements OutputCapsule {
 
   @Override
   public void write(Savable object, String name, Savable defVal) throws IOException {
+    if (isOmitDefaults() && (object == null || object == defVal)) {
+      return;
+    }
     if (object == null) {
       object = defVal;
     }
@@ -348,16 +605,123 @@ public class JsonOutputCapsule implements OutputCapsule {
       return;
     }
     jsonGenerator.writeFieldName(name);
+    writeSavableElem(object);
+  }
+
+  /**
+   * Write a savable as a [className, {"@id": id, fields}] array element the first time, and as a
+   * {"ref": id} object the next times so shared savables are only written once.
+   */
+  void writeSavableElem(Savable object) throws IOException {
+    if (writeReference(object)) {
+      return;
+    }
     jsonGenerator.writeStartArray();
-    jsonGenerator.writeString(object.getClass().getName());
+    writeSavableFields(object, object.getClass().getName());
+    jsonGenerator.writeEndArray();
+  }
+
+  /** Savable maps are flattened: className, {fields} or a {"ref": id} object. */
+  private void writeSavableMapElem(Savable object) throws IOException {
+    if (writeReference(object)) {
+      return;
+    }
+    writeSavableFields(object, object.getClass().getCanonicalName());
+  }
+
+  private boolean writeReference(Savable object) throws IOException {
+    Integer id = savableIds.get(object);
+    if (id == null && (task == null || task.define(object))) {
+      return false;
+    }
+    jsonGenerator.writeStartObject();
+    jsonGenerator.writeFieldName(REF_FIELD);
+    if (task != null) {
+      task.writeReference(jsonGenerator, object);
+    } else {
+      jsonGenerator.writeNumber(id);
+    }
+    jsonGenerator.writeEndObject();
+    return true;
+  }
+
+  private void writeSavableFields(Savable object, String className) throws IOException {
+    // registered before its fields so back references point to it
+    int id = register(object);
+    if (dictionary != null) {
+      writeDictionaryId(className, true);
+    } else {
+      jsonGenerator.writeString(className);
+    }
     jsonGenerator.writeStartObject();
-    object.write(exporter);
+    jsonGenerator.writeFieldName(ID_FIELD);
+    if (task != null) {
+      task.writeDefinition(jsonGenerator, object);
+    } else {
+      jsonGenerator.writeNumber(id);
+    }
+    VertexBuffer.Type outerBufferType = bufferType;
+    bufferType = null;
+    writeFields(object);
+    bufferType = outerBufferType;
     jsonGenerator.writeEndObject();
-    jsonGenerator.writeEndArray();
+  }
+
+  /** Write the fields of a savable, measured when the exporter has a listener. */
+  private void writeFields(Savable object) throws IOException {
+    SavableListener listener = getListener();
+    if (listener == null) {
+      object.write(exporter);
+      return;
+    }
+    JsonExporter jsonExporter = (JsonExporter) exporter;
+    Class<? extends Savable> outerType = savableType;
+    long outerNanos = nestedNanos;
+    long outerBytes = nestedBytes;
+    savableType = object.getClass();
+    nestedNanos = 0;
+    nestedBytes = 0;
+    long startBytes = jsonExporter.getBytesWritten(jsonGenerator);
+    long start = System.nanoTime();
+    try {
+      object.write(exporter);
+    } finally {
+      long nanos = System.nanoTime() - start;
+      long bytes = startBytes < 0 ? -1 : jsonExporter.getBytesWritten(jsonGenerator) - startBytes;
+      // the nested savables are reported with their own time and bytes
+      listener.savableWritten(
+          savableType, bytes < 0 ? -1 : bytes - nestedBytes, nanos - nestedNanos);
+      savableType = outerType;
+      nestedNanos = outerNanos + nanos;
+      nestedBytes = outerBytes + Math.max(bytes, 0);
+    }
+  }
+
+  /** @return the class of the savable being written, if the exporter has a listener */
+  Class<? extends Savable> getSavableType() {
+    return savableType;
+  }
+
+  /** @return the id given to the savable, the next one */
+  int register(Savable object) {
+    int id = savableIds.size();
+    savableIds.put(object, id);
+    return id;
+  }
+
+  boolean isWritten(Savable object) {
+    return savableIds.containsKey(object);
+  }
+
+  Integer getSavableId(Savable object) {
+    return savableIds.get(object);
   }
 
   @Override
   public void write(Savable[] objects, String name, Savable[] defVal) throws IOException {
+    if (isOmitDefaults() && (objects == null || objects == defVal)) {
+      return;
+    }
     if (objects == null) {
       objects = defVal;
     }
@@ -367,19 +731,21 @@ public class JsonOutputCapsule implements OutputCapsule {
 
     jsonGenerator.writeFieldName(name);
     jsonGenerator.writeStartArray();
-    for (int i = 0; i < objects.length; i++) {
-      jsonGenerator.writeStartArray();
-      jsonGenerator.writeString(objects[i].getClass().getName());
-      jsonGenerator.writeStartObject();
-      objects[i].write(exporter);
-      jsonGenerator.writeEndObject();
-      jsonGenerator.writeEndArray();
+    if (objects.length >= ParallelExport.MIN_SAVABLES && isParallel()) {
+      new ParallelExport((JsonExporter) exporter, this, dictionary).write(jsonGenerator, objects);
+    } else {
+      for (int i = 0; i < objects.length; i++) {
+        writeSavableElem(objects[i]);
+      }
     }
     jsonGenerator.writeEndArray();
   }
 
   @Override
   public void write(Savable[][] value, String name, Savable[][] defVal) throws IOException {
+    if (isOmitDefaults() && (value == null || Arrays.deepEquals(value, defVal))) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
@@ -392,12 +758,7 @@ public class JsonOutputCapsule implements OutputCapsule {
     for (int y = 0; y < value.length; y++) {
       jsonGenerator.writeStartArray();
       for (int i = 0; i < value[y].length; i++) {
-        jsonGenerator.writeStartArray();
-        jsonGenerator.writeString(value[y][i].getClass().getName());
-        jsonGenerator.writeStartObject();
-        value[y][i].write(exporter);
-        jsonGenerator.writeEndObject();
-        jsonGenerator.writeEndArray();
+        writeSavableElem(value[y][i]);
       }
       jsonGenerator.writeEndArray();
     }
@@ -407,6 +768,9 @@ public class JsonOutputCapsule implements OutputCapsule {
   @Override
   public void writeSavableArrayList(ArrayList array, String name, ArrayList defVal)
       throws IOException {
+    if (isOmitDefaults() && (array == null || array == defVal)) {
+      return;
+    }
     if (array == null) {
       array = defVal;
     }
@@ -423,6 +787,9 @@ public class JsonOutputCapsule implements OutputCapsule {
   @Override
   public void writeSavableArrayListArray(ArrayList[] objects, String name, ArrayList[] defVal)
       throws IOException {
+    if (isOmitDefaults() && (objects == null || objects == defVal)) {
+      return;
+    }
     if (objects == null) {
       objects = defVal;
     }
@@ -438,13 +805,7 @@ public class JsonOutputCapsule implements OutputCapsule {
         if (!(arrayList.get(i) instanceof Savable)) {
           continue;
         }
-        jsonGenerator.writeStartArray();
-        Savable savable = (Savable) arrayList.get(i);
-        jsonGenerator.writeString(savable.getClass().getName());
-        jsonGenerator.writeStartObject();
-        savable.write(exporter);
-        jsonGenerator.writeEndObject();
-        jsonGenerator.writeEndArray();
+        writeSavableElem((Savable) arrayList.get(i));
       }
       jsonGenerator.writeEndArray();
     }
@@ -454,6 +815,9 @@ public class JsonOutputCapsule implements OutputCapsule {
   @Override
   public void writeSavableArrayListArray2D(ArrayList[][] objects, String name, ArrayList[][] defVal)
       throws IOException {
+    if (isOmitDefaults() && (objects == null || objects == defVal)) {
+      return;
+    }
     if (objects == null) {
       objects = defVal;
     }
@@ -473,13 +837,7 @@ public class JsonOutputCapsule implements OutputCapsule {
           if (!(arrayList.get(z) instanceof Savable)) {
             continue;
           }
-          jsonGenerator.writeStartArray();
-          Savable savable = (Savable) arrayList.get(z);
-          jsonGenerator.writeString(savable.getClass().getName());
-          jsonGenerator.writeStartObject();
-          savable.write(exporter);
-          jsonGenerator.writeEndObject();
-          jsonGenerator.writeEndArray();
+          writeSavableElem((Savable) arrayList.get(z));
         }
         jsonGenerator.writeEndArray();
       }
@@ -491,6 +849,9 @@ public class JsonOutputCapsule implements OutputCapsule {
   @Override
   public void writeFloatBufferArrayList(
       ArrayList<FloatBuffer> array, String name, ArrayList<FloatBuffer> defVal) throws IOException {
+    if (isOmitDefaults() && (array == null || array == defVal)) {
+      return;
+    }
     if (array == null) {
       array = defVal;
     }
@@ -498,17 +859,13 @@ public class JsonOutputCapsule implements OutputCapsule {
       return;
     }
 
+    SidecarWriter sidecar = getSidecar();
+    Quantization quantization = getQuantization(name);
+    boolean xor = isXorFloats(name);
     jsonGenerator.writeFieldName(name);
     jsonGenerator.writeStartArray();
     for (int i = 0; i < array.size(); i++) {
-      jsonGenerator.writeStartArray();
-      FloatBuffer floatBuffer = array.get(i);
-      if (floatBuffer.hasArray()) {
-        for (int y = 0; y < floatBuffer.array().length; y++) {
-          jsonGenerator.writeNumber(floatBuffer.array()[y]);
-        }
-      }
-      jsonGenerator.writeEndArray();
+      writeFloatBuffer(array.get(i), quantization, xor, sidecar);
     }
     jsonGenerator.writeEndArray();
   }
@@ -519,6 +876,9 @@ public class JsonOutputCapsule implements OutputCapsule {
       String name,
       Map<? extends Savable, ? extends Savable> defVal)
       throws IOException {
+    if (isOmitDefaults() && (map == null || map == defVal)) {
+      return;
+    }
     if (map == null) {
       map = defVal;
     }
@@ -532,16 +892,8 @@ public class JsonOutputCapsule implements OutputCapsule {
     jsonGenerator.writeStartArray();
     while (entryIterator.hasNext()) {
       Map.Entry<? extends Savable, ? extends Savable> entry = entryIterator.next();
-      Savable key = entry.getKey();
-      jsonGenerator.writeString(key.getClass().getCanonicalName());
-      jsonGenerator.writeStartObject();
-      key.write(exporter);
-      jsonGenerator.writeEndObject();
-      Savable value = entry.getValue();
-      jsonGenerator.writeString(value.getClass().getCanonicalName());
-      jsonGenerator.writeStartObject();
-      value.write(exporter);
-      jsonGenerator.writeEndObject();
+      writeSavableMapElem(entry.getKey());
+      writeSavableMapElem(entry.getValue());
     }
     jsonGenerator.writeEndArray();
   }
@@ -550,6 +902,9 @@ public class JsonOutputCapsule implements OutputCapsule {
   public void writeStringSavableMap(
       Map<String, ? extends Savable> map, String name, Map<String, ? extends Savable> defVal)
       throws IOException {
+    if (isOmitDefaults() && (map == null || map == defVal)) {
+      return;
+    }
     if (map == null) {
       map = defVal;
     }
@@ -569,6 +924,9 @@ public class JsonOutputCapsule implements OutputCapsule {
   public void writeIntSavableMap(
       IntMap<? extends Savable> map, String name, IntMap<? extends Savable> defVal)
       throws IOException {
+    if (isOmitDefaults() && (map == null || map == defVal)) {
+      return;
+    }
     if (map == null) {
       map = defVal;
     }
@@ -587,90 +945,144 @@ public class JsonOutputCapsule implements OutputCapsule {
 
   @Override
   public void write(FloatBuffer value, String name, FloatBuffer defVal) throws IOException {
+    if (isOmitDefaults() && (value == null || value == defVal)) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
     if (value == null) {
       return;
     }
+    jsonGenerator.writeFieldName(name);
+    writeFloatBuffer(value, getQuantization(name), isXorFloats(name), getSidecar());
+  }
 
-    jsonGenerator.writeArrayFieldStart(name);
-    if (value.hasArray()) {
-      for (int i = 0; i < value.array().length; i++) {
-        jsonGenerator.writeNumber(value.array()[i]);
+  private void writeFloatBuffer(
+      FloatBuffer value, Quantization quantization, boolean xor, SidecarWriter sidecar)
+      throws IOException {
+    if (quantization != null && quantization.getKind() != Quantization.Kind.DECIMALS) {
+      BinaryPayloads.write(jsonGenerator, value, quantization, sidecar);
+      return;
+    }
+    if (xor || sidecar != null || isBinaryArrays()) {
+      FloatBuffer values =
+          quantization != null ? FloatBuffer.wrap(round(value, quantization)) : value;
+      if (xor) {
+        BinaryPayloads.writeXor(jsonGenerator, values, sidecar);
+      } else {
+        BinaryPayloads.write(jsonGenerator, values, sidecar);
       }
+      return;
     }
+    jsonGenerator.writeStartArray();
+    writeBufferContent(value, quantization);
     jsonGenerator.writeEndArray();
   }
 
   @Override
   public void write(IntBuffer value, String name, IntBuffer defVal) throws IOException {
+    if (isOmitDefaults() && (value == null || value == defVal)) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
     if (value == null) {
       return;
     }
+    SidecarWriter sidecar = getSidecar();
+    if (isDeltaIntegers(value.limit())) {
+      jsonGenerator.writeFieldName(name);
+      BinaryPayloads.writeDeltas(jsonGenerator, value, sidecar);
+      return;
+    }
+    if (sidecar != null || isBinaryArrays()) {
+      jsonGenerator.writeFieldName(name);
+      BinaryPayloads.write(jsonGenerator, value, sidecar);
+      return;
+    }
 
     jsonGenerator.writeArrayFieldStart(name);
-    if (value.hasArray()) {
-      for (int i = 0; i < value.array().length; i++) {
-        jsonGenerator.writeNumber(value.array()[i]);
-      }
-    }
+    writeBufferContent(value);
     jsonGenerator.writeEndArray();
   }
 
   @Override
   public void write(ByteBuffer value, String name, ByteBuffer defVal) throws IOException {
+    if (isOmitDefaults() && (value == null || value == defVal)) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
     if (value == null) {
       return;
     }
+    SidecarWriter sidecar = getSidecar();
+    if (sidecar != null || isBinaryArrays()) {
+      jsonGenerator.writeFieldName(name);
+      BinaryPayloads.write(jsonGenerator, value, sidecar);
+      return;
+    }
 
     jsonGenerator.writeArrayFieldStart(name);
-    if (value.hasArray()) {
-      for (int i = 0; i < value.array().length; i++) {
-        jsonGenerator.writeNumber(value.array()[i]);
-      }
-    }
+    writeBufferContent(value);
     jsonGenerator.writeEndArray();
   }
 
   @Override
   public void write(ShortBuffer value, String name, ShortBuffer defVal) throws IOException {
+    if (isOmitDefaults() && (value == null || value == defVal)) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
     if (value == null) {
       return;
     }
+    SidecarWriter sidecar = getSidecar();
+    if (isDeltaIntegers(value.limit())) {
+      jsonGenerator.writeFieldName(name);
+      BinaryPayloads.writeDeltas(jsonGenerator, value, sidecar);
+      return;
+    }
+    if (sidecar != null || isBinaryArrays()) {
+      jsonGenerator.writeFieldName(name);
+      BinaryPayloads.write(jsonGenerator, value, sidecar);
+      return;
+    }
 
     jsonGenerator.writeArrayFieldStart(name);
-    if (value.hasArray()) {
-      for (int i = 0; i < value.array().length; i++) {
-        jsonGenerator.writeNumber(value.array()[i]);
-      }
-    }
+    writeBufferContent(value);
     jsonGenerator.writeEndArray();
   }
 
   @Override
   public void write(Enum value, String name, Enum defVal) throws IOException {
+    if (value instanceof VertexBuffer.Type) {
+      // written by vertex buffers before their data, whether or not it is omitted
+      bufferType = (VertexBuffer.Type) value;
+    }
+    if (isOmitDefaults() && (value == null || value == defVal)) {
+      return;
+    }
     if (value == null) {
       value = defVal;
     }
     if (value == null) {
       return;
     }
-    jsonGenerator.writeStringField(name, String.valueOf(value));
+    writeStringValue(name, String.valueOf(value));
   }
 
   @Override
   public void writeByteBufferArrayList(
       ArrayList<ByteBuffer> array, String name, ArrayList<ByteBuffer> defVal) throws IOException {
+    if (isOmitDefaults() && (array == null || array == defVal)) {
+      return;
+    }
     if (array == null) {
       array = defVal;
     }
@@ -678,18 +1090,144 @@ public class JsonOutputCapsule implements OutputCapsule {
       return;
     }
 
+    SidecarWriter sidecar = getSidecar();
     jsonGenerator.writeFieldName(name);
     jsonGenerator.writeStartArray();
     for (int i = 0; i < array.size(); i++) {
-      jsonGenerator.writeStartArray();
-      ByteBuffer buffer = array.get(i);
-      if (buffer.hasArray()) {
-        for (int y = 0; y < buffer.array().length; y++) {
-          jsonGenerator.writeNumber(buffer.array()[y]);
-        }
+      if (sidecar != null || isBinaryArrays()) {
+        BinaryPayloads.write(jsonGenerator, array.get(i), sidecar);
+        continue;
       }
+      jsonGenerator.writeStartArray();
+      writeBufferContent(array.get(i));
       jsonGenerator.writeEndArray();
     }
     jsonGenerator.writeEndArray();
   }
+
+  private void writeFloat(float value) throws IOException {
+    if (formatNumbers && Float.isFinite(value)) {
+      jsonGenerator.writeRawValue(numberChars, 0, ShortestDecimal.format(value, numberChars, 0));
+    } else {
+      jsonGenerator.writeNumber(value);
+    }
+  }
+
+  private void writeDouble(double value) throws IOException {
+    if (formatNumbers && Double.isFinite(value)) {
+      jsonGenerator.writeRawValue(numberChars, 0, ShortestDecimal.format(value, numberChars, 0));
+    } else {
+      jsonGenerator.writeNumber(value);
+    }
+  }
+
+  /** Write the float or double a parallel export buffered, as a sequential export would. */
+  void writeFloatingPoint(JsonParser parser) throws IOException {
+    if (parser.getNumberType() == JsonParser.NumberType.FLOAT) {
+      writeFloat(parser.getFloatValue());
+    } else {
+      writeDouble(parser.getDoubleValue());
+    }
+  }
+
+  /** Write the tokens of a buffer, formatting the floats and doubles as they would be directly. */
+  void copy(TokenBuffer buffer) throws IOException {
+    try (JsonParser parser = buffer.asParser()) {
+      JsonToken token;
+      while ((token = parser.nextToken()) != null) {
+        if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+          writeFloatingPoint(parser);
+        } else {
+          jsonGenerator.copyCurrentEvent(parser);
+        }
+      }
+    }
+  }
+
+  /*
+   * Buffers are written from 0 to their limit, like BinaryExporter does, without moving their
+   * position. Direct buffers have no backing array, so the content is copied by chunks into a
+   * scratch array reused for the whole export.
+   */
+
+  private void writeBufferContent(FloatBuffer buffer, Quantization quantization)
+      throws IOException {
+    FloatBuffer source = buffer.duplicate();
+    source.rewind();
+    if (floatChunk == null) {
+      floatChunk = new float[BUFFER_CHUNK_SIZE];
+    }
+    while (source.hasRemaining()) {
+      int length = Math.min(floatChunk.length, source.remaining());
+      source.get(floatChunk, 0, length);
+      for (int i = 0; i < length; i++) {
+        writeFloat(quantization != null ? quantization.round(floatChunk[i]) : floatChunk[i]);
+      }
+    }
+  }
+
+  /** @return a copy of the values rounded to the decimals of the quantization */
+  private static float[] round(float[] values, Quantization quantization) {
+    float[] res = new float[values.length];
+    for (int i = 0; i < values.length; i++) {
+      res[i] = quantization.round(values[i]);
+    }
+    return res;
+  }
+
+  private static float[] round(FloatBuffer buffer, Quantization quantization) {
+    FloatBuffer source = buffer.duplicate();
+    source.rewind();
+    float[] res = new float[source.remaining()];
+    source.get(res);
+    for (int i = 0; i < res.length; i++) {
+      res[i] = quantization.round(res[i]);
+    }
+    return res;
+  }
+
+  private void writeBufferContent(IntBuffer buffer) throws IOException {
+    IntBuffer source = buffer.duplicate();
+    source.rewind();
+    if (intChunk == null) {
+      intChunk = new int[BUFFER_CHUNK_SIZE];
+    }
+    while (source.hasRemaining()) {
+      int length = Math.min(intChunk.length, source.remaining());
+      source.get(intChunk, 0, length);
+      for (int i = 0; i < length; i++) {
+        jsonGenerator.writeNumber(intChunk[i]);
+      }
+    }
+  }
+
+  private void writeBufferContent(ShortBuffer buffer) throws IOException {
+    ShortBuffer source = buffer.duplicate();
+    source.rewind();
+    if (shortChunk == null) {
+      shortChunk = new short[BUFFER_CHUNK_SIZE];
+    }
+    while (source.hasRemaining()) {
+      int length = Math.min(shortChunk.length, source.remaining());
+      source.get(shortChunk, 0, length);
+      for (int i = 0; i < length; i++) {
+        jsonGenerator.writeNumber(shortChunk[i]);
+      }
+    }
+  }
+
+  private void writeBufferContent(ByteBuffer buffer) throws IOException {
+    ByteBuffer source = buffer.duplicate();
+    source.rewind();
+    if (byteChunk == null) {
+      byteChunk = new byte[BUFFER_CHUNK_SIZE];
+    }
+    while (source.hasRemaining()) {
+      int length = Math.min(byteChunk.length, source.remaining());
+      source.get(byteChunk, 0, length);
+      for (int i = 0; i < length; i++) {
+        jsonGenerator.writeNumber(byteChunk[i]);
+      }
+    }
+  }
 }
@@ -0,0 +1,897 @@
+package fr.exratio.jme.exporter;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.jme3.export.InputCapsule;
+import com.jme3.export.Savable;
+import com.jme3.util.IntMap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A streaming InputCapsule which pulls the document from a Jackson {@link JsonParser} instead of
+ * building the whole {@link JsonNode} tree up front.
+ *
+ * <p>Fields are consumed in the order {@link JsonOutputCapsule} wrote them. When a {@link
+ * Savable#read} asks for a field further down its object, the fields skipped on the way are kept
+ * in a {@link TokenBuffer} until they are asked for or the object ends. A field can only be read
+ * once per object.
+ *
+ * @author NyouB
+ */
+public class JsonStreamInputCapsule implements InputCapsule {
+
+  private static final Logger logger = LoggerFactory.getLogger(JsonStreamInputCapsule.class);
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  private static final int INITIAL_ARRAY_CAPACITY = 64;
+
+  private final JsonImporter importer;
+  private final JsonParser rootParser;
+  // used to decode the small values which are read as a tree
+  private final JsonInputCapsule fieldReader;
+  // savables already read, by the id they were written with
+  private final IntMap<Savable> savables = new IntMap<>();
+  // class names and strings of a document written with a header dictionary
+  private JsonDictionary dictionary;
+  private Frame frame;
+
+  public JsonStreamInputCapsule(InputStream stream, JsonImporter importer) throws IOException {
+    this(importer.getObjectMapper().createParser(stream), importer);
+  }
+
+  public JsonStreamInputCapsule(String json, JsonImporter importer) throws IOException {
+    this(OBJECT_MAPPER.getFactory().createParser(json), importer);
+  }
+
+  public JsonStreamInputCapsule(JsonParser parser, JsonImporter importer) {
+    if (parser.getCodec() == null) {
+      parser.setCodec(OBJECT_MAPPER);
+    }
+    this.rootParser = parser;
+    this.importer = importer;
+    this.fieldReader = new JsonInputCapsule(JsonNodeFactory.instance.objectNode(), importer);
+  }
+
+  @Override
+  public int getSavableVersion(Class<? extends Savable> clazz) {
+    return 0;
+  }
+
+  /**
+   * Read the next [className, {fields}] element of the stream. Used to read the root savable of a
+   * document.
+   */
+  public Savable readSavableFromCurrentArrayElem(Savable defVal) throws IOException {
+    if (rootParser.nextToken() == null) {
+      return defVal;
+    }
+    if (rootParser.currentToken() == JsonToken.START_OBJECT && !readHeader(rootParser)) {
+      return defVal;
+    }
+    return readSavableElem(rootParser, defVal);
+  }
+
+  /**
+   * Read the dictionary written before the root of a {"classes", "strings", "root"} document.
+   *
+   * @return true if the parser is on the root value
+   */
+  private boolean readHeader(JsonParser parser) throws IOException {
+    dictionary = new JsonDictionary();
+    fieldReader.setDictionary(dictionary);
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      if (JsonDictionary.ROOT.equals(field)) {
+        return true;
+      }
+      dictionary.read(field, parser.readValueAsTree());
+    }
+    return false;
+  }
+
+  /** @return the class name or the dictionary id of a savable, the parser being on it */
+  private static JsonNode readClass(JsonParser parser) throws IOException {
+    if (parser.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+      return IntNode.valueOf(parser.getIntValue());
+    }
+    return TextNode.valueOf(parser.getValueAsString());
+  }
+
+  private Savable newSavable(JsonNode classNode) throws Exception {
+    if (dictionary != null && classNode.isInt()) {
+      return dictionary.newInstance(classNode.asInt());
+    }
+    return SavableFactory.newInstance(classNode.asText());
+  }
+
+  /**
+   * Position a parser on the first token of the given field value of the current object.
+   *
+   * @return the parser to read the value from, or null if the object has no such field
+   */
+  private JsonParser seek(String name) throws IOException {
+    JsonParser res = find(name);
+    if (importer.getListener() != null) {
+      importer.fieldLookedUp(name, res != null);
+    }
+    return res;
+  }
+
+  private JsonParser find(String name) throws IOException {
+    if (frame == null) {
+      throw new IOException("No savable is being read");
+    }
+    if (frame.pending != null) {
+      TokenBuffer buffered = frame.pending.remove(name);
+      if (buffered != null) {
+        JsonParser parser = buffered.asParser();
+        parser.nextToken();
+        return parser;
+      }
+    }
+    if (frame.exhausted) {
+      return null;
+    }
+    JsonParser parser = frame.parser;
+    while (frame.nextField()) {
+      String fieldName = parser.getCurrentName();
+      parser.nextToken();
+      if (fieldName.equals(name)) {
+        return parser;
+      }
+      // asked out of order: keep the skipped value for later
+      TokenBuffer buffer = new TokenBuffer(parser);
+      copyStructure(parser, buffer);
+      if (frame.pending == null) {
+        frame.pending = new HashMap<>();
+      }
+      frame.pending.put(fieldName, buffer);
+    }
+    frame.exhausted = true;
+    return null;
+  }
+
+  /**
+   * Copy the value the parser is on, like {@link TokenBuffer#copyCurrentStructure}, except for
+   * the data of binary payloads which is decoded into its buffer rather than kept as a string.
+   * Fields are skipped when one missing from the document is asked, such as the mipmap sizes of
+   * most images which come before their data.
+   */
+  private void copyStructure(JsonParser parser, TokenBuffer buffer) throws IOException {
+    JsonToken token = parser.currentToken();
+    if (token == JsonToken.START_ARRAY) {
+      buffer.writeStartArray();
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        copyStructure(parser, buffer);
+      }
+      buffer.writeEndArray();
+      return;
+    }
+    if (token != JsonToken.START_OBJECT) {
+      buffer.copyCurrentEvent(parser);
+      return;
+    }
+    buffer.writeStartObject();
+    int length = -1;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      buffer.writeFieldName(name);
+      token = parser.nextToken();
+      if (BinaryPayloads.LENGTH.equals(name) && token == JsonToken.VALUE_NUMBER_INT) {
+        length = parser.getIntValue();
+      }
+      if (BinaryPayloads.DATA.equals(name) && token == JsonToken.VALUE_STRING && length >= 0) {
+        buffer.writeEmbeddedObject(
+            BinaryPayloads.decode(parser, length, importer.isDirectBuffers()));
+      } else {
+        copyStructure(parser, buffer);
+      }
+    }
+    buffer.writeEndObject();
+  }
+
+  /** Load the given field as a tree in the field reader. */
+  private boolean stage(String name) throws IOException {
+    JsonParser parser = seek(name);
+    return parser != null && readTree(parser, name);
+  }
+
+  /**
+   * Read a savable serialized as [className, {fields}], the parser being on the START_ARRAY, or a
+   * {"ref": id} object.
+   */
+  private Savable readSavableElem(JsonParser parser, Savable defVal) throws IOException {
+    if (parser.currentToken() == JsonToken.START_OBJECT) {
+      return readReference(parser, defVal);
+    }
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      parser.skipChildren();
+      return defVal;
+    }
+    if (parser.nextToken() == JsonToken.END_ARRAY) {
+      return defVal;
+    }
+    JsonNode classNode = readClass(parser);
+    parser.nextToken();
+    Savable res = readSavableObject(parser, classNode, defVal);
+    parser.nextToken();
+    return res;
+  }
+
+  /** Read the fields of a savable, the parser being on the START_OBJECT. */
+  private Savable readSavableObject(JsonParser parser, JsonNode classNode, Savable defVal)
+      throws IOException {
+    Frame fields = new Frame(parser);
+    return readSavableFields(fields, classNode, fields.readId(), defVal);
+  }
+
+  private Savable readSavableFields(Frame fields, JsonNode classNode, int id, Savable defVal)
+      throws IOException {
+    fields.parent = frame;
+    frame = fields;
+    Savable res = null;
+    try {
+      // already read through a forward reference
+      res = id < 0 ? null : savables.get(id);
+      if (res == null) {
+        res = newSavable(classNode);
+        // registered before its fields so back references resolve to it
+        if (id >= 0) {
+          savables.put(id, res);
+        }
+        importer.readFields(res);
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+      res = defVal;
+    } finally {
+      frame.skipRemainingFields();
+      frame = fields.parent;
+    }
+    return res;
+  }
+
+  /** Resolve a {"ref": id} object, the parser being on the START_OBJECT. */
+  private Savable readReference(JsonParser parser, Savable defVal) throws IOException {
+    int id = -1;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      boolean isRef = JsonOutputCapsule.REF_FIELD.equals(parser.getCurrentName());
+      parser.nextToken();
+      if (isRef) {
+        id = parser.getValueAsInt(-1);
+      } else {
+        parser.skipChildren();
+      }
+    }
+    Savable res = savables.get(id);
+    return res != null ? res : readForwardReference(id, defVal);
+  }
+
+  /**
+   * A savable can be referenced before its definition when read() does not ask for the fields in
+   * the order write() wrote them. The definition was then skipped on the way and is buffered in
+   * one of the savables being read.
+   */
+  private Savable readForwardReference(int id, Savable defVal) throws IOException {
+    for (Frame pendingFrame = frame; pendingFrame != null; pendingFrame = pendingFrame.parent) {
+      if (pendingFrame.pending == null) {
+        continue;
+      }
+      for (TokenBuffer buffer : pendingFrame.pending.values()) {
+        JsonParser parser = buffer.asParser();
+        JsonNode classNode = null;
+        JsonToken token;
+        while ((token = parser.nextToken()) != null) {
+          if (token == JsonToken.VALUE_STRING || token == JsonToken.VALUE_NUMBER_INT) {
+            classNode = readClass(parser);
+            continue;
+          }
+          if (token == JsonToken.START_OBJECT && classNode != null) {
+            Frame fields = new Frame(parser);
+            if (fields.readId() == id) {
+              return readSavableFields(fields, classNode, id, defVal);
+            }
+          }
+          classNode = null;
+        }
+      }
+    }
+    logger.warn("Unresolved savable reference {}", id);
+    return defVal;
+  }
+
+  public byte readByte(String name, byte defVal) throws IOException {
+    return stage(name) ? fieldReader.readByte(name, defVal) : defVal;
+  }
+
+  /** The base64 text is decoded from the parser buffer, without making a string of it. */
+  public byte[] readByteArray(String name, byte[] defVal) throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null || parser.currentToken() == JsonToken.VALUE_NULL) {
+      return defVal;
+    }
+    if (!parser.currentToken().isScalarValue()) {
+      return readTree(parser, name) ? fieldReader.readByteArray(name, defVal) : defVal;
+    }
+    byte[] res = parser.getBinaryValue();
+    return res.length < 1 ? defVal : res;
+  }
+
+  public byte[][] readByteArray2D(String name, byte[][] defVal) throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      return readTree(parser, name) ? fieldReader.readByteArray2D(name, defVal) : defVal;
+    }
+    ArrayList<byte[]> res = new ArrayList<>();
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      res.add(parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getBinaryValue());
+    }
+    return res.isEmpty() ? defVal : res.toArray(new byte[0][]);
+  }
+
+  public int readInt(String name, int defVal) throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    return parser.getValueAsInt(defVal);
+  }
+
+  public int[] readIntArray(String name, int[] defVal) throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      return readTree(parser, name) ? fieldReader.readIntArray(name, defVal) : defVal;
+    }
+    int[] res = readInts(parser);
+    return res.length < 1 ? defVal : res;
+  }
+
+  public int[][] readIntArray2D(String name, int[][] defVal) throws IOException {
+    return stage(name) ? fieldReader.readIntArray2D(name, defVal) : defVal;
+  }
+
+  public float readFloat(String name, float defVal) throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    return readFloatValue(parser, defVal);
+  }
+
+  public float[] readFloatArray(String name, float[] defVal) throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      return readTree(parser, name) ? fieldReader.readFloatArray(name, defVal) : defVal;
+    }
+    float[] res = readFloats(parser);
+    return res.length < 1 ? defVal : res;
+  }
+
+  public float[][] readFloatArray2D(String name, float[][] defVal) throws IOException {
+    return stage(name) ? fieldReader.readFloatArray2D(name, defVal) : defVal;
+  }
+
+  public double readDouble(String name, double defVal) throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    if (parser.currentToken().isNumeric()) {
+      return DecimalParser.doubleValue(parser);
+    }
+    return parser.getValueAsDouble(defVal);
+  }
+
+  public double[] readDoubleArray(String name, double[] defVal) throws IOException {
+    return stage(name) ? fieldReader.readDoubleArray(name, defVal) : defVal;
+  }
+
+  public double[][] readDoubleArray2D(String name, double[][] defVal) throws IOException {
+    return stage(name) ? fieldReader.readDoubleArray2D(name, defVal) : defVal;
+  }
+
+  public long readLong(String name, long defVal) throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    return parser.getValueAsLong(defVal);
+  }
+
+  public long[] readLongArray(String name, long[] defVal) throws IOException {
+    return stage(name) ? fieldReader.readLongArray(name, defVal) : defVal;
+  }
+
+  public long[][] readLongArray2D(String name, long[][] defVal) throws IOException {
+    return stage(name) ? fieldReader.readLongArray2D(name, defVal) : defVal;
+  }
+
+  public short readShort(String name, short defVal) throws IOException {
+    return (short) readInt(name, defVal);
+  }
+
+  public short[] readShortArray(String name, short[] defVal) throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      return readTree(parser, name) ? fieldReader.readShortArray(name, defVal) : defVal;
+    }
+    int[] values = readInts(parser);
+    if (values.length < 1) {
+      return defVal;
+    }
+    short[] res = new short[values.length];
+    for (int i = 0; i < values.length; i++) {
+      res[i] = (short) values[i];
+    }
+    return res;
+  }
+
+  public short[][] readShortArray2D(String name, short[][] defVal) throws IOException {
+    return stage(name) ? fieldReader.readShortArray2D(name, defVal) : defVal;
+  }
+
+  public boolean readBoolean(String name, boolean defVal) throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    return parser.getValueAsBoolean(defVal);
+  }
+
+  public boolean[] readBooleanArray(String name, boolean[] defVal) throws IOException {
+    return stage(name) ? fieldReader.readBooleanArray(name, defVal) : defVal;
+  }
+
+  public boolean[][] readBooleanArray2D(String name, boolean[][] defVal) throws IOException {
+    return stage(name) ? fieldReader.readBooleanArray2D(name, defVal) : defVal;
+  }
+
+  public String readString(String name, String defVal) throws IOException {
+    return stage(name) ? fieldReader.readString(name, defVal) : defVal;
+  }
+
+  public String[] readStringArray(String name, String[] defVal) throws IOException {
+    return stage(name) ? fieldReader.readStringArray(name, defVal) : defVal;
+  }
+
+  public String[][] readStringArray2D(String name, String[][] defVal) throws IOException {
+    return stage(name) ? fieldReader.readStringArray2D(name, defVal) : defVal;
+  }
+
+  public BitSet readBitSet(String name, BitSet defVal) throws IOException {
+    return stage(name) ? fieldReader.readBitSet(name, defVal) : defVal;
+  }
+
+  public Savable readSavable(String name, Savable defVal) throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    return readSavableElem(parser, defVal);
+  }
+
+  public Savable[] readSavableArray(String name, Savable[] defVal) throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    ArrayList<Savable> res = readSavableList(parser);
+    if (res == null || res.isEmpty()) {
+      return defVal;
+    }
+    return res.toArray(new Savable[0]);
+  }
+
+  public Savable[][] readSavableArray2D(String name, Savable[][] defVal) throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      parser.skipChildren();
+      return defVal;
+    }
+    ArrayList<Savable[]> res = new ArrayList<>();
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      // a null row stays null
+      ArrayList<Savable> row = readSavableList(parser);
+      res.add(row != null ? row.toArray(new Savable[0]) : null);
+    }
+    if (res.isEmpty()) {
+      return defVal;
+    }
+    return res.toArray(new Savable[0][]);
+  }
+
+  public ArrayList<Savable> readSavableArrayList(String name, ArrayList defVal) throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    ArrayList<Savable> res = readSavableList(parser);
+    return res == null ? defVal : res;
+  }
+
+  public ArrayList<Savable>[] readSavableArrayListArray(String name, ArrayList[] defVal)
+      throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      parser.skipChildren();
+      return defVal;
+    }
+    ArrayList<ArrayList<Savable>> res = new ArrayList<>();
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      res.add(readSavableList(parser));
+    }
+    if (res.isEmpty()) {
+      return defVal;
+    }
+    return res.toArray(new ArrayList[0]);
+  }
+
+  public ArrayList<Savable>[][] readSavableArrayListArray2D(String name, ArrayList[][] defVal)
+      throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      parser.skipChildren();
+      return defVal;
+    }
+    ArrayList<ArrayList[]> res = new ArrayList<>();
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      ArrayList<ArrayList<Savable>> lists = new ArrayList<>();
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        lists.add(readSavableList(parser));
+      }
+      res.add(lists.toArray(new ArrayList[0]));
+    }
+    if (res.isEmpty()) {
+      return defVal;
+    }
+    return res.toArray(new ArrayList[0][]);
+  }
+
+  /** Read an array of [className, {fields}] elements, the parser being on the START_ARRAY. */
+  private ArrayList<Savable> readSavableList(JsonParser parser) throws IOException {
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      parser.skipChildren();
+      return null;
+    }
+    ArrayList<Savable> res = new ArrayList<>();
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      res.add(readSavableElem(parser, null));
+    }
+    return res;
+  }
+
+  public ArrayList<FloatBuffer> readFloatBufferArrayList(String name, ArrayList<FloatBuffer> defVal)
+      throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      return readTree(parser, name) ? fieldReader.readFloatBufferArrayList(name, defVal) : defVal;
+    }
+    ArrayList<FloatBuffer> res = new ArrayList<>();
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      if (parser.currentToken() == JsonToken.START_OBJECT) {
+        JsonNode payload = BinaryPayloads.read(parser, importer.isDirectBuffers());
+        res.add(
+            BinaryPayloads.readFloatBuffer(
+                payload, importer.getSidecarReader(), importer.isDirectBuffers()));
+        continue;
+      }
+      float[] values = readFloats(parser);
+      res.add(NioBuffers.floatBuffer(values, values.length, importer.isDirectBuffers()));
+    }
+    return res;
+  }
+
+  public Map<? extends Savable, ? extends Savable> readSavableMap(
+      String name, Map<? extends Savable, ? extends Savable> defVal) throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    Map<Savable, Savable> res = new HashMap<>();
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      parser.skipChildren();
+      return res;
+    }
+    // entries are flattened as className, {fields}, className, {fields}...
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      Savable keySavable = readSavableMapElem(parser);
+      parser.nextToken();
+      Savable valueSavable = readSavableMapElem(parser);
+      res.put(keySavable, valueSavable);
+    }
+    return res;
+  }
+
+  /** Read a flattened className, {fields} entry or a {"ref": id} object. */
+  private Savable readSavableMapElem(JsonParser parser) throws IOException {
+    if (parser.currentToken() == JsonToken.START_OBJECT) {
+      return readReference(parser, null);
+    }
+    JsonNode classNode = readClass(parser);
+    parser.nextToken();
+    return readSavableObject(parser, classNode, null);
+  }
+
+  public Map<String, ? extends Savable> readStringSavableMap(
+      String name, Map<String, ? extends Savable> defVal) throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    Map<String, Savable> res = new HashMap<>();
+    if (parser.currentToken() != JsonToken.START_OBJECT) {
+      parser.skipChildren();
+      return res;
+    }
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String key = parser.getCurrentName();
+      parser.nextToken();
+      res.put(key, readSavableElem(parser, null));
+    }
+    return res;
+  }
+
+  public IntMap<? extends Savable> readIntSavableMap(String name, IntMap<? extends Savable> defVal)
+      throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    IntMap<Savable> res = new IntMap<>();
+    if (parser.currentToken() != JsonToken.START_OBJECT) {
+      parser.skipChildren();
+      return res;
+    }
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      int key = Integer.parseInt(parser.getCurrentName());
+      parser.nextToken();
+      res.put(key, readSavableElem(parser, null));
+    }
+    return res;
+  }
+
+  public FloatBuffer readFloatBuffer(String name, FloatBuffer defVal) throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      return readTree(parser, name) ? fieldReader.readFloatBuffer(name, defVal) : defVal;
+    }
+    float[] values = readFloats(parser);
+    if (values.length < 1) {
+      return defVal;
+    }
+    return NioBuffers.floatBuffer(values, values.length, importer.isDirectBuffers());
+  }
+
+  public IntBuffer readIntBuffer(String name, IntBuffer defVal) throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      return readTree(parser, name) ? fieldReader.readIntBuffer(name, defVal) : defVal;
+    }
+    int[] values = readInts(parser);
+    if (values.length < 1) {
+      return defVal;
+    }
+    return NioBuffers.intBuffer(values, values.length, importer.isDirectBuffers());
+  }
+
+  public ByteBuffer readByteBuffer(String name, ByteBuffer defVal) throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      return readTree(parser, name) ? fieldReader.readByteBuffer(name, defVal) : defVal;
+    }
+    int[] values = readInts(parser);
+    if (values.length < 1) {
+      return defVal;
+    }
+    byte[] bytes = new byte[values.length];
+    for (int i = 0; i < values.length; i++) {
+      bytes[i] = (byte) values[i];
+    }
+    return NioBuffers.byteBuffer(bytes, bytes.length, importer.isDirectBuffers());
+  }
+
+  public ShortBuffer readShortBuffer(String name, ShortBuffer defVal) throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      return readTree(parser, name) ? fieldReader.readShortBuffer(name, defVal) : defVal;
+    }
+    int[] values = readInts(parser);
+    if (values.length < 1) {
+      return defVal;
+    }
+    short[] shorts = new short[values.length];
+    for (int i = 0; i < values.length; i++) {
+      shorts[i] = (short) values[i];
+    }
+    return NioBuffers.shortBuffer(shorts, shorts.length, importer.isDirectBuffers());
+  }
+
+  public ArrayList<ByteBuffer> readByteBufferArrayList(String name, ArrayList<ByteBuffer> defVal)
+      throws IOException {
+    JsonParser parser = seek(name);
+    if (parser == null) {
+      return defVal;
+    }
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      return readTree(parser, name) ? fieldReader.readByteBufferArrayList(name, defVal) : defVal;
+    }
+    ArrayList<ByteBuffer> res = new ArrayList<>();
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      if (parser.currentToken() == JsonToken.START_OBJECT) {
+        JsonNode payload = BinaryPayloads.read(parser, importer.isDirectBuffers());
+        res.add(
+            BinaryPayloads.readByteBuffer(
+                payload, importer.getSidecarReader(), importer.isDirectBuffers()));
+        continue;
+      }
+      int[] values = readInts(parser);
+      byte[] bytes = new byte[values.length];
+      for (int i = 0; i < values.length; i++) {
+        bytes[i] = (byte) values[i];
+      }
+      res.add(NioBuffers.byteBuffer(bytes, bytes.length, importer.isDirectBuffers()));
+    }
+    return res;
+  }
+
+  public <T extends Enum<T>> T readEnum(String name, Class<T> enumType, T defVal)
+      throws IOException {
+    return stage(name) ? fieldReader.readEnum(name, enumType, defVal) : defVal;
+  }
+
+  /**
+   * Load the value the parser is on as a tree in the field reader. The objects in place of an
+   * array or buffer are binary payloads, whose data is decoded as it is read.
+   */
+  private boolean readTree(JsonParser parser, String name) throws IOException {
+    ObjectNode holder = JsonNodeFactory.instance.objectNode();
+    holder.set(
+        name,
+        parser.currentToken() == JsonToken.START_OBJECT
+            ? BinaryPayloads.read(parser, importer.isDirectBuffers())
+            : parser.readValueAsTree());
+    fieldReader.setCurrentNode(holder);
+    return true;
+  }
+
+  /** @return the number the parser is on, or the default value for a null, array or object */
+  private static float readFloatValue(JsonParser parser, float defVal) throws IOException {
+    JsonToken token = parser.currentToken();
+    if (token.isNumeric()) {
+      return DecimalParser.floatValue(parser);
+    }
+    if (token == JsonToken.VALUE_STRING) {
+      return Float.parseFloat(parser.getText());
+    }
+    parser.skipChildren();
+    return defVal;
+  }
+
+  /** Read a flat array of numbers, the parser being on the START_ARRAY. */
+  private static float[] readFloats(JsonParser parser) throws IOException {
+    float[] res = new float[INITIAL_ARRAY_CAPACITY];
+    int size = 0;
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      if (size == res.length) {
+        res = Arrays.copyOf(res, size << 1);
+      }
+      res[size++] = readFloatValue(parser, 0f);
+    }
+    return size == res.length ? res : Arrays.copyOf(res, size);
+  }
+
+  /** Read a flat array of numbers, the parser being on the START_ARRAY. */
+  private static int[] readInts(JsonParser parser) throws IOException {
+    int[] res = new int[INITIAL_ARRAY_CAPACITY];
+    int size = 0;
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      if (size == res.length) {
+        res = Arrays.copyOf(res, size << 1);
+      }
+      res[size++] = parser.getValueAsInt();
+    }
+    return size == res.length ? res : Arrays.copyOf(res, size);
+  }
+
+  /** The savable object being read and the fields read ahead of their turn. */
+  private static final class Frame {
+
+    private final JsonParser parser;
+    private Frame parent;
+    private Map<String, TokenBuffer> pending;
+    private boolean exhausted;
+    // the parser is already on the token following the id
+    private boolean peeked;
+
+    private Frame(JsonParser parser) {
+      this.parser = parser;
+    }
+
+    /** @return the id written as the first field of the savable, or -1 if it has none */
+    private int readId() throws IOException {
+      if (parser.nextToken() == JsonToken.FIELD_NAME
+          && JsonOutputCapsule.ID_FIELD.equals(parser.getCurrentName())) {
+        parser.nextToken();
+        return parser.getValueAsInt(-1);
+      }
+      peeked = true;
+      return -1;
+    }
+
+    /** Move the parser to the next field name. */
+    private boolean nextField() throws IOException {
+      if (peeked) {
+        peeked = false;
+        return parser.currentToken() == JsonToken.FIELD_NAME;
+      }
+      return parser.nextToken() == JsonToken.FIELD_NAME;
+    }
+
+    /** Move the parser to the END_OBJECT of the savable, dropping the fields never read. */
+    private void skipRemainingFields() throws IOException {
+      if (exhausted) {
+        return;
+      }
+      while (nextField()) {
+        parser.nextToken();
+        parser.skipChildren();
+      }
+      exhausted = true;
+    }
+  }
+}
@@ -0,0 +1,289 @@
+package fr.exratio.jme.exporter;
+
+import com.jme3.export.InputCapsule;
+import com.jme3.export.Savable;
+import com.jme3.util.IntMap;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * The capsule given to a savable by a {@link JsonImporter} which has a {@link SavableListener}:
+ * the type of each field is handed to the importer, which reports the field to the listener when
+ * the capsule of the importer looks it up in the document.
+ */
+final class ListenedInputCapsule implements InputCapsule {
+
+  private final InputCapsule capsule;
+  private final Class<? extends Savable> type;
+  private final JsonImporter importer;
+
+  ListenedInputCapsule(InputCapsule capsule, Class<? extends Savable> type, JsonImporter importer) {
+    this.capsule = capsule;
+    this.type = type;
+    this.importer = importer;
+  }
+
+  @Override
+  public int getSavableVersion(Class<? extends Savable> clazz) {
+    return capsule.getSavableVersion(clazz);
+  }
+
+  @Override
+  public byte readByte(String name, byte defVal) throws IOException {
+    importer.listenField(type, FieldType.BYTE);
+    return capsule.readByte(name, defVal);
+  }
+
+  @Override
+  public byte[] readByteArray(String name, byte[] defVal) throws IOException {
+    importer.listenField(type, FieldType.BYTE_ARRAY);
+    return capsule.readByteArray(name, defVal);
+  }
+
+  @Override
+  public byte[][] readByteArray2D(String name, byte[][] defVal) throws IOException {
+    importer.listenField(type, FieldType.BYTE_ARRAY);
+    return capsule.readByteArray2D(name, defVal);
+  }
+
+  @Override
+  public int readInt(String name, int defVal) throws IOException {
+    importer.listenField(type, FieldType.INT);
+    return capsule.readInt(name, defVal);
+  }
+
+  @Override
+  public int[] readIntArray(String name, int[] defVal) throws IOException {
+    importer.listenField(type, FieldType.INT_ARRAY);
+    return capsule.readIntArray(name, defVal);
+  }
+
+  @Override
+  public int[][] readIntArray2D(String name, int[][] defVal) throws IOException {
+    importer.listenField(type, FieldType.INT_ARRAY);
+    return capsule.readIntArray2D(name, defVal);
+  }
+
+  @Override
+  public float readFloat(String name, float defVal) throws IOException {
+    importer.listenField(type, FieldType.FLOAT);
+    return capsule.readFloat(name, defVal);
+  }
+
+  @Override
+  public float[] readFloatArray(String name, float[] defVal) throws IOException {
+    importer.listenField(type, FieldType.FLOAT_ARRAY);
+    return capsule.readFloatArray(name, defVal);
+  }
+
+  @Override
+  public float[][] readFloatArray2D(String name, float[][] defVal) throws IOException {
+    importer.listenField(type, FieldType.FLOAT_ARRAY);
+    return capsule.readFloatArray2D(name, defVal);
+  }
+
+  @Override
+  public double readDouble(String name, double defVal) throws IOException {
+    importer.listenField(type, FieldType.DOUBLE);
+    return capsule.readDouble(name, defVal);
+  }
+
+  @Override
+  public double[] readDoubleArray(String name, double[] defVal) throws IOException {
+    importer.listenField(type, FieldType.DOUBLE_ARRAY);
+    return capsule.readDoubleArray(name, defVal);
+  }
+
+  @Override
+  public double[][] readDoubleArray2D(String name, double[][] defVal) throws IOException {
+    importer.listenField(type, FieldType.DOUBLE_ARRAY);
+    return capsule.readDoubleArray2D(name, defVal);
+  }
+
+  @Override
+  public long readLong(String name, long defVal) throws IOException {
+    importer.listenField(type, FieldType.LONG);
+    return capsule.readLong(name, defVal);
+  }
+
+  @Override
+  public long[] readLongArray(String name, long[] defVal) throws IOException {
+    importer.listenField(type, FieldType.LONG_ARRAY);
+    return capsule.readLongArray(name, defVal);
+  }
+
+  @Override
+  public long[][] readLongArray2D(String name, long[][] defVal) throws IOException {
+    importer.listenField(type, FieldType.LONG_ARRAY);
+    return capsule.readLongArray2D(name, defVal);
+  }
+
+  @Override
+  public short readShort(String name, short defVal) throws IOException {
+    importer.listenField(type, FieldType.SHORT);
+    return capsule.readShort(name, defVal);
+  }
+
+  @Override
+  public short[] readShortArray(String name, short[] defVal) throws IOException {
+    importer.listenField(type, FieldType.SHORT_ARRAY);
+    return capsule.readShortArray(name, defVal);
+  }
+
+  @Override
+  public short[][] readShortArray2D(String name, short[][] defVal) throws IOException {
+    importer.listenField(type, FieldType.SHORT_ARRAY);
+    return capsule.readShortArray2D(name, defVal);
+  }
+
+  @Override
+  public boolean readBoolean(String name, boolean defVal) throws IOException {
+    importer.listenField(type, FieldType.BOOLEAN);
+    return capsule.readBoolean(name, defVal);
+  }
+
+  @Override
+  public boolean[] readBooleanArray(String name, boolean[] defVal) throws IOException {
+    importer.listenField(type, FieldType.BOOLEAN_ARRAY);
+    return capsule.readBooleanArray(name, defVal);
+  }
+
+  @Override
+  public boolean[][] readBooleanArray2D(String name, boolean[][] defVal) throws IOException {
+    importer.listenField(type, FieldType.BOOLEAN_ARRAY);
+    return capsule.readBooleanArray2D(name, defVal);
+  }
+
+  @Override
+  public String readString(String name, String defVal) throws IOException {
+    importer.listenField(type, FieldType.STRING);
+    return capsule.readString(name, defVal);
+  }
+
+  @Override
+  public String[] readStringArray(String name, String[] defVal) throws IOException {
+    importer.listenField(type, FieldType.STRING_ARRAY);
+    return capsule.readStringArray(name, defVal);
+  }
+
+  @Override
+  public String[][] readStringArray2D(String name, String[][] defVal) throws IOException {
+    importer.listenField(type, FieldType.STRING_ARRAY);
+    return capsule.readStringArray2D(name, defVal);
+  }
+
+  @Override
+  public BitSet readBitSet(String name, BitSet defVal) throws IOException {
+    importer.listenField(type, FieldType.BIT_SET);
+    return capsule.readBitSet(name, defVal);
+  }
+
+  @Override
+  public Savable readSavable(String name, Savable defVal) throws IOException {
+    importer.listenField(type, FieldType.SAVABLE);
+    return capsule.readSavable(name, defVal);
+  }
+
+  @Override
+  public Savable[] readSavableArray(String name, Savable[] defVal) throws IOException {
+    importer.listenField(type, FieldType.SAVABLE_ARRAY);
+    return capsule.readSavableArray(name, defVal);
+  }
+
+  @Override
+  public Savable[][] readSavableArray2D(String name, Savable[][] defVal) throws IOException {
+    importer.listenField(type, FieldType.SAVABLE_ARRAY);
+    return capsule.readSavableArray2D(name, defVal);
+  }
+
+  @Override
+  public ArrayList readSavableArrayList(String name, ArrayList defVal) throws IOException {
+    importer.listenField(type, FieldType.SAVABLE_ARRAY);
+    return capsule.readSavableArrayList(name, defVal);
+  }
+
+  @Override
+  public ArrayList[] readSavableArrayListArray(String name, ArrayList[] defVal) throws IOException {
+    importer.listenField(type, FieldType.SAVABLE_ARRAY);
+    return capsule.readSavableArrayListArray(name, defVal);
+  }
+
+  @Override
+  public ArrayList[][] readSavableArrayListArray2D(String name, ArrayList[][] defVal)
+      throws IOException {
+    importer.listenField(type, FieldType.SAVABLE_ARRAY);
+    return capsule.readSavableArrayListArray2D(name, defVal);
+  }
+
+  @Override
+  public ArrayList<FloatBuffer> readFloatBufferArrayList(String name, ArrayList<FloatBuffer> defVal)
+      throws IOException {
+    importer.listenField(type, FieldType.FLOAT_BUFFER);
+    return capsule.readFloatBufferArrayList(name, defVal);
+  }
+
+  @Override
+  public ArrayList<ByteBuffer> readByteBufferArrayList(String name, ArrayList<ByteBuffer> defVal)
+      throws IOException {
+    importer.listenField(type, FieldType.BYTE_BUFFER);
+    return capsule.readByteBufferArrayList(name, defVal);
+  }
+
+  @Override
+  public Map<? extends Savable, ? extends Savable> readSavableMap(
+      String name, Map<? extends Savable, ? extends Savable> defVal) throws IOException {
+    importer.listenField(type, FieldType.SAVABLE_MAP);
+    return capsule.readSavableMap(name, defVal);
+  }
+
+  @Override
+  public Map<String, ? extends Savable> readStringSavableMap(
+      String name, Map<String, ? extends Savable> defVal) throws IOException {
+    importer.listenField(type, FieldType.SAVABLE_MAP);
+    return capsule.readStringSavableMap(name, defVal);
+  }
+
+  @Override
+  public IntMap<? extends Savable> readIntSavableMap(String name, IntMap<? extends Savable> defVal)
+      throws IOException {
+    importer.listenField(type, FieldType.SAVABLE_MAP);
+    return capsule.readIntSavableMap(name, defVal);
+  }
+
+  @Override
+  public FloatBuffer readFloatBuffer(String name, FloatBuffer defVal) throws IOException {
+    importer.listenField(type, FieldType.FLOAT_BUFFER);
+    return capsule.readFloatBuffer(name, defVal);
+  }
+
+  @Override
+  public IntBuffer readIntBuffer(String name, IntBuffer defVal) throws IOException {
+    importer.listenField(type, FieldType.INT_BUFFER);
+    return capsule.readIntBuffer(name, defVal);
+  }
+
+  @Override
+  public ByteBuffer readByteBuffer(String name, ByteBuffer defVal) throws IOException {
+    importer.listenField(type, FieldType.BYTE_BUFFER);
+    return capsule.readByteBuffer(name, defVal);
+  }
+
+  @Override
+  public ShortBuffer readShortBuffer(String name, ShortBuffer defVal) throws IOException {
+    importer.listenField(type, FieldType.SHORT_BUFFER);
+    return capsule.readShortBuffer(name, defVal);
+  }
+
+  @Override
+  public <T extends Enum<T>> T readEnum(String name, Class<T> enumType, T defVal)
+      throws IOException {
+    importer.listenField(type, FieldType.ENUM);
+    return capsule.readEnum(name, enumType, defVal);
+  }
+}
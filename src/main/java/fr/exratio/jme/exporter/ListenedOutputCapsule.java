@@ -0,0 +1,290 @@
+package fr.exratio.jme.exporter;
+
+import com.jme3.export.OutputCapsule;
+import com.jme3.export.Savable;
+import com.jme3.util.IntMap;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * The capsule given to a savable by a {@link JsonExporter} which has a {@link SavableListener}: the
+ * fields are reported to the listener then written by the capsule of the exporter.
+ */
+final class ListenedOutputCapsule implements OutputCapsule {
+
+  private final OutputCapsule capsule;
+  private final Class<? extends Savable> type;
+  private final SavableListener listener;
+
+  ListenedOutputCapsule(
+      OutputCapsule capsule, Class<? extends Savable> type, SavableListener listener) {
+    this.capsule = capsule;
+    this.type = type;
+    this.listener = listener;
+  }
+
+  @Override
+  public void write(byte value, String name, byte defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.BYTE);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(byte[] value, String name, byte[] defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.BYTE_ARRAY);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(byte[][] value, String name, byte[][] defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.BYTE_ARRAY);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(int value, String name, int defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.INT);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(int[] value, String name, int[] defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.INT_ARRAY);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(int[][] value, String name, int[][] defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.INT_ARRAY);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(float value, String name, float defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.FLOAT);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(float[] value, String name, float[] defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.FLOAT_ARRAY);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(float[][] value, String name, float[][] defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.FLOAT_ARRAY);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(double value, String name, double defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.DOUBLE);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(double[] value, String name, double[] defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.DOUBLE_ARRAY);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(double[][] value, String name, double[][] defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.DOUBLE_ARRAY);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(long value, String name, long defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.LONG);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(long[] value, String name, long[] defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.LONG_ARRAY);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(long[][] value, String name, long[][] defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.LONG_ARRAY);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(short value, String name, short defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.SHORT);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(short[] value, String name, short[] defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.SHORT_ARRAY);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(short[][] value, String name, short[][] defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.SHORT_ARRAY);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(boolean value, String name, boolean defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.BOOLEAN);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(boolean[] value, String name, boolean[] defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.BOOLEAN_ARRAY);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(boolean[][] value, String name, boolean[][] defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.BOOLEAN_ARRAY);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(String value, String name, String defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.STRING);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(String[] value, String name, String[] defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.STRING_ARRAY);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(String[][] value, String name, String[][] defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.STRING_ARRAY);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(BitSet value, String name, BitSet defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.BIT_SET);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(Savable value, String name, Savable defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.SAVABLE);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(Savable[] value, String name, Savable[] defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.SAVABLE_ARRAY);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(Savable[][] value, String name, Savable[][] defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.SAVABLE_ARRAY);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void writeSavableArrayList(ArrayList value, String name, ArrayList defVal)
+      throws IOException {
+    listener.fieldWritten(type, name, FieldType.SAVABLE_ARRAY);
+    capsule.writeSavableArrayList(value, name, defVal);
+  }
+
+  @Override
+  public void writeSavableArrayListArray(ArrayList[] value, String name, ArrayList[] defVal)
+      throws IOException {
+    listener.fieldWritten(type, name, FieldType.SAVABLE_ARRAY);
+    capsule.writeSavableArrayListArray(value, name, defVal);
+  }
+
+  @Override
+  public void writeSavableArrayListArray2D(ArrayList[][] value, String name, ArrayList[][] defVal)
+      throws IOException {
+    listener.fieldWritten(type, name, FieldType.SAVABLE_ARRAY);
+    capsule.writeSavableArrayListArray2D(value, name, defVal);
+  }
+
+  @Override
+  public void writeFloatBufferArrayList(
+      ArrayList<FloatBuffer> value, String name, ArrayList<FloatBuffer> defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.FLOAT_BUFFER);
+    capsule.writeFloatBufferArrayList(value, name, defVal);
+  }
+
+  @Override
+  public void writeByteBufferArrayList(
+      ArrayList<ByteBuffer> value, String name, ArrayList<ByteBuffer> defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.BYTE_BUFFER);
+    capsule.writeByteBufferArrayList(value, name, defVal);
+  }
+
+  @Override
+  public void writeSavableMap(
+      Map<? extends Savable, ? extends Savable> value,
+      String name,
+      Map<? extends Savable, ? extends Savable> defVal)
+      throws IOException {
+    listener.fieldWritten(type, name, FieldType.SAVABLE_MAP);
+    capsule.writeSavableMap(value, name, defVal);
+  }
+
+  @Override
+  public void writeStringSavableMap(
+      Map<String, ? extends Savable> value, String name, Map<String, ? extends Savable> defVal)
+      throws IOException {
+    listener.fieldWritten(type, name, FieldType.SAVABLE_MAP);
+    capsule.writeStringSavableMap(value, name, defVal);
+  }
+
+  @Override
+  public void writeIntSavableMap(
+      IntMap<? extends Savable> value, String name, IntMap<? extends Savable> defVal)
+      throws IOException {
+    listener.fieldWritten(type, name, FieldType.SAVABLE_MAP);
+    capsule.writeIntSavableMap(value, name, defVal);
+  }
+
+  @Override
+  public void write(FloatBuffer value, String name, FloatBuffer defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.FLOAT_BUFFER);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(IntBuffer value, String name, IntBuffer defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.INT_BUFFER);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(ByteBuffer value, String name, ByteBuffer defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.BYTE_BUFFER);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(ShortBuffer value, String name, ShortBuffer defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.SHORT_BUFFER);
+    capsule.write(value, name, defVal);
+  }
+
+  @Override
+  public void write(Enum value, String name, Enum defVal) throws IOException {
+    listener.fieldWritten(type, name, FieldType.ENUM);
+    capsule.write(value, name, defVal);
+  }
+}
@@ -0,0 +1,123 @@
+package fr.exratio.jme.exporter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Stream the values of a buffer as little-endian bytes, converting a chunk at a time so the
+ * whole content is never copied at once.
+ */
+final class LittleEndianInputStream extends InputStream {
+
+  private static final int CHUNK_SIZE = 8192;
+
+  private final Buffer source;
+  private final ByteBuffer chunk =
+      ByteBuffer.allocate(CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+  LittleEndianInputStream(Buffer source) {
+    this.source = source;
+    chunk.limit(0);
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!chunk.hasRemaining() && !fill()) {
+      return -1;
+    }
+    return chunk.get() & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!chunk.hasRemaining() && !fill()) {
+      return -1;
+    }
+    int length = Math.min(len, chunk.remaining());
+    chunk.get(b, off, length);
+    return length;
+  }
+
+  private boolean fill() {
+    if (!source.hasRemaining()) {
+      return false;
+    }
+    chunk.clear();
+    int byteCount;
+    if (source instanceof ByteBuffer) {
+      byteCount = transfer((ByteBuffer) source, chunk);
+    } else if (source instanceof ShortBuffer) {
+      byteCount = transfer((ShortBuffer) source, chunk.asShortBuffer()) * 2;
+    } else if (source instanceof IntBuffer) {
+      byteCount = transfer((IntBuffer) source, chunk.asIntBuffer()) * 4;
+    } else if (source instanceof FloatBuffer) {
+      byteCount = transfer((FloatBuffer) source, chunk.asFloatBuffer()) * 4;
+    } else if (source instanceof LongBuffer) {
+      byteCount = transfer((LongBuffer) source, chunk.asLongBuffer()) * 8;
+    } else {
+      byteCount = transfer((DoubleBuffer) source, chunk.asDoubleBuffer()) * 8;
+    }
+    chunk.position(0);
+    chunk.limit(byteCount);
+    return true;
+  }
+
+  private static int transfer(ByteBuffer source, ByteBuffer target) {
+    int length = Math.min(source.remaining(), target.remaining());
+    ByteBuffer slice = (ByteBuffer) source.slice().limit(length);
+    target.put(slice);
+    source.position(source.position() + length);
+    return length;
+  }
+
+  private static int transfer(ShortBuffer source, ShortBuffer target) {
+    int length = Math.min(source.remaining(), target.remaining());
+    ShortBuffer slice = (ShortBuffer) source.slice().limit(length);
+    target.put(slice);
+    source.position(source.position() + length);
+    return length;
+  }
+
+  private static int transfer(IntBuffer source, IntBuffer target) {
+    int length = Math.min(source.remaining(), target.remaining());
+    IntBuffer slice = (IntBuffer) source.slice().limit(length);
+    target.put(slice);
+    source.position(source.position() + length);
+    return length;
+  }
+
+  private static int transfer(FloatBuffer source, FloatBuffer target) {
+    int length = Math.min(source.remaining(), target.remaining());
+    FloatBuffer slice = (FloatBuffer) source.slice().limit(length);
+    target.put(slice);
+    source.position(source.position() + length);
+    return length;
+  }
+
+  private static int transfer(LongBuffer source, LongBuffer target) {
+    int length = Math.min(source.remaining(), target.remaining());
+    LongBuffer slice = (LongBuffer) source.slice().limit(length);
+    target.put(slice);
+    source.position(source.position() + length);
+    return length;
+  }
+
+  private static int transfer(DoubleBuffer source, DoubleBuffer target) {
+    int length = Math.min(source.remaining(), target.remaining());
+    DoubleBuffer slice = (DoubleBuffer) source.slice().limit(length);
+    target.put(slice);
+    source.position(source.position() + length);
+    return length;
+  }
+}
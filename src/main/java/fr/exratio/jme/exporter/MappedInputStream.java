@@ -0,0 +1,80 @@
+package fr.exratio.jme.exporter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Reads a file from its position to its end through read-only memory mappings, so the parser
+ * buffers are filled from the page cache without read calls. The channel is left open.
+ */
+final class MappedInputStream extends InputStream {
+
+  // regions are mapped one at a time so files larger than 2GB can be read
+  private static final long REGION_SIZE = 1L << 30;
+
+  private final FileChannel channel;
+  private final long size;
+  private long next;
+  private MappedByteBuffer region;
+
+  MappedInputStream(FileChannel channel) throws IOException {
+    this.channel = channel;
+    this.size = channel.size();
+    this.next = channel.position();
+  }
+
+  /** @return false at the end of the file */
+  private boolean fill() throws IOException {
+    if (region != null && region.hasRemaining()) {
+      return true;
+    }
+    if (next >= size) {
+      return false;
+    }
+    long length = Math.min(REGION_SIZE, size - next);
+    region = channel.map(MapMode.READ_ONLY, next, length);
+    next += length;
+    return true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!fill()) {
+      return -1;
+    }
+    return region.get() & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!fill()) {
+      return -1;
+    }
+    int count = Math.min(len, region.remaining());
+    region.get(b, off, count);
+    return count;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    long skipped = 0;
+    while (skipped < n && fill()) {
+      int count = (int) Math.min(n - skipped, region.remaining());
+      region.position(region.position() + count);
+      skipped += count;
+    }
+    return skipped;
+  }
+
+  @Override
+  public int available() {
+    long remaining = (region == null ? 0 : region.remaining()) + size - next;
+    return (int) Math.min(Integer.MAX_VALUE, remaining);
+  }
+}
@@ -0,0 +1,67 @@
+package fr.exratio.jme.exporter;
+
+import com.jme3.util.BufferUtils;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Create the NIO buffers returned by the input capsules from decoded primitive arrays.
+ *
+ * <p>Direct buffers are allocated with {@link BufferUtils}, filled with a single bulk put and
+ * flipped, so they can be uploaded as is. Heap buffers keep the historical layout: the position is
+ * left at the end of the data.
+ */
+final class NioBuffers {
+
+  private NioBuffers() {}
+
+  static FloatBuffer floatBuffer(float[] values, int length, boolean direct) {
+    if (direct) {
+      FloatBuffer res = BufferUtils.createFloatBuffer(length);
+      res.put(values, 0, length);
+      res.flip();
+      return res;
+    }
+    FloatBuffer res = FloatBuffer.allocate(length);
+    res.put(values, 0, length);
+    return res;
+  }
+
+  static IntBuffer intBuffer(int[] values, int length, boolean direct) {
+    if (direct) {
+      IntBuffer res = BufferUtils.createIntBuffer(length);
+      res.put(values, 0, length);
+      res.flip();
+      return res;
+    }
+    IntBuffer res = IntBuffer.allocate(length);
+    res.put(values, 0, length);
+    return res;
+  }
+
+  static ShortBuffer shortBuffer(short[] values, int length, boolean direct) {
+    if (direct) {
+      ShortBuffer res = BufferUtils.createShortBuffer(length);
+      res.put(values, 0, length);
+      res.flip();
+      return res;
+    }
+    ShortBuffer res = ShortBuffer.allocate(length);
+    res.put(values, 0, length);
+    return res;
+  }
+
+  static ByteBuffer byteBuffer(byte[] values, int length, boolean direct) {
+    if (direct) {
+      ByteBuffer res = BufferUtils.createByteBuffer(length);
+      res.put(values, 0, length);
+      res.flip();
+      return res;
+    }
+    ByteBuffer res = ByteBuffer.allocate(length);
+    res.put(values, 0, length);
+    return res;
+  }
+}
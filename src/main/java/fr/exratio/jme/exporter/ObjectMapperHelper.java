@@ -10,10 +10,6 @@ import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator.Bui
 import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.jme3.export.Savable;
-import io.github.classgraph.ClassGraph;
-import io.github.classgraph.ClassInfo;
-import io.github.classgraph.ClassInfoList;
-import io.github.classgraph.ScanResult;
 import java.util.List;
 import java.util.Map;
 import org.apache.commons.lang3.ArrayUtils;
@@ -24,8 +20,9 @@ public class ObjectMapperHelper {
 
   private ObjectMapperHelper() {}
 
+  /** @return a mapper resolving the Savable implementations lazily */
   public static ObjectMapper defaultMapper() {
-    return configure(null, null);
+    return configureLazy(null, null);
   }
 
   /**
@@ -39,6 +36,25 @@ public class ObjectMapperHelper {
    */
   public static ObjectMapper configure(
       ObjectMapper objectMapper, List<Class> polymorphClasses, String... acceptedPackages) {
+    return configure(objectMapper, polymorphClasses, false, acceptedPackages);
+  }
+
+  /**
+   * Same as {@link #configure(ObjectMapper, List, String...)} but the Savable implementations are
+   * set up the first time Jackson meets them rather than found by a scan or a {@link
+   * SavableRegistry}, so the classes which are never serialized are not even loaded. The mix-ins
+   * the mapper already has are kept and come first.
+   */
+  public static ObjectMapper configureLazy(
+      ObjectMapper objectMapper, List<Class> polymorphClasses, String... acceptedPackages) {
+    return configure(objectMapper, polymorphClasses, true, acceptedPackages);
+  }
+
+  private static ObjectMapper configure(
+      ObjectMapper objectMapper,
+      List<Class> polymorphClasses,
+      boolean lazy,
+      String[] acceptedPackages) {
     ObjectMapper result = objectMapper != null ? objectMapper : new ObjectMapper();
 
     //Allow subtype of those classes to be serialize/deserialize
@@ -62,13 +78,15 @@ public class ObjectMapperHelper {
 
 
     String[] scannedPackages = ArrayUtils.add(acceptedPackages, JME_SAVABLE_PACKAGE);
-    //Scan packages to find Savable implementation and setup the SavableMixIn which define the
-    //way of encoding the class and the deserializer to use
-    try (ScanResult scanResult =
-        new ClassGraph().enableClassInfo().acceptPackages(scannedPackages).scan()) {
-      ClassInfoList classes = scanResult.getClassesImplementing(Savable.class.getName());
-      for (ClassInfo classInfo : classes) {
-        result.addMixIn(classInfo.loadClass(), SavableMixIn.class);
+    //Find the Savable implementations and setup the SavableMixIn which define the way of encoding
+    //the class and the deserializer to use
+    if (lazy) {
+      // the resolver replaces the one of the mapper, whose mix-ins are resolved by its config
+      result.setMixInResolver(
+          new SavableMixInResolver(result.getSerializationConfig(), scannedPackages));
+    } else {
+      for (Class<?> clazz : savableClasses(scannedPackages)) {
+        result.addMixIn(clazz, SavableMixIn.class);
       }
     }
     result
@@ -80,4 +98,13 @@ public class ObjectMapperHelper {
     result.registerModule(module);
     return result;
   }
+
+  /**
+   * @return the Savable implementations of the packages, read from the {@link SavableRegistry} for
+   *     the jars it covers and found by a classpath scan otherwise
+   */
+  private static List<Class<?>> savableClasses(String... packages) {
+    ClassLoader classLoader = ObjectMapperHelper.class.getClassLoader();
+    return SavableRegistry.loadClasses(SavableRegistry.find(classLoader, packages), classLoader);
+  }
 }
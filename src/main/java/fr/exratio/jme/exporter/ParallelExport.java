@@ -0,0 +1,275 @@
+package fr.exratio.jme.exporter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.jme3.export.Savable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Writes the elements of a savable array on the common fork/join pool, one chunk of consecutive
+ * elements per task, and splices the chunks in order into the output.
+ *
+ * <p>The output is the one of a sequential export. A task buffers its tokens with markers in place
+ * of the savable ids and of the dictionary ids, which depend on what was written before, and they
+ * are numbered while splicing. A savable reached by several tasks is claimed by the first one in
+ * the array order, which defines it while the others write a reference. The tasks which defined a
+ * savable claimed by a previous task are run again, and the chunks are written sequentially from
+ * the first one still inconsistent with the previous ones.
+ */
+final class ParallelExport {
+
+  // arrays with fewer savables are written sequentially
+  static final int MIN_SAVABLES = 16;
+  // chunks per worker thread, so subtrees of different sizes are balanced
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  private final JsonExporter exporter;
+  private final JsonOutputCapsule capsule;
+  private final JsonDictionary dictionary;
+  // the index of the first task which reached each savable
+  private final ConcurrentMap<IdentityKey, Integer> claims = new ConcurrentHashMap<>();
+
+  ParallelExport(JsonExporter exporter, JsonOutputCapsule capsule, JsonDictionary dictionary) {
+    this.exporter = exporter;
+    this.capsule = capsule;
+    this.dictionary = dictionary;
+  }
+
+  /** Write the elements of the array, the array start and end excluded. */
+  void write(JsonGenerator generator, Savable[] objects) throws IOException {
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    int taskCount = Math.min(objects.length, pool.getParallelism() * CHUNKS_PER_THREAD);
+    Task[] tasks = new Task[taskCount];
+    for (int i = 0; i < taskCount; i++) {
+      tasks[i] =
+          new Task(
+              i,
+              objects,
+              (int) ((long) objects.length * i / taskCount),
+              (int) ((long) objects.length * (i + 1) / taskCount));
+    }
+    run(pool, Arrays.asList(tasks));
+    List<Task> stale = new ArrayList<>();
+    for (Task task : tasks) {
+      if (!task.ownsDefinitions()) {
+        stale.add(task);
+      }
+    }
+    run(pool, stale);
+    for (Task task : tasks) {
+      if (!task.isConsistent()) {
+        for (int i = task.from; i < objects.length; i++) {
+          capsule.writeSavableElem(objects[i]);
+        }
+        return;
+      }
+      task.splice(generator);
+    }
+  }
+
+  private static void run(ForkJoinPool pool, List<Task> tasks) throws IOException {
+    if (tasks.isEmpty()) {
+      return;
+    }
+    for (Future<Void> future : pool.invokeAll(tasks)) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new IOException(cause);
+      }
+    }
+  }
+
+  /** Writes one chunk of the array to a buffer. */
+  final class Task implements Callable<Void> {
+
+    private final int index;
+    private final Savable[] objects;
+    private final int from;
+    private final int to;
+    private TokenBuffer buffer;
+    // the markers of the buffer, in order
+    private List<Object> markers;
+
+    private Task(int index, Savable[] objects, int from, int to) {
+      this.index = index;
+      this.objects = objects;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public Void call() throws IOException {
+      buffer = new TokenBuffer(null, false);
+      markers = new ArrayList<>();
+      JsonExporter taskExporter = exporter.fork();
+      JsonOutputCapsule taskCapsule = new JsonOutputCapsule(buffer, taskExporter, dictionary, this);
+      taskExporter.setJsonOutputCapsule(taskCapsule);
+      for (int i = from; i < to; i++) {
+        taskCapsule.writeSavableElem(objects[i]);
+      }
+      return null;
+    }
+
+    /** @return true when the savable, not written by this task yet, is to be defined by it */
+    boolean define(Savable object) {
+      if (capsule.isWritten(object)) {
+        return false;
+      }
+      return claims.merge(new IdentityKey(object), index, Math::min) == index;
+    }
+
+    void writeDefinition(JsonGenerator generator, Savable object) throws IOException {
+      writeMarker(generator, new Definition(object));
+    }
+
+    void writeReference(JsonGenerator generator, Savable object) throws IOException {
+      writeMarker(generator, new Reference(object));
+    }
+
+    void writeDictionaryId(JsonGenerator generator, String value, boolean className)
+        throws IOException {
+      writeMarker(generator, new DictionaryEntry(value, className));
+    }
+
+    private void writeMarker(JsonGenerator generator, Object marker) throws IOException {
+      markers.add(marker);
+      generator.writeEmbeddedObject(marker);
+    }
+
+    private boolean ownsDefinitions() {
+      for (Object marker : markers) {
+        if (marker instanceof Definition
+            && claims.get(new IdentityKey(((Definition) marker).object)) != index) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /** @return true when the chunk is what the capsule would write at this point */
+    private boolean isConsistent() {
+      Set<Savable> defined = Collections.newSetFromMap(new IdentityHashMap<>());
+      for (Object marker : markers) {
+        if (marker instanceof Definition) {
+          Savable object = ((Definition) marker).object;
+          if (capsule.isWritten(object) || !defined.add(object)) {
+            return false;
+          }
+        } else if (marker instanceof Reference) {
+          Savable object = ((Reference) marker).object;
+          if (!capsule.isWritten(object) && !defined.contains(object)) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+
+    private void splice(JsonGenerator generator) throws IOException {
+      try (JsonParser parser = buffer.asParser()) {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null) {
+          Object value =
+              token == JsonToken.VALUE_EMBEDDED_OBJECT ? parser.getEmbeddedObject() : null;
+          if (value instanceof Definition) {
+            generator.writeNumber(capsule.register(((Definition) value).object));
+          } else if (value instanceof Reference) {
+            generator.writeNumber(capsule.getSavableId(((Reference) value).object));
+          } else if (value instanceof DictionaryEntry) {
+            DictionaryEntry entry = (DictionaryEntry) value;
+            String text = entry.value;
+            generator.writeNumber(
+                entry.className ? dictionary.classId(text) : dictionary.stringId(text));
+          } else if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+            capsule.writeFloatingPoint(parser);
+          } else {
+            generator.copyCurrentEvent(parser);
+          }
+        }
+      }
+      buffer = null;
+      markers = null;
+    }
+  }
+
+  /** The id of a savable defined by a task. */
+  private static final class Definition {
+
+    private final Savable object;
+
+    private Definition(Savable object) {
+      this.object = object;
+    }
+  }
+
+  /** The id of a savable referenced by a task. */
+  private static final class Reference {
+
+    private final Savable object;
+
+    private Reference(Savable object) {
+      this.object = object;
+    }
+  }
+
+  /** The dictionary id of a class name or a string written by a task. */
+  private static final class DictionaryEntry {
+
+    private final String value;
+    private final boolean className;
+
+    private DictionaryEntry(String value, boolean className) {
+      this.value = value;
+      this.className = className;
+    }
+  }
+
+  /** Compares savables by identity, like the ids of the capsules. */
+  private static final class IdentityKey {
+
+    private final Object object;
+
+    private IdentityKey(Object object) {
+      this.object = object;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof IdentityKey && ((IdentityKey) o).object == object;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(object);
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package fr.exratio.jme.exporter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.jme3.export.Savable;
+import com.jme3.util.IntMap;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the elements of a savable array of a json tree on the common fork/join pool, one chunk of
+ * consecutive elements per task, each with its own capsule over the tree.
+ *
+ * <p>The chunks are first indexed. The savables a chunk references but does not define are read
+ * beforehand by the capsule of the array, in the order they were written, so the chunks only share
+ * savables which are already read and each savable is still read once. The savables read by the
+ * chunks are then given to the capsule of the array.
+ */
+final class ParallelImport {
+
+  // arrays with fewer savables are read sequentially
+  static final int MIN_SAVABLES = 16;
+  // chunks per worker thread, so subtrees of different sizes are balanced
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  private final JsonInputCapsule capsule;
+  private final JsonImporter importer;
+
+  ParallelImport(JsonInputCapsule capsule, JsonImporter importer) {
+    this.capsule = capsule;
+    this.importer = importer;
+  }
+
+  /** @return the savables of the elements, in order */
+  Savable[] read(List<JsonNode> elements) throws IOException {
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    int chunkCount = Math.min(elements.size(), pool.getParallelism() * CHUNKS_PER_THREAD);
+    List<Chunk> chunks = new ArrayList<>(chunkCount);
+    for (int i = 0; i < chunkCount; i++) {
+      chunks.add(
+          new Chunk(
+              elements,
+              (int) ((long) elements.size() * i / chunkCount),
+              (int) ((long) elements.size() * (i + 1) / chunkCount)));
+    }
+    run(pool, chunks, false);
+
+    // ids are given in write order
+    TreeSet<Integer> shared = new TreeSet<>();
+    for (Chunk chunk : chunks) {
+      for (Integer id : chunk.references) {
+        if (!chunk.definitions.containsKey(id) && capsule.getSavable(id) == null) {
+          shared.add(id);
+        }
+      }
+    }
+    for (Integer id : shared) {
+      JsonNode[] definition = null;
+      for (int i = 0; i < chunkCount && definition == null; i++) {
+        definition = chunks.get(i).definitions.get(id);
+      }
+      if (definition != null) {
+        capsule.readSavableFields(definition[0], definition[1], null);
+      } else {
+        capsule.readReference(id, null);
+      }
+    }
+
+    Savable[] res = new Savable[elements.size()];
+    for (Chunk chunk : chunks) {
+      chunk.result = res;
+    }
+    run(pool, chunks, true);
+    for (Chunk chunk : chunks) {
+      capsule.addSavables(chunk.reader);
+    }
+    return res;
+  }
+
+  private static void run(ForkJoinPool pool, List<Chunk> chunks, boolean read)
+      throws IOException {
+    for (Chunk chunk : chunks) {
+      chunk.reading = read;
+    }
+    for (Future<Void> future : pool.invokeAll(chunks)) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new IOException(cause);
+      }
+    }
+  }
+
+  /** Indexes, then reads, a chunk of the array. */
+  private final class Chunk implements Callable<Void> {
+
+    private final List<JsonNode> elements;
+    private final int from;
+    private final int to;
+    private final IntMap<JsonNode[]> definitions = new IntMap<>();
+    private final List<Integer> references = new ArrayList<>();
+    private boolean reading;
+    private Savable[] result;
+    private JsonInputCapsule reader;
+
+    private Chunk(List<JsonNode> elements, int from, int to) {
+      this.elements = elements;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public Void call() {
+      if (!reading) {
+        for (int i = from; i < to; i++) {
+          JsonInputCapsule.index(elements.get(i), definitions, references);
+        }
+        return null;
+      }
+      JsonImporter chunkImporter = importer.fork();
+      reader = new JsonInputCapsule(capsule, chunkImporter, definitions);
+      chunkImporter.setJsonInputCapsule(reader);
+      for (int i = from; i < to; i++) {
+        result[i] = reader.readSavableNode(elements.get(i), null);
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package fr.exratio.jme.exporter;
+
+/**
+ * A lossy encoding of the float arrays and buffers written by {@link JsonExporter}, set per field
+ * name or per vertex buffer type. The values are read back as floats by {@link JsonImporter}.
+ *
+ * @author NyouB
+ */
+public final class Quantization {
+
+  enum Kind {
+    DECIMALS,
+    HALF_FLOAT,
+    FIXED_POINT
+  }
+
+  private static final int MAX_DECIMALS = 9;
+  private static final Quantization HALF_FLOAT = new Quantization(Kind.HALF_FLOAT, 16);
+
+  private final Kind kind;
+  // the decimal digits or the bits of the values
+  private final int precision;
+  private final double scale;
+
+  private Quantization(Kind kind, int precision) {
+    this.kind = kind;
+    this.precision = precision;
+    this.scale = kind == Kind.DECIMALS ? Math.pow(10, precision) : (1 << precision) - 1;
+  }
+
+  /**
+   * Values rounded to the given number of digits after the decimal point, still written as json
+   * numbers. It is the only quantization applied to float fields, the others being for arrays and
+   * buffers.
+   */
+  public static Quantization decimals(int digits) {
+    if (digits < 0 || digits > MAX_DECIMALS) {
+      throw new IllegalArgumentException("The digits must be between 0 and " + MAX_DECIMALS);
+    }
+    return new Quantization(Kind.DECIMALS, digits);
+  }
+
+  /** Values written as 16-bit IEEE half precision floats in a binary payload. */
+  public static Quantization halfFloat() {
+    return HALF_FLOAT;
+  }
+
+  /**
+   * Values written as 8 or 16-bit integers spread evenly between the minimum and the maximum value
+   * of the array, which are written before them in a binary payload.
+   */
+  public static Quantization fixedPoint(int bits) {
+    if (bits != 8 && bits != 16) {
+      throw new IllegalArgumentException("The bits must be 8 or 16");
+    }
+    return new Quantization(Kind.FIXED_POINT, bits);
+  }
+
+  Kind getKind() {
+    return kind;
+  }
+
+  int getPrecision() {
+    return precision;
+  }
+
+  /** @return the value rounded to the decimals of a {@link #decimals} quantization */
+  float round(float value) {
+    if (kind != Kind.DECIMALS) {
+      return value;
+    }
+    double scaled = value * scale;
+    // too large to have decimals at this precision
+    if (Math.abs(scaled) >= 0x1p52 || Double.isNaN(scaled)) {
+      return value;
+    }
+    return (float) (Math.rint(scaled) / scale);
+  }
+
+  /** @return the integer of a {@link #fixedPoint} quantization, in [0, 2^bits - 1] */
+  int toFixed(float value, float min, float max) {
+    if (!(max > min)) {
+      return 0;
+    }
+    double res = Math.rint((value - (double) min) / ((double) max - min) * scale);
+    return (int) Math.max(0, Math.min(scale, res));
+  }
+
+  static float fromFixed(int fixed, float min, float max, int bits) {
+    return (float) (min + fixed * ((double) max - min) / ((1 << bits) - 1));
+  }
+
+  /** @return the half precision float nearest to the value, ties to even */
+  static short toHalf(float value) {
+    int bits = Float.floatToRawIntBits(value);
+    int sign = (bits >>> 16) & 0x8000;
+    int exponent = (bits >>> 23) & 0xff;
+    int mantissa = bits & 0x7fffff;
+    if (exponent == 0xff) {
+      // infinities, and NaN which keep a mantissa bit
+      return (short) (sign | 0x7c00 | (mantissa != 0 ? 0x200 : 0));
+    }
+    int halfExponent = exponent - 127 + 15;
+    if (halfExponent >= 0x1f) {
+      return (short) (sign | 0x7c00);
+    }
+    int shift;
+    int res;
+    if (halfExponent <= 0) {
+      // subnormal half
+      if (halfExponent < -10) {
+        return (short) sign;
+      }
+      mantissa |= 0x800000;
+      shift = 14 - halfExponent;
+      res = mantissa >> shift;
+    } else {
+      shift = 13;
+      res = halfExponent << 10 | mantissa >> shift;
+    }
+    int rest = mantissa & ((1 << shift) - 1);
+    int half = 1 << shift - 1;
+    // a carry into the exponent is the right rounding, up to the infinity
+    if (rest > half || rest == half && (res & 1) != 0) {
+      res++;
+    }
+    return (short) (sign | res);
+  }
+
+  static float fromHalf(short half) {
+    int bits = half & 0xffff;
+    int sign = (bits & 0x8000) << 16;
+    int exponent = (bits >>> 10) & 0x1f;
+    int mantissa = bits & 0x3ff;
+    if (exponent == 0x1f) {
+      return Float.intBitsToFloat(sign | 0x7f800000 | mantissa << 13);
+    }
+    if (exponent == 0) {
+      float res = mantissa * 0x1p-24f;
+      return sign != 0 ? -res : res;
+    }
+    return Float.intBitsToFloat(sign | (exponent + 112) << 23 | mantissa << 13);
+  }
+}
@@ -0,0 +1,49 @@
+package fr.exratio.jme.exporter;
+
+import com.jme3.export.Savable;
+import com.jme3.export.SavableClassUtil;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Creates the Savables read by the importers.
+ *
+ * <p>The first instance of a class name goes through {@link SavableClassUtil#fromName} so the
+ * jME remapping of old class names applies, then its no-arg constructor is kept as a method
+ * handle. The cache is shared by all the importers and threads of the JVM.
+ */
+final class SavableFactory {
+
+  private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Savable.class);
+  private static final ConcurrentMap<String, MethodHandle> CONSTRUCTORS =
+      new ConcurrentHashMap<>();
+
+  private SavableFactory() {}
+
+  /** @return a new instance of the given class */
+  static Savable newInstance(String className) throws Exception {
+    MethodHandle constructor = CONSTRUCTORS.get(className);
+    if (constructor == null) {
+      Savable res = SavableClassUtil.fromName(className, null);
+      CONSTRUCTORS.putIfAbsent(className, constructor(res.getClass()));
+      return res;
+    }
+    try {
+      return (Savable) constructor.invokeExact();
+    } catch (Exception | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new IllegalStateException(t);
+    }
+  }
+
+  private static MethodHandle constructor(Class<? extends Savable> type) throws Exception {
+    Constructor<? extends Savable> constructor = type.getDeclaredConstructor();
+    constructor.setAccessible(true);
+    return MethodHandles.lookup().unreflectConstructor(constructor).asType(CONSTRUCTOR_TYPE);
+  }
+}
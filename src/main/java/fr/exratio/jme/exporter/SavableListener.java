@@ -0,0 +1,49 @@
+package fr.exratio.jme.exporter;
+
+import com.jme3.export.Savable;
+
+/**
+ * Receives the savables and fields written by a {@link JsonExporter} or read by a {@link
+ * JsonImporter} it is set on, to find out where the time and the bytes of a document go. The
+ * exporter and the importer do not measure anything when they have no listener.
+ *
+ * <p>The savables are reported with the time spent in their write or read method and the bytes of
+ * their fields, minus the ones of the savables nested in them which are reported for those. In
+ * the parallel modes the methods are called from the threads of the fork/join pool, and the
+ * savable holding the elements read or written in parallel is reported with the time spent
+ * waiting for them.
+ *
+ * @author NyouB
+ */
+public interface SavableListener {
+
+  /**
+   * A savable was written, shared savables being written once.
+   *
+   * @param bytes the bytes of its fields before any compression, or -1 when they are not counted:
+   *     with a dictionary, in the parallel mode and when not saving to a stream or a file
+   * @param nanos the time spent in its write method
+   */
+  default void savableWritten(Class<? extends Savable> type, long bytes, long nanos) {}
+
+  /**
+   * A savable of the given class gave a field to its capsule, which does not write it when it is
+   * an omitted default.
+   */
+  default void fieldWritten(Class<? extends Savable> type, String name, FieldType fieldType) {}
+
+  /**
+   * A savable was read, shared savables being read once.
+   *
+   * @param nanos the time spent in its read method
+   */
+  default void savableRead(Class<? extends Savable> type, long nanos) {}
+
+  /**
+   * A savable of the given class read a field.
+   *
+   * @param found false if the document does not have the field and the default value was returned
+   */
+  default void fieldRead(
+      Class<? extends Savable> type, String name, FieldType fieldType, boolean found) {}
+}
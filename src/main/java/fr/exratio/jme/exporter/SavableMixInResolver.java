@@ -0,0 +1,51 @@
+package fr.exratio.jme.exporter;
+
+import com.fasterxml.jackson.databind.introspect.ClassIntrospector.MixInResolver;
+import com.jme3.export.Savable;
+
+/**
+ * Attach the {@link SavableMixIn} to the Savable implementations of some packages the first time
+ * Jackson introspects them, instead of scanning the packages up front. The mix-ins the mapper
+ * already resolved come first.
+ */
+final class SavableMixInResolver implements MixInResolver {
+
+  private final MixInResolver mapperMixIns;
+  private final String[] packages;
+  private final ClassValue<Class<?>> mixIns =
+      new ClassValue<Class<?>>() {
+        @Override
+        protected Class<?> computeValue(Class<?> type) {
+          return isSavable(type) ? SavableMixIn.class : null;
+        }
+      };
+
+  SavableMixInResolver(MixInResolver mapperMixIns, String... packages) {
+    this.mapperMixIns = mapperMixIns;
+    this.packages = packages.clone();
+  }
+
+  private boolean isSavable(Class<?> type) {
+    if (type.isInterface() || !Savable.class.isAssignableFrom(type)) {
+      return false;
+    }
+    for (String acceptedPackage : packages) {
+      if (type.getName().startsWith(acceptedPackage + ".")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public Class<?> findMixInClassFor(Class<?> cls) {
+    Class<?> res = mapperMixIns != null ? mapperMixIns.findMixInClassFor(cls) : null;
+    return res != null ? res : mixIns.get(cls);
+  }
+
+  @Override
+  public MixInResolver copy() {
+    // immutable, the copies share the cache
+    return this;
+  }
+}
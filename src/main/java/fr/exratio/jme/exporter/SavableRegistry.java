@@ -0,0 +1,227 @@
+package fr.exratio.jme.exporter;
+
+import com.jme3.export.Savable;
+import io.github.classgraph.ClassGraph;
+import io.github.classgraph.ClassInfo;
+import io.github.classgraph.ScanResult;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The list of the Savable implementations given to {@link ObjectMapperHelper}, generated at build
+ * time so the mapper does not have to scan the classpath.
+ *
+ * <p>The registry is a {@value #RESOURCE} resource with one class name per line, after the
+ * packages and the names of the jars it was generated from. It is written by the {@link #main}
+ * method, run after compilation with the output directory and the packages to scan: {@code java
+ * fr.exratio.jme.exporter.SavableRegistry target/classes com.jme3 my.game}. The "savable-registry"
+ * Maven profile does it for this library. The other jars and the directories of the class path
+ * are still scanned for those packages, as a registry of com.jme3 generated with jme3-core does
+ * not list the classes of jme3-terrain.
+ *
+ * @author NyouB
+ */
+public final class SavableRegistry {
+
+  public static final String RESOURCE = "META-INF/jme-json-exporter/savables";
+  private static final String PACKAGE = "#package ";
+  private static final String JAR = "#jar ";
+
+  private SavableRegistry() {}
+
+  /**
+   * Generate the registry.
+   *
+   * @param args the output directory followed by the packages to scan
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      throw new IllegalArgumentException("usage: SavableRegistry <output directory> <package>...");
+    }
+    String[] packages = new String[args.length - 1];
+    System.arraycopy(args, 1, packages, 0, packages.length);
+    File file = new File(args[0], RESOURCE);
+    Files.createDirectories(file.getParentFile().toPath());
+    try (ScanResult scanResult =
+            new ClassGraph().enableClassInfo().acceptPackages(packages).scan();
+        Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+      for (String scannedPackage : packages) {
+        writer.write(PACKAGE + scannedPackage + '\n');
+      }
+      for (File element : scanResult.getClasspathFiles()) {
+        if (isJar(element)) {
+          writer.write(JAR + element.getName() + '\n');
+        }
+      }
+      for (ClassInfo classInfo : scanResult.getClassesImplementing(Savable.class.getName())) {
+        writer.write(classInfo.getName());
+        writer.write('\n');
+      }
+    }
+  }
+
+  /** @return the names of the Savable implementations found in the given packages */
+  public static List<String> scan(String... packages) {
+    try (ScanResult scanResult =
+        new ClassGraph().enableClassInfo().acceptPackages(packages).scan()) {
+      return scanResult.getClassesImplementing(Savable.class.getName()).getNames();
+    }
+  }
+
+  /**
+   * @return the names of the Savable implementations of the packages, read from the registries
+   *     for the jars they were generated from and found by a scan of the rest of the class path
+   */
+  static List<String> find(ClassLoader classLoader, String... packages) {
+    List<Listing> listings = new ArrayList<>();
+    try {
+      listings.addAll(listings(classLoader));
+    } catch (IOException e) {
+      // the whole class path is scanned
+    }
+    Set<String> res = new LinkedHashSet<>();
+    for (Listing listing : listings) {
+      for (String className : listing.classNames) {
+        if (packageOf(className, packages) != null) {
+          res.add(className);
+        }
+      }
+    }
+    try (ScanResult scanResult =
+        new ClassGraph()
+            .enableClassInfo()
+            .acceptPackages(packages)
+            .filterClasspathElements(path -> !coversAll(listings, new File(path), packages))
+            .scan()) {
+      for (ClassInfo classInfo : scanResult.getClassesImplementing(Savable.class.getName())) {
+        String scannedPackage = packageOf(classInfo.getName(), packages);
+        if (!covers(listings, scannedPackage, classInfo.getClasspathElementFile())) {
+          res.add(classInfo.getName());
+        }
+      }
+    }
+    return new ArrayList<>(res);
+  }
+
+  private static String packageOf(String className, String[] packages) {
+    for (String scannedPackage : packages) {
+      if (className.startsWith(scannedPackage + ".")) {
+        return scannedPackage;
+      }
+    }
+    return null;
+  }
+
+  private static boolean coversAll(List<Listing> listings, File element, String[] packages) {
+    for (String scannedPackage : packages) {
+      if (!covers(listings, scannedPackage, element)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean covers(List<Listing> listings, String scannedPackage, File element) {
+    if (scannedPackage == null || element == null || !isJar(element)) {
+      return false;
+    }
+    for (Listing listing : listings) {
+      if (listing.covers(scannedPackage, element.getName())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** The directories are never covered, their name does not tell which classes they hold. */
+  private static boolean isJar(File element) {
+    return element.isFile() && element.getName().endsWith(".jar");
+  }
+
+  /**
+   * Read all the registries of the class path.
+   *
+   * @return the registered class names, or null when there is no registry
+   */
+  public static Set<String> load(ClassLoader classLoader) throws IOException {
+    List<Listing> listings = listings(classLoader);
+    if (listings.isEmpty()) {
+      return null;
+    }
+    Set<String> res = new LinkedHashSet<>();
+    for (Listing listing : listings) {
+      res.addAll(listing.classNames);
+    }
+    return res;
+  }
+
+  private static List<Listing> listings(ClassLoader classLoader) throws IOException {
+    List<Listing> res = new ArrayList<>();
+    Enumeration<URL> resources = classLoader.getResources(RESOURCE);
+    while (resources.hasMoreElements()) {
+      Listing listing = new Listing();
+      try (InputStream inputStream = resources.nextElement().openStream();
+          BufferedReader reader =
+              new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          line = line.trim();
+          if (line.startsWith(PACKAGE)) {
+            listing.packages.add(line.substring(PACKAGE.length()));
+          } else if (line.startsWith(JAR)) {
+            listing.jars.add(line.substring(JAR.length()));
+          } else if (!line.isEmpty() && !line.startsWith("#")) {
+            listing.classNames.add(line);
+          }
+        }
+      }
+      res.add(listing);
+    }
+    return res;
+  }
+
+  static List<Class<?>> loadClasses(Iterable<String> classNames, ClassLoader classLoader) {
+    List<Class<?>> res = new ArrayList<>();
+    for (String className : classNames) {
+      try {
+        res.add(Class.forName(className, false, classLoader));
+      } catch (ClassNotFoundException | LinkageError e) {
+        // a registry entry of a class missing at runtime, the mapper will not know it
+      }
+    }
+    return res;
+  }
+
+  /** The classes of a registry, and the packages and the jars it lists all the classes of. */
+  private static final class Listing {
+
+    private final Set<String> classNames = new LinkedHashSet<>();
+    private final Set<String> packages = new HashSet<>();
+    private final Set<String> jars = new HashSet<>();
+
+    private boolean covers(String scannedPackage, String jar) {
+      if (!jars.contains(jar)) {
+        return false;
+      }
+      for (String listed : packages) {
+        if (scannedPackage.equals(listed) || scannedPackage.startsWith(listed + ".")) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
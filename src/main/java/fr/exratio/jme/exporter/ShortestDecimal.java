@@ -0,0 +1,329 @@
+package fr.exratio.jme.exporter;
+
+import java.math.BigInteger;
+
+/**
+ * Formats floats and doubles into a char array with the fewest digits which read back as the same
+ * value, laid out like {@link Float#toString}: plain from 10^-3 to 10^7, otherwise in scientific
+ * notation. Jackson formats every number through a new string, and Float.toString before Java 19
+ * may write more digits than needed.
+ *
+ * <p>The digits are computed with the Schubfach algorithm of R. Giulietti, "The Schubfach way to
+ * render doubles", which is the one of Java 19 and later. The 128-bit powers of ten it multiplies
+ * by are computed once when the class is loaded.
+ */
+final class ShortestDecimal {
+
+  /** The length of the longest text, such as -2.2250738585072014E-308. */
+  static final int MAX_LENGTH = 24;
+
+  private static final int FLOAT_P = 24;
+  private static final int FLOAT_Q_MIN = -149;
+  private static final int FLOAT_C_MIN = 1 << FLOAT_P - 1;
+  private static final int FLOAT_C_TINY = 8;
+  private static final int FLOAT_T_MASK = FLOAT_C_MIN - 1;
+
+  private static final int DOUBLE_P = 53;
+  private static final int DOUBLE_Q_MIN = -1074;
+  private static final long DOUBLE_C_MIN = 1L << DOUBLE_P - 1;
+  private static final int DOUBLE_C_TINY = 3;
+  private static final long DOUBLE_T_MASK = DOUBLE_C_MIN - 1;
+
+  private static final long MASK_32 = (1L << 32) - 1;
+  private static final long MASK_63 = (1L << 63) - 1;
+
+  // g1 2^63 + g0 = floor(10^-k 2^(125 - flog2pow10(-k))) + 1, for the k of finite doubles
+  private static final int K_MIN = -324;
+  private static final int K_MAX = 292;
+  private static final long[] G1 = new long[K_MAX - K_MIN + 1];
+  private static final long[] G0 = new long[K_MAX - K_MIN + 1];
+
+  private static final long[] POWERS_OF_TEN = new long[19];
+
+  static {
+    for (int k = K_MIN; k <= K_MAX; k++) {
+      int shift = 125 - flog2pow10(-k);
+      BigInteger numerator = BigInteger.TEN.pow(Math.max(-k, 0));
+      BigInteger denominator = BigInteger.TEN.pow(Math.max(k, 0));
+      if (shift >= 0) {
+        numerator = numerator.shiftLeft(shift);
+      } else {
+        denominator = denominator.shiftLeft(-shift);
+      }
+      BigInteger g = numerator.divide(denominator).add(BigInteger.ONE);
+      G1[k - K_MIN] = g.shiftRight(63).longValueExact();
+      G0[k - K_MIN] = g.longValue() & MASK_63;
+    }
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+  }
+
+  private ShortestDecimal() {}
+
+  /**
+   * Write a finite float.
+   *
+   * @return the index following the text
+   */
+  static int format(float value, char[] chars, int offset) {
+    int bits = Float.floatToRawIntBits(value);
+    boolean negative = bits < 0;
+    int t = bits & FLOAT_T_MASK;
+    int bq = (bits >>> FLOAT_P - 1) & 0xff;
+    if (bq != 0) {
+      int mq = -FLOAT_Q_MIN + 1 - bq;
+      int c = FLOAT_C_MIN | t;
+      // integers
+      if (0 < mq & mq < FLOAT_P) {
+        int f = c >> mq;
+        if (f << mq == c) {
+          return toChars(negative, f, 0, chars, offset);
+        }
+      }
+      return toDecimal(negative, -mq, c, 0, chars, offset);
+    }
+    if (t != 0) {
+      return t < FLOAT_C_TINY
+          ? toDecimal(negative, FLOAT_Q_MIN, 10 * t, -1, chars, offset)
+          : toDecimal(negative, FLOAT_Q_MIN, t, 0, chars, offset);
+    }
+    return toChars(negative, 0, 0, chars, offset);
+  }
+
+  /**
+   * Write a finite double.
+   *
+   * @return the index following the text
+   */
+  static int format(double value, char[] chars, int offset) {
+    long bits = Double.doubleToRawLongBits(value);
+    boolean negative = bits < 0;
+    long t = bits & DOUBLE_T_MASK;
+    int bq = (int) (bits >>> DOUBLE_P - 1) & 0x7ff;
+    if (bq != 0) {
+      int mq = -DOUBLE_Q_MIN + 1 - bq;
+      long c = DOUBLE_C_MIN | t;
+      // integers
+      if (0 < mq & mq < DOUBLE_P) {
+        long f = c >> mq;
+        if (f << mq == c) {
+          return toChars(negative, f, 0, chars, offset);
+        }
+      }
+      return toDecimal(negative, -mq, c, 0, chars, offset);
+    }
+    if (t != 0) {
+      return t < DOUBLE_C_TINY
+          ? toDecimal(negative, DOUBLE_Q_MIN, 10 * t, -1, chars, offset)
+          : toDecimal(negative, DOUBLE_Q_MIN, t, 0, chars, offset);
+    }
+    return toChars(negative, 0, 0, chars, offset);
+  }
+
+  /** The value is c 2^q, its shortest decimal is written as f 10^e. */
+  private static int toDecimal(
+      boolean negative, int q, int c, int dk, char[] chars, int offset) {
+    int out = c & 0x1;
+    long cb = c << 2;
+    long cbr = cb + 2;
+    long cbl;
+    int k;
+    if (c != FLOAT_C_MIN | q == FLOAT_Q_MIN) {
+      // regular spacing
+      cbl = cb - 2;
+      k = flog10pow2(q);
+    } else {
+      // irregular spacing
+      cbl = cb - 1;
+      k = flog10threeQuartersPow2(q);
+    }
+    int h = q + flog2pow10(-k) + 33;
+    long g = G1[k - K_MIN] + 1;
+
+    int vb = rop(g, cb << h);
+    int vbl = rop(g, cbl << h);
+    int vbr = rop(g, cbr << h);
+
+    int s = vb >> 2;
+    if (s >= 100) {
+      // s / 10 = s 1_717_986_919 / 2^34 for s < 2^30
+      int sp10 = 10 * (int) (s * 1_717_986_919L >>> 34);
+      int tp10 = sp10 + 10;
+      boolean upin = vbl + out <= sp10 << 2;
+      boolean wpin = (tp10 << 2) + out <= vbr;
+      if (upin != wpin) {
+        return toChars(negative, upin ? sp10 : tp10, k, chars, offset);
+      }
+    }
+    int t = s + 1;
+    boolean uin = vbl + out <= s << 2;
+    boolean win = (t << 2) + out <= vbr;
+    if (uin != win) {
+      return toChars(negative, uin ? s : t, k + dk, chars, offset);
+    }
+    // both are in the rounding interval, the closest one is kept
+    int cmp = vb - (s + t << 1);
+    return toChars(
+        negative, cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, chars, offset);
+  }
+
+  private static int toDecimal(
+      boolean negative, int q, long c, int dk, char[] chars, int offset) {
+    int out = (int) c & 0x1;
+    long cb = c << 2;
+    long cbr = cb + 2;
+    long cbl;
+    int k;
+    if (c != DOUBLE_C_MIN | q == DOUBLE_Q_MIN) {
+      // regular spacing
+      cbl = cb - 2;
+      k = flog10pow2(q);
+    } else {
+      // irregular spacing
+      cbl = cb - 1;
+      k = flog10threeQuartersPow2(q);
+    }
+    int h = q + flog2pow10(-k) + 2;
+    long g1 = G1[k - K_MIN];
+    long g0 = G0[k - K_MIN];
+
+    long vb = rop(g1, g0, cb << h);
+    long vbl = rop(g1, g0, cbl << h);
+    long vbr = rop(g1, g0, cbr << h);
+
+    long s = vb >> 2;
+    if (s >= 100) {
+      // s / 10 = s 115_292_150_460_684_698 / 2^60 for s < 2^60
+      long sp10 = 10 * Math.multiplyHigh(s, 115_292_150_460_684_698L << 4);
+      long tp10 = sp10 + 10;
+      boolean upin = vbl + out <= sp10 << 2;
+      boolean wpin = (tp10 << 2) + out <= vbr;
+      if (upin != wpin) {
+        return toChars(negative, upin ? sp10 : tp10, k, chars, offset);
+      }
+    }
+    long t = s + 1;
+    boolean uin = vbl + out <= s << 2;
+    boolean win = (t << 2) + out <= vbr;
+    if (uin != win) {
+      return toChars(negative, uin ? s : t, k + dk, chars, offset);
+    }
+    // both are in the rounding interval, the closest one is kept
+    long cmp = vb - (s + t << 1);
+    return toChars(
+        negative, cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, chars, offset);
+  }
+
+  /** @return the 32 high bits of g cp rounded to odd */
+  private static int rop(long g, long cp) {
+    long x1 = Math.multiplyHigh(g, cp);
+    long vbp = x1 >>> 31;
+    return (int) (vbp | (x1 & MASK_32) + MASK_32 >>> 32);
+  }
+
+  /** @return the 64 high bits of (g1 2^63 + g0) cp rounded to odd */
+  private static long rop(long g1, long g0, long cp) {
+    long x1 = Math.multiplyHigh(g0, cp);
+    long y0 = g1 * cp;
+    long y1 = Math.multiplyHigh(g1, cp);
+    long z = (y0 >>> 1) + x1;
+    long vbp = y1 + (z >>> 63);
+    return vbp | (z & MASK_63) + MASK_63 >>> 63;
+  }
+
+  /** @return floor(log10(2^e)) */
+  private static int flog10pow2(int e) {
+    return (int) (e * 661_971_961_083L >> 41);
+  }
+
+  /** @return floor(log10(3/4 2^e)) */
+  private static int flog10threeQuartersPow2(int e) {
+    return (int) (e * 661_971_961_083L - 274_743_187_321L >> 41);
+  }
+
+  /** @return floor(log2(10^e)) */
+  private static int flog2pow10(int e) {
+    return (int) (e * 913_124_641_741L >> 38);
+  }
+
+  /** Write f 10^e in the layout of Float.toString. */
+  private static int toChars(boolean negative, long f, int e, char[] chars, int offset) {
+    int pos = offset;
+    if (negative) {
+      chars[pos++] = '-';
+    }
+    if (f == 0) {
+      chars[pos++] = '0';
+      chars[pos++] = '.';
+      chars[pos++] = '0';
+      return pos;
+    }
+    while (f % 10 == 0) {
+      f /= 10;
+      e++;
+    }
+    int length = 1;
+    while (length < POWERS_OF_TEN.length && f >= POWERS_OF_TEN[length]) {
+      length++;
+    }
+    // the exponent of the first digit
+    int exponent = e + length - 1;
+    if (exponent >= -3 && exponent < 7) {
+      if (exponent < 0) {
+        chars[pos++] = '0';
+        chars[pos++] = '.';
+        for (int i = -1; i > exponent; i--) {
+          chars[pos++] = '0';
+        }
+        return writeDigits(f, length, chars, pos);
+      }
+      if (length <= exponent + 1) {
+        pos = writeDigits(f, length, chars, pos);
+        for (int i = length; i <= exponent; i++) {
+          chars[pos++] = '0';
+        }
+        chars[pos++] = '.';
+        chars[pos++] = '0';
+        return pos;
+      }
+      return writeDigits(f, length, exponent + 1, chars, pos);
+    }
+    if (length == 1) {
+      chars[pos++] = (char) ('0' + f);
+      chars[pos++] = '.';
+      chars[pos++] = '0';
+    } else {
+      pos = writeDigits(f, length, 1, chars, pos);
+    }
+    chars[pos++] = 'E';
+    if (exponent < 0) {
+      chars[pos++] = '-';
+      exponent = -exponent;
+    }
+    return writeDigits(exponent, exponent >= 100 ? 3 : exponent >= 10 ? 2 : 1, chars, pos);
+  }
+
+  private static int writeDigits(long f, int length, char[] chars, int pos) {
+    for (int i = pos + length - 1; i >= pos; i--) {
+      chars[i] = (char) ('0' + f % 10);
+      f /= 10;
+    }
+    return pos + length;
+  }
+
+  /** Write the digits with a dot after the given number of them. */
+  private static int writeDigits(long f, int length, int dot, char[] chars, int pos) {
+    int end = pos + length + 1;
+    for (int i = end - 1; i >= pos; i--) {
+      if (i == pos + dot) {
+        chars[i] = '.';
+      } else {
+        chars[i] = (char) ('0' + f % 10);
+        f /= 10;
+      }
+    }
+    return end;
+  }
+}
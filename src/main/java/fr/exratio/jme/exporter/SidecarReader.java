@@ -0,0 +1,59 @@
+package fr.exratio.jme.exporter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Give access to the payloads of a sidecar file through a read-only memory mapping.
+ *
+ * <p>Files up to 2GB are mapped once, larger ones are mapped payload by payload. The mappings stay
+ * valid once the reader is closed. With views, direct buffers are handed out as read-only views of
+ * the mapping instead of copies.
+ */
+final class SidecarReader implements Closeable {
+
+  private final FileChannel channel;
+  private final long size;
+  private final ByteBuffer mapping;
+  private final boolean views;
+
+  SidecarReader(File file, boolean views) throws IOException {
+    this.views = views;
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    size = channel.size();
+    mapping = size <= Integer.MAX_VALUE ? channel.map(MapMode.READ_ONLY, 0, size) : null;
+  }
+
+  boolean isViews() {
+    return views;
+  }
+
+  /** @return the bytes of a payload, in little-endian order */
+  ByteBuffer slice(long offset, int length) throws IOException {
+    if (offset < 0 || length < 0 || offset + length > size) {
+      throw new IOException(
+          "Payload [" + offset + ", " + (offset + length) + "[ is outside of the sidecar file");
+    }
+    ByteBuffer res;
+    if (mapping != null) {
+      res = mapping.duplicate();
+      res.position((int) offset);
+      res.limit((int) offset + length);
+      res = res.slice();
+    } else {
+      res = channel.map(MapMode.READ_ONLY, offset, length);
+    }
+    return res.order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
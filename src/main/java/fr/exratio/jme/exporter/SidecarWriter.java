@@ -0,0 +1,66 @@
+package fr.exratio.jme.exporter;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+
+/**
+ * Append binary payloads to the sidecar file written next to a json file.
+ *
+ * <p>Every payload starts on a {@link #ALIGNMENT} bytes boundary so the importer can map typed
+ * views on it without copying.
+ */
+final class SidecarWriter implements Closeable {
+
+  static final String EXTENSION = ".bin";
+  static final int ALIGNMENT = 16;
+  /** Arrays smaller than this stay in the json, buffers always go to the sidecar. */
+  static final int MIN_ARRAY_BYTES = 1024;
+
+  private final OutputStream outputStream;
+  private final byte[] scratch = new byte[8192];
+  private long offset;
+
+  SidecarWriter(File file) throws IOException {
+    outputStream = new BufferedOutputStream(new FileOutputStream(file));
+  }
+
+  /** @return the sidecar of a json file: its name with the extension replaced by .bin */
+  static File sidecarFile(File jsonFile) {
+    String name = jsonFile.getName();
+    int dot = name.lastIndexOf('.');
+    String baseName = dot > 0 ? name.substring(0, dot) : name;
+    return new File(jsonFile.getAbsoluteFile().getParentFile(), baseName + EXTENSION);
+  }
+
+  /**
+   * Write the values of the buffer from its position to its limit in little-endian order.
+   *
+   * @return the offset of the first byte in the file
+   */
+  long append(Buffer source) throws IOException {
+    long padding = (ALIGNMENT - offset % ALIGNMENT) % ALIGNMENT;
+    for (long i = 0; i < padding; i++) {
+      outputStream.write(0);
+    }
+    offset += padding;
+    long start = offset;
+    InputStream inputStream = new LittleEndianInputStream(source);
+    int read;
+    while ((read = inputStream.read(scratch, 0, scratch.length)) != -1) {
+      outputStream.write(scratch, 0, read);
+      offset += read;
+    }
+    return start;
+  }
+
+  @Override
+  public void close() throws IOException {
+    outputStream.close();
+  }
+}
@@ -0,0 +1,163 @@
+package fr.exratio.jme.exporter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Encodes floats as the exclusive or of their bits with the previous value, the compression of
+ * the Gorilla time series database (T. Pelkonen et al., "Gorilla: A Fast, Scalable, In-Memory
+ * Time Series Database"). Neighbouring values of a smooth series, such as a heightmap or the times
+ * of animation keys, share their sign, exponent and high mantissa bits, so their exclusive or has
+ * many leading zeros, and often trailing zeros too.
+ *
+ * <p>The bits are the count of values and the first value on 32 bits, then for each other value:
+ *
+ * <ul>
+ *   <li>0 when it is equal to the previous one
+ *   <li>10 then the meaningful bits of the exclusive or, when they fit in the window of leading
+ *       and trailing zeros of the previous one
+ *   <li>11 then the count of leading zeros on 5 bits, the count of meaningful bits minus one on 5
+ *       bits and the meaningful bits
+ * </ul>
+ *
+ * The values are read back with the same bits, NaN included.
+ */
+final class XorFloats {
+
+  private XorFloats() {}
+
+  /** @return the encoded values of the buffer, from 0 to its limit */
+  static ByteBuffer encode(FloatBuffer buffer) {
+    FloatBuffer source = buffer.duplicate();
+    source.rewind();
+    int count = source.remaining();
+    BitWriter writer = new BitWriter(count * 2 + 8);
+    writer.write(count, 32);
+    int previous = 0;
+    int leading = Integer.MAX_VALUE;
+    int trailing = 0;
+    for (int i = 0; i < count; i++) {
+      int bits = Float.floatToRawIntBits(source.get(i));
+      if (i == 0) {
+        writer.write(bits, 32);
+        previous = bits;
+        continue;
+      }
+      int xor = bits ^ previous;
+      previous = bits;
+      if (xor == 0) {
+        writer.write(0, 1);
+        continue;
+      }
+      int xorLeading = Integer.numberOfLeadingZeros(xor);
+      int xorTrailing = Integer.numberOfTrailingZeros(xor);
+      if (xorLeading >= leading && xorTrailing >= trailing) {
+        writer.write(0b10, 2);
+        writer.write(xor >>> trailing, 32 - leading - trailing);
+      } else {
+        leading = xorLeading;
+        trailing = xorTrailing;
+        int length = 32 - leading - trailing;
+        writer.write(0b11, 2);
+        writer.write(leading, 5);
+        writer.write(length - 1, 5);
+        writer.write(xor >>> trailing, length);
+      }
+    }
+    return writer.toByteBuffer();
+  }
+
+  static float[] decode(ByteBuffer bytes) throws IOException {
+    BitReader reader = new BitReader(bytes);
+    int count = reader.read(32);
+    // every value takes at least a bit
+    if (count < 0 || count > bytes.remaining() * 8L + 64) {
+      throw new IOException("Invalid count of values " + count);
+    }
+    float[] res = new float[count];
+    int previous = 0;
+    int leading = 0;
+    int trailing = 0;
+    for (int i = 0; i < count; i++) {
+      if (i == 0) {
+        previous = reader.read(32);
+      } else if (reader.read(1) != 0) {
+        if (reader.read(1) != 0) {
+          leading = reader.read(5);
+          trailing = 32 - leading - (reader.read(5) + 1);
+          if (trailing < 0) {
+            throw new IOException("Invalid count of meaningful bits");
+          }
+        }
+        previous ^= reader.read(32 - leading - trailing) << trailing;
+      }
+      res[i] = Float.intBitsToFloat(previous);
+    }
+    return res;
+  }
+
+  /** Bits written from the most significant one, into a growing array. */
+  private static final class BitWriter {
+
+    private byte[] bytes;
+    private int pos;
+    private long pending;
+    private int pendingBits;
+
+    BitWriter(int capacity) {
+      bytes = new byte[capacity];
+    }
+
+    /** Write the low bits of the value, at most 32. */
+    void write(int value, int bitCount) {
+      if (bitCount == 0) {
+        return;
+      }
+      pending = pending << bitCount | value & (1L << bitCount) - 1;
+      pendingBits += bitCount;
+      while (pendingBits >= 8) {
+        pendingBits -= 8;
+        if (pos == bytes.length) {
+          bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        }
+        bytes[pos++] = (byte) (pending >>> pendingBits);
+      }
+    }
+
+    ByteBuffer toByteBuffer() {
+      if (pendingBits > 0) {
+        write(0, 8 - pendingBits);
+      }
+      return ByteBuffer.wrap(bytes, 0, pos);
+    }
+  }
+
+  private static final class BitReader {
+
+    private final ByteBuffer bytes;
+    private long pending;
+    private int pendingBits;
+
+    BitReader(ByteBuffer bytes) {
+      this.bytes = bytes;
+    }
+
+    /** @return the next bits, at most 32 */
+    int read(int bitCount) throws IOException {
+      if (bitCount == 0) {
+        return 0;
+      }
+      while (pendingBits < bitCount) {
+        if (!bytes.hasRemaining()) {
+          throw new IOException("Truncated xor encoded floats");
+        }
+        pending = pending << 8 | (bytes.get() & 0xff);
+        pendingBits += 8;
+      }
+      pendingBits -= bitCount;
+      return (int) (pending >>> pendingBits & (1L << bitCount) - 1);
+    }
+  }
+}
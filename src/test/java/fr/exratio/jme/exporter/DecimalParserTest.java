@@ -0,0 +1,72 @@
+package fr.exratio.jme.exporter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class DecimalParserTest {
+
+  private static double parse(String text) {
+    return DecimalParser.parse(text.toCharArray(), 0, text.length());
+  }
+
+  @Test
+  void parse() {
+    Assertions.assertEquals(0.05, parse("0.05"));
+    Assertions.assertEquals(-12.5, parse("-12.5"));
+    Assertions.assertEquals(1.0E-5, parse("1.0E-5"));
+    Assertions.assertEquals(3.0e10, parse("3e+10"));
+    Assertions.assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(parse("-0.0")));
+    Random random = new Random(7);
+    for (int i = 0; i < 100_000; i++) {
+      float value = Float.intBitsToFloat(random.nextInt());
+      if (Float.isNaN(value) || Float.isInfinite(value)) {
+        continue;
+      }
+      String text = Float.toString(value);
+      double res = parse(text);
+      if (!Double.isNaN(res)) {
+        Assertions.assertEquals(Double.parseDouble(text), res, text);
+        Assertions.assertEquals(value, (float) res, text);
+      }
+    }
+  }
+
+  @Test
+  void parseLeftToJackson() {
+    Assertions.assertTrue(Double.isNaN(parse("3.14159265358979323")));
+    Assertions.assertTrue(Double.isNaN(parse("1.0E-40")));
+    Assertions.assertTrue(Double.isNaN(parse("NaN")));
+  }
+
+  @Test
+  void readWithoutAllocation() throws IOException {
+    StringBuilder json = new StringBuilder("[");
+    Random random = new Random(7);
+    int count = 100_000;
+    for (int i = 0; i < count; i++) {
+      json.append(i == 0 ? "" : ",").append(random.nextFloat() * 100 - 50);
+    }
+    byte[] bytes = json.append(']').toString().getBytes();
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+    long allocated = Long.MAX_VALUE;
+    // the first runs allocate while the code is compiled
+    for (int run = 0; run < 3; run++) {
+      JsonParser parser = new JsonFactory().createParser(bytes);
+      parser.nextToken();
+      long before = threads.getThreadAllocatedBytes(thread);
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        DecimalParser.floatValue(parser);
+      }
+      allocated = Math.min(allocated, threads.getThreadAllocatedBytes(thread) - before);
+    }
+    Assertions.assertTrue(allocated < count, allocated + " bytes allocated");
+  }
+}
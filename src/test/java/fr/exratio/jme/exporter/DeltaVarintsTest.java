@@ -0,0 +1,45 @@
+package fr.exratio.jme.exporter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class DeltaVarintsTest {
+
+  @Test
+  void encodeNearbyValuesInOneByte() throws IOException {
+    ShortBuffer indices = ShortBuffer.wrap(new short[] {0, 1, 2, 2, 1, 3, 2, 3, 4});
+    ByteBuffer bytes = DeltaVarints.encode(indices);
+    // the count then a byte per value
+    Assertions.assertEquals(1 + 9, bytes.remaining());
+    Assertions.assertArrayEquals(indices.array(), DeltaVarints.decodeShorts(bytes));
+  }
+
+  @Test
+  void roundTrip() throws IOException {
+    Random random = new Random(3);
+    int[] values = new int[10_000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i % 100 == 0 ? random.nextInt() : values[Math.max(i - 1, 0)] + random.nextInt(64);
+    }
+    values[1] = Integer.MIN_VALUE;
+    values[2] = Integer.MAX_VALUE;
+    Assertions.assertArrayEquals(
+        values, DeltaVarints.decodeInts(DeltaVarints.encode(IntBuffer.wrap(values))));
+
+    short[] shorts = {Short.MIN_VALUE, Short.MAX_VALUE, -1, 0, 1};
+    Assertions.assertArrayEquals(
+        shorts, DeltaVarints.decodeShorts(DeltaVarints.encode(ShortBuffer.wrap(shorts))));
+  }
+
+  @Test
+  void decodeTruncated() {
+    ByteBuffer bytes = DeltaVarints.encode(IntBuffer.wrap(new int[] {1000, 2000}));
+    bytes.limit(bytes.limit() - 1);
+    Assertions.assertThrows(IOException.class, () -> DeltaVarints.decodeInts(bytes));
+  }
+}
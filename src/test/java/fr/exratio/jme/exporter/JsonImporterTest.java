@@ -0,0 +1,398 @@
+package fr.exratio.jme.exporter;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.util.JsonGeneratorDelegate;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.Savable;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.shape.Box;
+import com.jme3.scene.shape.Sphere;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JsonImporterTest {
+
+  @TempDir File tempDir;
+
+  /** Counts the savables and records the fields reported to it. */
+  private static class RecordingListener implements SavableListener {
+
+    final Map<Class<?>, Integer> savables = new HashMap<>();
+    final List<String> fields = new ArrayList<>();
+    long bytes;
+
+    @Override
+    public void savableWritten(Class<? extends Savable> type, long bytes, long nanos) {
+      savables.merge(type, 1, Integer::sum);
+      this.bytes += bytes;
+    }
+
+    @Override
+    public void fieldWritten(Class<? extends Savable> type, String name, FieldType fieldType) {
+      fields.add(type.getSimpleName() + "." + name + ":" + fieldType);
+    }
+
+    @Override
+    public void savableRead(Class<? extends Savable> type, long nanos) {
+      savables.merge(type, 1, Integer::sum);
+    }
+
+    @Override
+    public void fieldRead(
+        Class<? extends Savable> type, String name, FieldType fieldType, boolean found) {
+      fields.add(type.getSimpleName() + "." + name + ":" + fieldType + (found ? "" : " missing"));
+    }
+  }
+
+  /** Writes a byte buffer, which the importer can hand out as decoded. */
+  public static class BytesSavable implements Savable {
+
+    ByteBuffer bytes;
+
+    @Override
+    public void write(JmeExporter ex) throws IOException {
+      ex.getCapsule(this).write(bytes, "bytes", null);
+    }
+
+    @Override
+    public void read(JmeImporter im) throws IOException {
+      bytes = im.getCapsule(this).readByteBuffer("bytes", null);
+    }
+  }
+
+  /** Records the generators and parsers it creates and the binary values they write and read. */
+  private static class RecordingFactory extends JsonFactory {
+
+    int generators;
+    int parsers;
+    int rawValues;
+    int binaryWrites;
+    int binaryReads;
+
+    @Override
+    public JsonGenerator createGenerator(OutputStream out, JsonEncoding enc) throws IOException {
+      generators++;
+      return new JsonGeneratorDelegate(super.createGenerator(out, enc)) {
+        @Override
+        public void writeRawValue(char[] text, int offset, int len) throws IOException {
+          rawValues++;
+          super.writeRawValue(text, offset, len);
+        }
+
+        @Override
+        public void writeBinary(Base64Variant b64variant, byte[] data, int offset, int len)
+            throws IOException {
+          binaryWrites++;
+          super.writeBinary(b64variant, data, offset, len);
+        }
+
+        @Override
+        public int writeBinary(Base64Variant b64variant, InputStream data, int dataLength)
+            throws IOException {
+          binaryWrites++;
+          return super.writeBinary(b64variant, data, dataLength);
+        }
+      };
+    }
+
+    @Override
+    public JsonParser createParser(InputStream in) throws IOException {
+      parsers++;
+      return new JsonParserDelegate(super.createParser(in)) {
+        @Override
+        public byte[] getBinaryValue(Base64Variant b64variant) throws IOException {
+          binaryReads++;
+          return super.getBinaryValue(b64variant);
+        }
+
+        @Override
+        public int readBinaryValue(Base64Variant b64variant, OutputStream out)
+            throws IOException {
+          binaryReads++;
+          return super.readBinaryValue(b64variant, out);
+        }
+      };
+    }
+  }
+
+  private File saveWithSidecar(Box box) throws IOException {
+    File file = new File(tempDir, "box.json");
+    JsonExporter exporter = new JsonExporter();
+    exporter.setSidecar(true);
+    exporter.save(box, file);
+    return file;
+  }
+
+  @Test
+  void loadSidecar() throws IOException {
+    Box box = new Box(1, 2, 3);
+    File file = saveWithSidecar(box);
+    Assertions.assertTrue(new File(tempDir, "box.bin").isFile());
+    String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    Assertions.assertTrue(json.contains("\"offset\""));
+    Assertions.assertFalse(json.contains("\"data\""));
+
+    Mesh res = (Mesh) new JsonImporter().load(file);
+    Assertions.assertEquals(
+        box.getFloatBuffer(Type.Position).rewind(), res.getFloatBuffer(Type.Position).rewind());
+    Assertions.assertEquals(
+        box.getShortBuffer(Type.Index).rewind(), res.getShortBuffer(Type.Index).rewind());
+  }
+
+  @Test
+  void loadSidecarAsViews() throws IOException {
+    Box box = new Box(1, 2, 3);
+    File file = saveWithSidecar(box);
+
+    JsonImporter importer = new JsonImporter();
+    importer.setStreaming(true);
+    importer.setDirectBuffers(true);
+    importer.setSidecarViews(true);
+    Mesh res = (Mesh) importer.load(file);
+    FloatBuffer positions = res.getFloatBuffer(Type.Position);
+    Assertions.assertTrue(positions.isDirect());
+    Assertions.assertTrue(positions.isReadOnly());
+    Assertions.assertEquals(box.getFloatBuffer(Type.Position).rewind(), positions);
+  }
+
+  @Test
+  void loadMemoryMapped() throws IOException {
+    Box box = new Box(1, 2, 3);
+    File file = new File(tempDir, "box.json");
+    new JsonExporter().save(box, file);
+
+    for (boolean streaming : new boolean[] {false, true}) {
+      JsonImporter importer = new JsonImporter();
+      importer.setMemoryMapped(true);
+      importer.setStreaming(streaming);
+      Mesh res = (Mesh) importer.load(file);
+      Assertions.assertEquals(
+          box.getFloatBuffer(Type.Position).rewind(), res.getFloatBuffer(Type.Position).rewind());
+    }
+  }
+
+  @Test
+  void loadWithFactory() throws IOException {
+    Box box = new Box(1, 2, 3);
+    RecordingFactory factory = new RecordingFactory();
+    JsonExporter exporter = new JsonExporter();
+    exporter.setFactory(factory);
+    exporter.setBinaryArrays(true);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    exporter.save(box, outputStream);
+    Assertions.assertEquals(1, factory.generators);
+    // the numbers are only formatted on the generators of Jackson's own JSON factory
+    Assertions.assertEquals(0, factory.rawValues);
+    Assertions.assertTrue(factory.binaryWrites > 0);
+
+    for (boolean streaming : new boolean[] {false, true}) {
+      JsonImporter importer = new JsonImporter();
+      importer.setFactory(factory);
+      importer.setStreaming(streaming);
+      Mesh res = (Mesh) importer.load(new ByteArrayInputStream(outputStream.toByteArray()));
+      Assertions.assertEquals(
+          box.getFloatBuffer(Type.Position).rewind(), res.getFloatBuffer(Type.Position).rewind());
+    }
+    Assertions.assertEquals(2, factory.parsers);
+    Assertions.assertTrue(factory.binaryReads > 0);
+  }
+
+  @Test
+  void loadCompressed() throws IOException {
+    // larger than a compression block
+    Sphere sphere = new Sphere(64, 64, 1);
+    for (Compression compression : Compression.values()) {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      JsonExporter exporter = new JsonExporter();
+      exporter.setCompression(compression);
+      exporter.save(sphere, outputStream);
+
+      for (boolean streaming : new boolean[] {false, true}) {
+        JsonImporter importer = new JsonImporter();
+        importer.setStreaming(streaming);
+        Mesh res = (Mesh) importer.load(new ByteArrayInputStream(outputStream.toByteArray()));
+        Assertions.assertEquals(
+            sphere.getFloatBuffer(Type.Position).rewind(),
+            res.getFloatBuffer(Type.Position).rewind());
+      }
+    }
+  }
+
+  @Test
+  void loadBinaryByteBuffer() throws IOException {
+    BytesSavable savable = new BytesSavable();
+    savable.bytes = ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    JsonExporter exporter = new JsonExporter();
+    exporter.setBinaryArrays(true);
+    exporter.save(savable, outputStream);
+
+    List<ByteBuffer> res = new ArrayList<>();
+    for (boolean streaming : new boolean[] {false, true}) {
+      JsonImporter importer = new JsonImporter();
+      importer.setStreaming(streaming);
+      res.add(
+          ((BytesSavable) importer.load(new ByteArrayInputStream(outputStream.toByteArray())))
+              .bytes);
+    }
+    // the same buffer, positioned at the end of its data, whatever the mode
+    Assertions.assertEquals(8, res.get(0).position());
+    Assertions.assertEquals(res.get(0).position(), res.get(1).position());
+    Assertions.assertEquals(res.get(0).limit(), res.get(1).limit());
+    Assertions.assertEquals(res.get(0).order(), res.get(1).order());
+    Assertions.assertEquals(savable.bytes.rewind(), res.get(1).rewind());
+  }
+
+  @Test
+  void saveCompressedFailure() throws InterruptedException {
+    Savable failing =
+        new TestSavable() {
+          @Override
+          public void write(JmeExporter ex) throws IOException {
+            throw new IOException("write failed");
+          }
+        };
+    JsonExporter exporter = new JsonExporter();
+    exporter.setCompression(Compression.DEFLATE);
+    for (int i = 0; i < 5; i++) {
+      Assertions.assertThrows(
+          IOException.class, () -> exporter.save(failing, new ByteArrayOutputStream()));
+    }
+    // the compression threads are stopped with the save
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().equals("jme-json-compression")) {
+        thread.join(1000);
+        Assertions.assertFalse(thread.isAlive());
+      }
+    }
+  }
+
+  @Test
+  void loadInvalidCompressedBlocks() throws IOException {
+    byte[] data = "[\"com.jme3.math.Vector3f\",{\"x\":1.0}]".getBytes(StandardCharsets.UTF_8);
+    Deflater deflater = new Deflater();
+    deflater.setInput(data);
+    deflater.finish();
+    byte[] compressed = new byte[256];
+    int length = deflater.deflate(compressed);
+    deflater.end();
+    // the raw and compressed lengths of a block larger than the blocks written, of a block
+    // compressed larger than a block can be, and of a block inflated to less than its length
+    int[][] blocks = {
+      {Integer.MAX_VALUE, length}, {data.length, Integer.MAX_VALUE}, {data.length + 10, length}
+    };
+    for (int[] block : blocks) {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(outputStream);
+      out.write(Compression.MAGIC);
+      out.write(Compression.VERSION);
+      out.write(Compression.DEFLATE.getId());
+      out.writeInt(block[0]);
+      out.writeInt(block[1]);
+      out.write(compressed, 0, length);
+      out.writeInt(0);
+      out.writeInt(0);
+
+      IOException e =
+          Assertions.assertThrows(
+              IOException.class,
+              () -> new JsonImporter().load(new ByteArrayInputStream(outputStream.toByteArray())));
+      Assertions.assertEquals("Decompression failed", e.getMessage());
+    }
+  }
+
+  @Test
+  void loadGzip() throws IOException {
+    Box box = new Box(1, 2, 3);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(outputStream)) {
+      new JsonExporter().save(box, gzip);
+    }
+
+    for (boolean streaming : new boolean[] {false, true}) {
+      boolean[] closed = new boolean[1];
+      InputStream inputStream =
+          new ByteArrayInputStream(outputStream.toByteArray()) {
+            @Override
+            public void close() {
+              closed[0] = true;
+            }
+          };
+      JsonImporter importer = new JsonImporter();
+      importer.setStreaming(streaming);
+      Mesh res = (Mesh) importer.load(inputStream);
+      Assertions.assertEquals(
+          box.getFloatBuffer(Type.Position).rewind(), res.getFloatBuffer(Type.Position).rewind());
+      // the gzip stream is closed, not the stream of the caller
+      Assertions.assertFalse(closed[0]);
+    }
+  }
+
+  @Test
+  void listenSave() throws IOException {
+    TestSavable savable = new TestSavable();
+    savable.vector3f = new Vector3f(1, 2, 3);
+    JsonExporter exporter = new JsonExporter();
+    RecordingListener listener = new RecordingListener();
+    exporter.setListener(listener);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    exporter.save(savable, outputStream);
+
+    Assertions.assertEquals(1, listener.savables.get(TestSavable.class));
+    Assertions.assertEquals(1, listener.savables.get(Vector3f.class));
+    Assertions.assertEquals(1, listener.savables.get(ColorRGBA.class));
+    // the fields without the class names and the ids
+    Assertions.assertTrue(listener.bytes > 0 && listener.bytes < outputStream.size());
+    Assertions.assertEquals(
+        Arrays.asList("TestSavable.vector3f:SAVABLE", "Vector3f.x:FLOAT"),
+        listener.fields.subList(0, 2));
+    Assertions.assertTrue(listener.fields.contains("TestSavable.myInt:INT"));
+  }
+
+  @Test
+  void listenLoad() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    new JsonExporter().save(new TestSavable(null), outputStream);
+    for (boolean streaming : new boolean[] {false, true}) {
+      JsonImporter importer = new JsonImporter();
+      importer.setStreaming(streaming);
+      RecordingListener listener = new RecordingListener();
+      importer.setListener(listener);
+      importer.load(new ByteArrayInputStream(outputStream.toByteArray()));
+
+      Assertions.assertEquals(1, listener.savables.get(TestSavable.class));
+      Assertions.assertEquals(1, listener.savables.get(Vector3f.class));
+      Assertions.assertTrue(listener.fields.contains("TestSavable.myInt:INT"));
+      Assertions.assertTrue(listener.fields.contains("TestSavable.myString:STRING missing"));
+      Assertions.assertTrue(listener.fields.contains("ColorRGBA.r:FLOAT"));
+    }
+  }
+}
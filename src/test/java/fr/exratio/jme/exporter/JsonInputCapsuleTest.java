@@ -10,8 +10,16 @@ import com.jme3.material.RenderState.BlendEquation;
 import com.jme3.material.RenderState.BlendEquationAlpha;
 import com.jme3.material.RenderState.BlendMode;
 import com.jme3.material.RenderState.TestFunction;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.control.BillboardControl;
+import com.jme3.scene.shape.Box;
+import com.jme3.util.BufferUtils;
 import com.jme3.util.IntMap;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
@@ -128,6 +136,27 @@ class JsonInputCapsuleTest {
             jsonInputCapsule.readFloatArray("doestnotexists", new float[] {1, 3})));
   }
 
+  @Test
+  void readBinaryFloatArray() throws IOException {
+    String json = "{\"myField\":{\"type\":\"f32\",\"data\":\"AADAPwAAAEAAAEDA\"}}";
+    JsonInputCapsule jsonInputCapsule =
+        new JsonInputCapsule(new ByteArrayInputStream(json.getBytes()), new JsonImporter());
+    Assertions.assertArrayEquals(
+        new float[] {1.5f, 2f, -3f}, jsonInputCapsule.readFloatArray("myField", null));
+  }
+
+  @Test
+  void readBinaryIntBuffer() throws IOException {
+    String json = "{\"myField\":{\"type\":\"i32\",\"data\":\"AQAAAP7///8DAAAAcBEBAA==\"}}";
+    JsonImporter importer = new JsonImporter();
+    importer.setDirectBuffers(true);
+    JsonInputCapsule jsonInputCapsule =
+        new JsonInputCapsule(new ByteArrayInputStream(json.getBytes()), importer);
+    Assertions.assertEquals(
+        BufferUtils.createIntBuffer(1, -2, 3, 70000),
+        jsonInputCapsule.readIntBuffer("myField", null));
+  }
+
   @Test
   void readFloatArray2D() throws IOException {
     String json = "{\"myField\":[[1.1,2.2,3.3,4.4],[1.1,2.2,3.3,4.4],[1.1,2.2]]}";
@@ -353,6 +382,139 @@ class JsonInputCapsuleTest {
     Assertions.assertArrayEquals(expected, res);
   }
 
+  @Test
+  void readSharedSavable() throws IOException {
+    String json =
+        "{\"myField\":[[\"com.jme3.math.Vector3f\",{\"@id\":0,\"x\":1.0,\"y\":2.0,\"z\":3.0}],{\"ref\":0}]}";
+    JsonImporter jsonImporter = new JsonImporter(new ByteArrayInputStream(json.getBytes()));
+    JsonInputCapsule jsonInputCapsule = (JsonInputCapsule) jsonImporter.getCapsule(null);
+    Savable[] res = jsonInputCapsule.readSavableArray("myField", null);
+    Assertions.assertEquals(new Vector3f(1, 2, 3), res[0]);
+    Assertions.assertSame(res[0], res[1]);
+  }
+
+  @Test
+  void loadSharedSavables() throws IOException {
+    Node node = new Node("root");
+    Box box = new Box(1, 1, 1);
+    node.attachChild(new Geometry("first", box));
+    node.attachChild(new Geometry("second", box));
+    node.addControl(new BillboardControl());
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    new JsonExporter().save(node, outputStream);
+
+    Node res =
+        (Node) new JsonImporter().load(new ByteArrayInputStream(outputStream.toByteArray()));
+    Assertions.assertSame(
+        ((Geometry) res.getChild("first")).getMesh(),
+        ((Geometry) res.getChild("second")).getMesh());
+    Assertions.assertSame(res, res.getControl(BillboardControl.class).getSpatial());
+  }
+
+  @Test
+  void loadParallel() throws IOException {
+    Node node = new Node("root");
+    Box shared = new Box(1, 1, 1);
+    for (int i = 0; i < 50; i++) {
+      Geometry geometry = new Geometry("geometry" + i, i % 2 == 0 ? shared : new Box(i, 1, 1));
+      geometry.addControl(new BillboardControl());
+      node.attachChild(geometry);
+    }
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    new JsonExporter().save(node, outputStream);
+
+    JsonImporter importer = new JsonImporter();
+    importer.setParallel(true);
+    Node res = (Node) importer.load(new ByteArrayInputStream(outputStream.toByteArray()));
+    Assertions.assertEquals(50, res.getQuantity());
+    Mesh sharedMesh = ((Geometry) res.getChild(0)).getMesh();
+    for (int i = 0; i < 50; i++) {
+      Geometry geometry = (Geometry) res.getChild(i);
+      Assertions.assertEquals("geometry" + i, geometry.getName());
+      Assertions.assertSame(res, geometry.getParent());
+      Assertions.assertSame(geometry, geometry.getControl(BillboardControl.class).getSpatial());
+      Assertions.assertEquals(i % 2 == 0, geometry.getMesh() == sharedMesh);
+    }
+  }
+
+  @Test
+  void loadDictionaryScene() throws IOException {
+    Node node = new Node("root");
+    node.attachChild(new Geometry("box", new Box(1, 1, 1)));
+    node.attachChild(new Geometry("box", new Box(1, 1, 1)));
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    JsonExporter exporter = new JsonExporter();
+    exporter.setDictionary(true);
+    exporter.save(node, outputStream);
+
+    Node res =
+        (Node) new JsonImporter().load(new ByteArrayInputStream(outputStream.toByteArray()));
+    Assertions.assertEquals(2, res.getQuantity());
+    Assertions.assertEquals("box", res.getChild(1).getName());
+    Assertions.assertTrue(res.getChild(1) instanceof Geometry);
+  }
+
+  @Test
+  void readFieldsInOrder() throws IOException {
+    String json = "{\"a\":1,\"b\":2,\"c\":3}";
+    JsonImporter jsonImporter = new JsonImporter(new ByteArrayInputStream(json.getBytes()));
+    JsonInputCapsule jsonInputCapsule = (JsonInputCapsule) jsonImporter.getCapsule(null);
+    Assertions.assertEquals(1, jsonInputCapsule.readInt("a", 0));
+    Assertions.assertEquals(3, jsonInputCapsule.readInt("c", 0));
+    Assertions.assertEquals(2, jsonInputCapsule.readInt("b", 0));
+    Assertions.assertEquals(3, jsonInputCapsule.readInt("c", 0));
+    Assertions.assertEquals(4, jsonInputCapsule.readInt("d", 4));
+    // c and b are looked up out of order, then c is found again after b, and d is missing
+    Assertions.assertEquals(2, jsonInputCapsule.getFieldHits());
+    Assertions.assertEquals(3, jsonInputCapsule.getFieldMisses());
+  }
+
+  @Test
+  void readAbsentFields() throws IOException {
+    String json = "{\"a\":1,\"b\":2,\"c\":3}";
+    JsonImporter jsonImporter = new JsonImporter(new ByteArrayInputStream(json.getBytes()));
+    JsonInputCapsule jsonInputCapsule = (JsonInputCapsule) jsonImporter.getCapsule(null);
+    Assertions.assertEquals(1, jsonInputCapsule.readInt("a", 0));
+    for (int i = 0; i < 10; i++) {
+      Assertions.assertEquals(-1, jsonInputCapsule.readInt("absent" + i, -1));
+    }
+    Assertions.assertEquals(2, jsonInputCapsule.readInt("b", 0));
+    Assertions.assertEquals(3, jsonInputCapsule.readInt("c", 0));
+    // the omitted fields leave the cursor where it is, without indexing the fields
+    Assertions.assertEquals(3, jsonInputCapsule.getFieldHits());
+    Assertions.assertEquals(10, jsonInputCapsule.getFieldMisses());
+    Assertions.assertEquals(0, jsonInputCapsule.getFieldIndexes());
+  }
+
+  @Test
+  void readFieldsOutOfOrder() throws IOException {
+    String json = "{\"a\":1,\"b\":2,\"c\":3,\"d\":4}";
+    JsonImporter jsonImporter = new JsonImporter(new ByteArrayInputStream(json.getBytes()));
+    JsonInputCapsule jsonInputCapsule = (JsonInputCapsule) jsonImporter.getCapsule(null);
+    Assertions.assertEquals(4, jsonInputCapsule.readInt("d", 0));
+    Assertions.assertEquals(3, jsonInputCapsule.readInt("c", 0));
+    Assertions.assertEquals(0, jsonInputCapsule.getFieldIndexes());
+    Assertions.assertEquals(2, jsonInputCapsule.readInt("b", 0));
+    Assertions.assertEquals(1, jsonInputCapsule.getFieldIndexes());
+    Assertions.assertEquals(1, jsonInputCapsule.readInt("a", 0));
+    Assertions.assertEquals(2, jsonInputCapsule.readInt("b", 0));
+    Assertions.assertEquals(1, jsonInputCapsule.getFieldHits());
+    Assertions.assertEquals(1, jsonInputCapsule.getFieldIndexes());
+  }
+
+  @Test
+  void readFieldsInOrderAfterSkippedEqualValues() throws IOException {
+    String json = "{\"a\":true,\"b\":true,\"c\":true,\"d\":true,\"e\":true}";
+    JsonImporter jsonImporter = new JsonImporter(new ByteArrayInputStream(json.getBytes()));
+    JsonInputCapsule jsonInputCapsule = (JsonInputCapsule) jsonImporter.getCapsule(null);
+    Assertions.assertTrue(jsonInputCapsule.readBoolean("c", false));
+    Assertions.assertTrue(jsonInputCapsule.readBoolean("d", false));
+    Assertions.assertTrue(jsonInputCapsule.readBoolean("e", false));
+    // the cursor goes on from c, not from the first field of the same value
+    Assertions.assertEquals(2, jsonInputCapsule.getFieldHits());
+    Assertions.assertEquals(1, jsonInputCapsule.getFieldMisses());
+  }
+
   @Test
   void readSavableArray2D() throws IOException {
     String json =
@@ -566,6 +728,36 @@ class JsonInputCapsuleTest {
     Assertions.assertEquals(expected, res);
   }
 
+  @Test
+  void readDirectFloatBuffer() throws IOException {
+    String json = "{\"myField\":[1.5,2.2,3.3,4.4,0]}";
+    JsonImporter importer = new JsonImporter();
+    importer.setDirectBuffers(true);
+    JsonInputCapsule jsonInputCapsule =
+        new JsonInputCapsule(new ByteArrayInputStream(json.getBytes()), importer);
+
+    FloatBuffer res = jsonInputCapsule.readFloatBuffer("myField", null);
+    Assertions.assertTrue(res.isDirect());
+    Assertions.assertEquals(0, res.position());
+    Assertions.assertEquals(5, res.limit());
+    Assertions.assertEquals(BufferUtils.createFloatBuffer(1.5f, 2.2f, 3.3f, 4.4f, 0f), res);
+  }
+
+  @Test
+  void readDirectByteBufferArrayList() throws IOException {
+    String json = "{\"myField\":[[1,2,3],[-1,2]]}";
+    JsonImporter importer = new JsonImporter();
+    importer.setDirectBuffers(true);
+    JsonInputCapsule jsonInputCapsule =
+        new JsonInputCapsule(new ByteArrayInputStream(json.getBytes()), importer);
+
+    List<ByteBuffer> res = jsonInputCapsule.readByteBufferArrayList("myField", null);
+    Assertions.assertEquals(2, res.size());
+    Assertions.assertTrue(res.get(0).isDirect());
+    Assertions.assertEquals(ByteBuffer.wrap(new byte[] {1, 2, 3}), res.get(0));
+    Assertions.assertEquals(ByteBuffer.wrap(new byte[] {-1, 2}), res.get(1));
+  }
+
   @Test
   void readIntBuffer() throws IOException {
     IntBuffer expected = IntBuffer.allocate(5);
@@ -3,6 +3,9 @@ package fr.exratio.jme.exporter;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jme3.asset.DesktopAssetManager;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.OutputCapsule;
 import com.jme3.export.Savable;
 import com.jme3.light.LightProbe;
 import com.jme3.material.Material;
@@ -11,7 +14,14 @@ import com.jme3.material.RenderState.BlendEquation;
 import com.jme3.material.RenderState.BlendEquationAlpha;
 import com.jme3.material.RenderState.BlendMode;
 import com.jme3.material.RenderState.TestFunction;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.control.BillboardControl;
+import com.jme3.scene.shape.Box;
+import com.jme3.util.BufferUtils;
 import com.jme3.util.IntMap;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.nio.ByteBuffer;
@@ -127,6 +137,21 @@ class JsonOutputCapsuleTest {
     Assertions.assertEquals("{\"myField\":1.5}", stringWriter.toString());
   }
 
+  @Test
+  void writeShortestFloat() throws IOException {
+    jGenerator.writeStartObject();
+    jsonOutputCapsule.write(Float.MIN_NORMAL, "shortest", 0f);
+    jsonOutputCapsule.write(2e23, "double", 0d);
+    jsonOutputCapsule.write(Float.NaN, "nan", 0f);
+    jsonOutputCapsule.write(new float[] {0.1f, -0f, 1e-5f}, "array", null);
+    jGenerator.writeEndObject();
+    jGenerator.close();
+    Assertions.assertEquals(
+        "{\"shortest\":1.1754944E-38,\"double\":2.0E23,\"nan\":\"NaN\","
+            + "\"array\":[0.1,-0.0,1.0E-5]}",
+        stringWriter.toString());
+  }
+
   @org.junit.jupiter.api.Test
   void writeFloatArray() throws IOException {
     float[] myValues = new float[] {1.1f, 2.2f, 3.3f};
@@ -139,6 +164,30 @@ class JsonOutputCapsuleTest {
     Assertions.assertEquals("{\"myField\":[1.1,2.2,3.3]}", stringWriter.toString());
   }
 
+  @org.junit.jupiter.api.Test
+  void writeBinaryFloatArray() throws IOException {
+    jmeExporter.setBinaryArrays(true);
+    jGenerator.writeStartObject();
+    jsonOutputCapsule.write(new float[] {1.5f, 2f, -3f}, "myField", null);
+    jGenerator.writeEndObject();
+    jGenerator.close();
+    Assertions.assertEquals(
+        "{\"myField\":{\"type\":\"f32\",\"length\":12,\"data\":\"AADAPwAAAEAAAEDA\"}}",
+        stringWriter.toString());
+  }
+
+  @org.junit.jupiter.api.Test
+  void writeBinaryDirectIntBuffer() throws IOException {
+    jmeExporter.setBinaryArrays(true);
+    jGenerator.writeStartObject();
+    jsonOutputCapsule.write(BufferUtils.createIntBuffer(1, -2, 3, 70000), "myField", null);
+    jGenerator.writeEndObject();
+    jGenerator.close();
+    Assertions.assertEquals(
+        "{\"myField\":{\"type\":\"i32\",\"length\":16,\"data\":\"AQAAAP7///8DAAAAcBEBAA==\"}}",
+        stringWriter.toString());
+  }
+
   @org.junit.jupiter.api.Test
   void writeFloatArray2D() throws IOException {
     float[][] myValues = new float[][]{new float[]{1.1f, 2.2f, 3.3f}, new float[]{-5.5f, 6.6f}};
@@ -378,7 +427,7 @@ class JsonOutputCapsuleTest {
     jGenerator.close();
     System.out.println(stringWriter.toString());
     Assertions.assertEquals(
-        "{\"myField\":[\"com.jme3.material.Material\",{\"material_def\":\"assetName\",\"render_state\":[\"com.jme3.material.RenderState\",{\"pointSprite\":true,\"wireframe\":false,\"cullMode\":\"Back\",\"depthWrite\":true,\"depthTest\":true,\"colorWrite\":true,\"blendMode\":\"Additive\",\"offsetEnabled\":false,\"offsetFactor\":0.0,\"offsetUnits\":0.0,\"stencilTest\":false,\"frontStencilStencilFailOperation\":\"Keep\",\"frontStencilDepthFailOperation\":\"Keep\",\"frontStencilDepthPassOperation\":\"Keep\",\"frontStencilStencilFailOperation\":\"Keep\",\"backStencilDepthFailOperation\":\"Keep\",\"backStencilDepthPassOperation\":\"Keep\",\"frontStencilFunction\":\"Always\",\"backStencilFunction\":\"Always\",\"blendEquation\":\"Add\",\"blendEquationAlpha\":\"InheritColor\",\"depthFunc\":\"LessOrEqual\",\"lineWidth\":1.0,\"sfactorRGB\":\"One\",\"dfactorRGB\":\"One\",\"sfactorAlpha\":\"One\",\"dfactorAlpha\":\"One\",\"applyWireFrame\":false,\"applyCullMode\":false,\"applyDepthWrite\":false,\"applyDepthTest\":true,\"applyColorWrite\":true,\"applyBlendMode\":true,\"applyPolyOffset\":false,\"applyDepthFunc\":false,\"applyLineWidth\":false}],\"is_transparent\":false,\"parameters\":{}}]}",
+        "{\"myField\":[\"com.jme3.material.Material\",{\"@id\":0,\"material_def\":\"assetName\",\"render_state\":[\"com.jme3.material.RenderState\",{\"@id\":1,\"pointSprite\":true,\"wireframe\":false,\"cullMode\":\"Back\",\"depthWrite\":true,\"depthTest\":true,\"colorWrite\":true,\"blendMode\":\"Additive\",\"offsetEnabled\":false,\"offsetFactor\":0.0,\"offsetUnits\":0.0,\"stencilTest\":false,\"frontStencilStencilFailOperation\":\"Keep\",\"frontStencilDepthFailOperation\":\"Keep\",\"frontStencilDepthPassOperation\":\"Keep\",\"frontStencilStencilFailOperation\":\"Keep\",\"backStencilDepthFailOperation\":\"Keep\",\"backStencilDepthPassOperation\":\"Keep\",\"frontStencilFunction\":\"Always\",\"backStencilFunction\":\"Always\",\"blendEquation\":\"Add\",\"blendEquationAlpha\":\"InheritColor\",\"depthFunc\":\"LessOrEqual\",\"lineWidth\":1.0,\"sfactorRGB\":\"One\",\"dfactorRGB\":\"One\",\"sfactorAlpha\":\"One\",\"dfactorAlpha\":\"One\",\"applyWireFrame\":false,\"applyCullMode\":false,\"applyDepthWrite\":false,\"applyDepthTest\":true,\"applyColorWrite\":true,\"applyBlendMode\":true,\"applyPolyOffset\":false,\"applyDepthFunc\":false,\"applyLineWidth\":false}],\"is_transparent\":false,\"parameters\":{}}]}",
         stringWriter.toString());
   }
 
@@ -415,6 +464,114 @@ class JsonOutputCapsuleTest {
         stringWriter.toString());
   }
 
+  @Test
+  void writeSharedSavable() throws IOException {
+    Vector3f shared = new Vector3f(1, 2, 3);
+    Savable[] myValues = new Savable[] {shared, shared};
+
+    jGenerator.writeStartObject();
+    jsonOutputCapsule.write(myValues, "myField", null);
+    jGenerator.writeEndObject();
+    jGenerator.close();
+    Assertions.assertEquals(
+        "{\"myField\":[[\"com.jme3.math.Vector3f\",{\"@id\":0,\"x\":1.0,\"y\":2.0,\"z\":3.0}],{\"ref\":0}]}",
+        stringWriter.toString());
+  }
+
+  /** Writes a double Double.toString does not give the shortest digits of, and its children. */
+  private static final class DoubleSavable implements Savable {
+
+    private final int childCount;
+
+    private DoubleSavable(int childCount) {
+      this.childCount = childCount;
+    }
+
+    @Override
+    public void write(JmeExporter ex) throws IOException {
+      OutputCapsule capsule = ex.getCapsule(this);
+      capsule.write(2e23, "double", 0d);
+      if (childCount > 0) {
+        Savable[] children = new Savable[childCount];
+        for (int i = 0; i < childCount; i++) {
+          children[i] = new DoubleSavable(0);
+        }
+        capsule.write(children, "children", null);
+      }
+    }
+
+    @Override
+    public void read(JmeImporter im) {}
+  }
+
+  @Test
+  void writeDictionaryShortestDouble() throws IOException {
+    Savable savable = new DoubleSavable(ParallelExport.MIN_SAVABLES);
+    for (boolean parallel : new boolean[] {false, true}) {
+      String json = save(savable, parallel, true);
+      Assertions.assertTrue(json.contains("\"double\":2.0E23"), json);
+      Assertions.assertFalse(json.contains("1.9999999999999998E23"), json);
+    }
+  }
+
+  private static String save(Savable savable, boolean parallel, boolean dictionary)
+      throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    JsonExporter exporter = new JsonExporter();
+    exporter.setParallel(parallel);
+    exporter.setDictionary(dictionary);
+    exporter.save(savable, outputStream);
+    return outputStream.toString("UTF-8");
+  }
+
+  @Test
+  void writeOmitDefaults() throws IOException {
+    jmeExporter.setOmitDefaults(true);
+    jGenerator.writeStartObject();
+    jsonOutputCapsule.write(1, "default", 1);
+    jsonOutputCapsule.write(2, "value", 1);
+    jsonOutputCapsule.write(0f, "defaultFloat", 0f);
+    jsonOutputCapsule.write(-0f, "negativeZero", 0f);
+    jsonOutputCapsule.write(new int[] {1, 2}, "defaultArray", new int[] {1, 2});
+    jsonOutputCapsule.write("text", "defaultString", "text");
+    jsonOutputCapsule.write(BlendMode.Off, "defaultEnum", BlendMode.Off);
+    jsonOutputCapsule.write((Savable) null, "nullSavable", null);
+    jGenerator.writeEndObject();
+    jGenerator.close();
+    Assertions.assertEquals("{\"value\":2,\"negativeZero\":-0.0}", stringWriter.toString());
+  }
+
+  @Test
+  void writeQuantizedDecimals() throws IOException {
+    jmeExporter.setQuantization("rounded", Quantization.decimals(2));
+    jGenerator.writeStartObject();
+    jsonOutputCapsule.write(3.14159f, "rounded", 0f);
+    jsonOutputCapsule.write(new float[] {0.123456f, -7.005f, 1e6f}, "rounded", null);
+    jsonOutputCapsule.write(3.14159f, "exact", 0f);
+    jGenerator.writeEndObject();
+    jGenerator.close();
+    Assertions.assertEquals(
+        "{\"rounded\":3.14,\"rounded\":[0.12,-7.01,1000000.0],\"exact\":3.14159}",
+        stringWriter.toString());
+  }
+
+  @Test
+  void writeParallel() throws IOException {
+    Node root = new Node("root");
+    Box shared = new Box(1, 1, 1);
+    for (int i = 0; i < 100; i++) {
+      Node child = new Node("child" + i);
+      Geometry geometry = new Geometry("geometry" + i % 3, i % 2 == 0 ? shared : new Box(i, 1, 1));
+      geometry.addControl(new BillboardControl());
+      child.attachChild(geometry);
+      root.attachChild(child);
+    }
+    root.addControl(new BillboardControl());
+
+    Assertions.assertEquals(save(root, false, false), save(root, true, false));
+    Assertions.assertEquals(save(root, false, true), save(root, true, true));
+  }
+
   @org.junit.jupiter.api.Test
   void writeSavableArrayList() throws IOException {
     ArrayList<Savable> myValues =
@@ -529,7 +686,7 @@ class JsonOutputCapsuleTest {
     jGenerator.close();
     System.out.println(stringWriter.toString());
     Assertions.assertEquals(
-        "{\"myField\":{\"key1\":[\"com.jme3.material.Material\",{\"material_def\":\"assetName\",\"render_state\":[\"com.jme3.material.RenderState\",{\"pointSprite\":true,\"wireframe\":false,\"cullMode\":\"Back\",\"depthWrite\":true,\"depthTest\":true,\"colorWrite\":true,\"blendMode\":\"Additive\",\"offsetEnabled\":false,\"offsetFactor\":0.0,\"offsetUnits\":0.0,\"stencilTest\":false,\"frontStencilStencilFailOperation\":\"Keep\",\"frontStencilDepthFailOperation\":\"Keep\",\"frontStencilDepthPassOperation\":\"Keep\",\"frontStencilStencilFailOperation\":\"Keep\",\"backStencilDepthFailOperation\":\"Keep\",\"backStencilDepthPassOperation\":\"Keep\",\"frontStencilFunction\":\"Always\",\"backStencilFunction\":\"Always\",\"blendEquation\":\"Add\",\"blendEquationAlpha\":\"InheritColor\",\"depthFunc\":\"LessOrEqual\",\"lineWidth\":1.0,\"sfactorRGB\":\"One\",\"dfactorRGB\":\"One\",\"sfactorAlpha\":\"One\",\"dfactorAlpha\":\"One\",\"applyWireFrame\":false,\"applyCullMode\":false,\"applyDepthWrite\":false,\"applyDepthTest\":true,\"applyColorWrite\":true,\"applyBlendMode\":true,\"applyPolyOffset\":false,\"applyDepthFunc\":false,\"applyLineWidth\":false}],\"is_transparent\":false,\"parameters\":{}}],\"key2\":[\"com.jme3.light.LightProbe\",{\"color\":[\"com.jme3.math.ColorRGBA\",{\"r\":1.0,\"g\":1.0,\"b\":1.0,\"a\":1.0}],\"enabled\":true,\"position\":[\"com.jme3.math.Vector3f\",{\"x\":0.0,\"y\":0.0,\"z\":0.0}],\"area\":[\"com.jme3.light.SphereProbeArea\",{\"center\":[\"com.jme3.math.Vector3f\",{\"x\":0.0,\"y\":0.0,\"z\":0.0}],\"radius\":1.0}],\"ready\":false,\"nbMipMaps\":0}]}}",
+        "{\"myField\":{\"key1\":[\"com.jme3.material.Material\",{\"@id\":0,\"material_def\":\"assetName\",\"render_state\":[\"com.jme3.material.RenderState\",{\"@id\":1,\"pointSprite\":true,\"wireframe\":false,\"cullMode\":\"Back\",\"depthWrite\":true,\"depthTest\":true,\"colorWrite\":true,\"blendMode\":\"Additive\",\"offsetEnabled\":false,\"offsetFactor\":0.0,\"offsetUnits\":0.0,\"stencilTest\":false,\"frontStencilStencilFailOperation\":\"Keep\",\"frontStencilDepthFailOperation\":\"Keep\",\"frontStencilDepthPassOperation\":\"Keep\",\"frontStencilStencilFailOperation\":\"Keep\",\"backStencilDepthFailOperation\":\"Keep\",\"backStencilDepthPassOperation\":\"Keep\",\"frontStencilFunction\":\"Always\",\"backStencilFunction\":\"Always\",\"blendEquation\":\"Add\",\"blendEquationAlpha\":\"InheritColor\",\"depthFunc\":\"LessOrEqual\",\"lineWidth\":1.0,\"sfactorRGB\":\"One\",\"dfactorRGB\":\"One\",\"sfactorAlpha\":\"One\",\"dfactorAlpha\":\"One\",\"applyWireFrame\":false,\"applyCullMode\":false,\"applyDepthWrite\":false,\"applyDepthTest\":true,\"applyColorWrite\":true,\"applyBlendMode\":true,\"applyPolyOffset\":false,\"applyDepthFunc\":false,\"applyLineWidth\":false}],\"is_transparent\":false,\"parameters\":{}}],\"key2\":[\"com.jme3.light.LightProbe\",{\"@id\":2,\"color\":[\"com.jme3.math.ColorRGBA\",{\"@id\":3,\"r\":1.0,\"g\":1.0,\"b\":1.0,\"a\":1.0}],\"enabled\":true,\"position\":[\"com.jme3.math.Vector3f\",{\"@id\":4,\"x\":0.0,\"y\":0.0,\"z\":0.0}],\"area\":[\"com.jme3.light.SphereProbeArea\",{\"@id\":5,\"center\":[\"com.jme3.math.Vector3f\",{\"@id\":6,\"x\":0.0,\"y\":0.0,\"z\":0.0}],\"radius\":1.0}],\"ready\":false,\"nbMipMaps\":0}]}}",
         stringWriter.toString());
   }
 
@@ -553,7 +710,7 @@ class JsonOutputCapsuleTest {
     jGenerator.close();
     System.out.println(stringWriter.toString());
     Assertions.assertEquals(
-        "{\"myField\":{\"1\":[\"com.jme3.material.Material\",{\"material_def\":\"assetName\",\"render_state\":[\"com.jme3.material.RenderState\",{\"pointSprite\":true,\"wireframe\":false,\"cullMode\":\"Back\",\"depthWrite\":true,\"depthTest\":true,\"colorWrite\":true,\"blendMode\":\"Additive\",\"offsetEnabled\":false,\"offsetFactor\":0.0,\"offsetUnits\":0.0,\"stencilTest\":false,\"frontStencilStencilFailOperation\":\"Keep\",\"frontStencilDepthFailOperation\":\"Keep\",\"frontStencilDepthPassOperation\":\"Keep\",\"frontStencilStencilFailOperation\":\"Keep\",\"backStencilDepthFailOperation\":\"Keep\",\"backStencilDepthPassOperation\":\"Keep\",\"frontStencilFunction\":\"Always\",\"backStencilFunction\":\"Always\",\"blendEquation\":\"Add\",\"blendEquationAlpha\":\"InheritColor\",\"depthFunc\":\"LessOrEqual\",\"lineWidth\":1.0,\"sfactorRGB\":\"One\",\"dfactorRGB\":\"One\",\"sfactorAlpha\":\"One\",\"dfactorAlpha\":\"One\",\"applyWireFrame\":false,\"applyCullMode\":false,\"applyDepthWrite\":false,\"applyDepthTest\":true,\"applyColorWrite\":true,\"applyBlendMode\":true,\"applyPolyOffset\":false,\"applyDepthFunc\":false,\"applyLineWidth\":false}],\"is_transparent\":false,\"parameters\":{}}],\"12\":[\"com.jme3.light.LightProbe\",{\"color\":[\"com.jme3.math.ColorRGBA\",{\"r\":1.0,\"g\":1.0,\"b\":1.0,\"a\":1.0}],\"enabled\":true,\"position\":[\"com.jme3.math.Vector3f\",{\"x\":0.0,\"y\":0.0,\"z\":0.0}],\"area\":[\"com.jme3.light.SphereProbeArea\",{\"center\":[\"com.jme3.math.Vector3f\",{\"x\":0.0,\"y\":0.0,\"z\":0.0}],\"radius\":1.0}],\"ready\":false,\"nbMipMaps\":0}]}}",
+        "{\"myField\":{\"1\":[\"com.jme3.material.Material\",{\"@id\":0,\"material_def\":\"assetName\",\"render_state\":[\"com.jme3.material.RenderState\",{\"@id\":1,\"pointSprite\":true,\"wireframe\":false,\"cullMode\":\"Back\",\"depthWrite\":true,\"depthTest\":true,\"colorWrite\":true,\"blendMode\":\"Additive\",\"offsetEnabled\":false,\"offsetFactor\":0.0,\"offsetUnits\":0.0,\"stencilTest\":false,\"frontStencilStencilFailOperation\":\"Keep\",\"frontStencilDepthFailOperation\":\"Keep\",\"frontStencilDepthPassOperation\":\"Keep\",\"frontStencilStencilFailOperation\":\"Keep\",\"backStencilDepthFailOperation\":\"Keep\",\"backStencilDepthPassOperation\":\"Keep\",\"frontStencilFunction\":\"Always\",\"backStencilFunction\":\"Always\",\"blendEquation\":\"Add\",\"blendEquationAlpha\":\"InheritColor\",\"depthFunc\":\"LessOrEqual\",\"lineWidth\":1.0,\"sfactorRGB\":\"One\",\"dfactorRGB\":\"One\",\"sfactorAlpha\":\"One\",\"dfactorAlpha\":\"One\",\"applyWireFrame\":false,\"applyCullMode\":false,\"applyDepthWrite\":false,\"applyDepthTest\":true,\"applyColorWrite\":true,\"applyBlendMode\":true,\"applyPolyOffset\":false,\"applyDepthFunc\":false,\"applyLineWidth\":false}],\"is_transparent\":false,\"parameters\":{}}],\"12\":[\"com.jme3.light.LightProbe\",{\"@id\":2,\"color\":[\"com.jme3.math.ColorRGBA\",{\"@id\":3,\"r\":1.0,\"g\":1.0,\"b\":1.0,\"a\":1.0}],\"enabled\":true,\"position\":[\"com.jme3.math.Vector3f\",{\"@id\":4,\"x\":0.0,\"y\":0.0,\"z\":0.0}],\"area\":[\"com.jme3.light.SphereProbeArea\",{\"@id\":5,\"center\":[\"com.jme3.math.Vector3f\",{\"@id\":6,\"x\":0.0,\"y\":0.0,\"z\":0.0}],\"radius\":1.0}],\"ready\":false,\"nbMipMaps\":0}]}}",
         stringWriter.toString());
   }
 
@@ -573,6 +730,35 @@ class JsonOutputCapsuleTest {
     Assertions.assertEquals(json, stringWriter.toString());
   }
 
+  @org.junit.jupiter.api.Test
+  void writeDirectFloatBuffer() throws IOException {
+    FloatBuffer buffer = BufferUtils.createFloatBuffer(1.5f, 2f, 3.3f, 4.3f);
+    buffer.position(2);
+    jGenerator.writeStartObject();
+    jsonOutputCapsule.write(buffer, "myField", null);
+    jGenerator.writeEndObject();
+    jGenerator.close();
+    String json = "{\"myField\":[1.5,2.0,3.3,4.3]}";
+    Assertions.assertEquals(json, stringWriter.toString());
+    Assertions.assertEquals(2, buffer.position());
+  }
+
+  @org.junit.jupiter.api.Test
+  void writeLargeDirectShortBuffer() throws IOException {
+    ShortBuffer buffer = BufferUtils.createShortBuffer(10000);
+    StringBuilder expected = new StringBuilder("{\"myField\":[");
+    for (int i = 0; i < 10000; i++) {
+      buffer.put((short) i);
+      expected.append(i).append(i < 9999 ? "," : "]}");
+    }
+    buffer.flip();
+    jGenerator.writeStartObject();
+    jsonOutputCapsule.write(buffer, "myField", null);
+    jGenerator.writeEndObject();
+    jGenerator.close();
+    Assertions.assertEquals(expected.toString(), stringWriter.toString());
+  }
+
   @org.junit.jupiter.api.Test
   void writeIntBuffer() throws IOException {
     IntBuffer buffer = IntBuffer.allocate(5);
@@ -0,0 +1,386 @@
+package fr.exratio.jme.exporter;
+
+import com.jme3.anim.TransformTrack;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.Savable;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Format;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.VertexBuffer.Usage;
+import com.jme3.scene.control.BillboardControl;
+import com.jme3.scene.shape.Box;
+import com.jme3.scene.shape.Sphere;
+import com.jme3.texture.Image;
+import com.jme3.texture.image.ColorSpace;
+import com.jme3.util.BufferUtils;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class JsonStreamInputCapsuleTest {
+
+  private static Savable load(String json) throws IOException {
+    JsonImporter importer = new JsonImporter();
+    importer.setStreaming(true);
+    return importer.load(new ByteArrayInputStream(json.getBytes()));
+  }
+
+  @Test
+  void readFieldsInOrder() throws IOException {
+    String json =
+        "[\"fr.exratio.jme.exporter.TestSavable\",{\"vector3f\":[\"com.jme3.math.Vector3f\",{\"x\":1.0,\"y\":2.0,\"z\":3.0}],\"colorRGBA\":[\"com.jme3.math.ColorRGBA\",{\"r\":1.0,\"g\":0.5,\"b\":1.0,\"a\":1.0}],\"myInt\":42,\"myString\":\"value\"}]";
+    TestSavable res = (TestSavable) load(json);
+    Assertions.assertEquals(new Vector3f(1, 2, 3), res.vector3f);
+    Assertions.assertEquals(new ColorRGBA(1, 0.5f, 1, 1), res.colorRGBA);
+    Assertions.assertEquals(42, res.myInt);
+    Assertions.assertEquals("value", res.myString);
+  }
+
+  @Test
+  void readFieldsOutOfOrder() throws IOException {
+    String json =
+        "[\"fr.exratio.jme.exporter.TestSavable\",{\"myString\":\"value\",\"unknown\":[1,[2],{\"a\":3}],\"myInt\":42,\"colorRGBA\":[\"com.jme3.math.ColorRGBA\",{\"a\":1.0,\"r\":1.0,\"g\":0.5,\"b\":1.0}],\"vector3f\":[\"com.jme3.math.Vector3f\",{\"z\":3.0,\"y\":2.0,\"x\":1.0}]}]";
+    TestSavable res = (TestSavable) load(json);
+    Assertions.assertEquals(new Vector3f(1, 2, 3), res.vector3f);
+    Assertions.assertEquals(new ColorRGBA(1, 0.5f, 1, 1), res.colorRGBA);
+    Assertions.assertEquals(42, res.myInt);
+    Assertions.assertEquals("value", res.myString);
+  }
+
+  @Test
+  void missingFieldsUseDefaultValue() throws IOException {
+    String json = "[\"fr.exratio.jme.exporter.TestSavable\",{\"myInt\":42}]";
+    TestSavable res = (TestSavable) load(json);
+    Assertions.assertNull(res.vector3f);
+    Assertions.assertEquals(42, res.myInt);
+    Assertions.assertNull(res.myString);
+  }
+
+  @Test
+  void loadExportedScene() throws IOException {
+    Node node = new Node("root");
+    Geometry geometry = new Geometry("box", new Box(1, 1, 1));
+    geometry.setLocalTranslation(1, 2, 3);
+    node.attachChild(geometry);
+    node.attachChild(new Node("child"));
+    node.setUserData("userInt", 5);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    new JsonExporter().save(node, outputStream);
+
+    JsonImporter importer = new JsonImporter();
+    importer.setStreaming(true);
+    Node res = (Node) importer.load(new ByteArrayInputStream(outputStream.toByteArray()));
+    Assertions.assertEquals("root", res.getName());
+    Assertions.assertEquals(2, res.getQuantity());
+    Assertions.assertEquals(new Vector3f(1, 2, 3), res.getChild("box").getLocalTranslation());
+    Assertions.assertTrue(res.getChild("child") instanceof Node);
+    Assertions.assertEquals(Integer.valueOf(5), res.getUserData("userInt"));
+  }
+
+  @Test
+  void loadSharedSavables() throws IOException {
+    Node node = new Node("root");
+    Box box = new Box(1, 1, 1);
+    node.attachChild(new Geometry("first", box));
+    node.attachChild(new Geometry("second", box));
+    node.addControl(new BillboardControl());
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    new JsonExporter().save(node, outputStream);
+
+    JsonImporter importer = new JsonImporter();
+    importer.setStreaming(true);
+    Node res = (Node) importer.load(new ByteArrayInputStream(outputStream.toByteArray()));
+    Assertions.assertSame(
+        ((Geometry) res.getChild("first")).getMesh(),
+        ((Geometry) res.getChild("second")).getMesh());
+    Assertions.assertSame(res, res.getControl(BillboardControl.class).getSpatial());
+  }
+
+  @Test
+  void loadDictionaryScene() throws IOException {
+    Node node = new Node("root");
+    for (int i = 0; i < 3; i++) {
+      Geometry geometry = new Geometry("box", new Box(1, 1, 1));
+      geometry.setQueueBucket(Bucket.Transparent);
+      node.attachChild(geometry);
+    }
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    JsonExporter exporter = new JsonExporter();
+    exporter.setDictionary(true);
+    exporter.setBinaryArrays(true);
+    exporter.save(node, outputStream);
+    String json = outputStream.toString("UTF-8");
+    Assertions.assertEquals(
+        json.indexOf("com.jme3.scene.Geometry"), json.lastIndexOf("com.jme3.scene.Geometry"));
+    Assertions.assertEquals(json.indexOf("\"box\""), json.lastIndexOf("\"box\""));
+
+    Node res = (Node) load(json);
+    Assertions.assertEquals(3, res.getQuantity());
+    Geometry geometry = (Geometry) res.getChild(2);
+    Assertions.assertEquals("box", geometry.getName());
+    Assertions.assertEquals(Bucket.Transparent, geometry.getQueueBucket());
+    Assertions.assertEquals(
+        ((Geometry) node.getChild(2)).getMesh().getFloatBuffer(Type.Position).rewind(),
+        geometry.getMesh().getFloatBuffer(Type.Position).rewind());
+  }
+
+  @Test
+  void loadWithoutDefaults() throws IOException {
+    Node node = new Node("root");
+    Geometry geometry = new Geometry("box", new Box(1, 1, 1));
+    geometry.setQueueBucket(Bucket.Transparent);
+    node.attachChild(geometry);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    JsonExporter exporter = new JsonExporter();
+    exporter.setOmitDefaults(true);
+    exporter.save(node, outputStream);
+    String json = outputStream.toString("UTF-8");
+    Assertions.assertFalse(json.contains("\"cull_hint\""));
+
+    for (boolean streaming : new boolean[] {false, true}) {
+      JsonImporter importer = new JsonImporter();
+      importer.setStreaming(streaming);
+      Node res = (Node) importer.load(new ByteArrayInputStream(outputStream.toByteArray()));
+      Geometry resGeometry = (Geometry) res.getChild("box");
+      Assertions.assertEquals(Bucket.Transparent, resGeometry.getQueueBucket());
+      Assertions.assertEquals(node.getCullHint(), res.getCullHint());
+      Assertions.assertEquals(
+          geometry.getMesh().getFloatBuffer(Type.Position).rewind(),
+          resGeometry.getMesh().getFloatBuffer(Type.Position).rewind());
+    }
+  }
+
+  @Test
+  void loadQuantized() throws IOException {
+    Box box = new Box(1, 2, 3);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    JsonExporter exporter = new JsonExporter();
+    exporter.setQuantization(Type.Position, Quantization.halfFloat());
+    // the other float buffers of the mesh
+    exporter.setQuantization("dataFloat", Quantization.fixedPoint(8));
+    exporter.save(box, outputStream);
+    String json = outputStream.toString("UTF-8");
+    Assertions.assertTrue(json.contains("\"f16\""));
+    Assertions.assertTrue(json.contains("\"q8\""));
+
+    for (boolean streaming : new boolean[] {false, true}) {
+      JsonImporter importer = new JsonImporter();
+      importer.setStreaming(streaming);
+      Mesh res = (Mesh) importer.load(new ByteArrayInputStream(outputStream.toByteArray()));
+      for (Type type : new Type[] {Type.Position, Type.Normal, Type.TexCoord}) {
+        FloatBuffer expected = box.getFloatBuffer(type);
+        FloatBuffer actual = res.getFloatBuffer(type);
+        Assertions.assertEquals(expected.limit(), actual.limit());
+        for (int i = 0; i < expected.limit(); i++) {
+          Assertions.assertEquals(expected.get(i), actual.get(i), 1e-2, type + " " + i);
+        }
+      }
+      Assertions.assertEquals(
+          box.getShortBuffer(Type.Index).rewind(), res.getShortBuffer(Type.Index).rewind());
+    }
+  }
+
+  @Test
+  void loadDeltaIntegers() throws IOException {
+    Mesh sphere = new Sphere(16, 16, 1);
+    VertexBuffer lod = new VertexBuffer(Type.Index);
+    lod.setupData(
+        Usage.Static,
+        1,
+        Format.UnsignedInt,
+        BufferUtils.createIntBuffer(0, 1, 2, 2, 1, 3, 2, 3, 4, 4, 3, 5, 4, 5, 6, 6, 5, 7));
+    sphere.setLodLevels(new VertexBuffer[] {sphere.getBuffer(Type.Index), lod});
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    JsonExporter exporter = new JsonExporter();
+    exporter.setDeltaIntegers(true);
+    exporter.save(sphere, outputStream);
+    Assertions.assertTrue(outputStream.toString("UTF-8").contains("\"d32\""));
+
+    for (boolean streaming : new boolean[] {false, true}) {
+      JsonImporter importer = new JsonImporter();
+      importer.setStreaming(streaming);
+      Mesh res = (Mesh) importer.load(new ByteArrayInputStream(outputStream.toByteArray()));
+      Assertions.assertEquals(
+          sphere.getShortBuffer(Type.Index).rewind(), res.getShortBuffer(Type.Index).rewind());
+      Assertions.assertEquals(lod.getData().rewind(), res.getLodLevel(1).getData().rewind());
+    }
+  }
+
+  @Test
+  void loadXorFloats() throws IOException {
+    float[] times = new float[120];
+    Vector3f[] translations = new Vector3f[times.length];
+    for (int i = 0; i < times.length; i++) {
+      times[i] = i / 30f;
+      translations[i] = new Vector3f(i, 0, 0);
+    }
+    TransformTrack track = new TransformTrack(null, times, translations, null, null);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    JsonExporter exporter = new JsonExporter();
+    exporter.setXorFloats("times", true);
+    exporter.save(track, outputStream);
+    Assertions.assertTrue(outputStream.toString("UTF-8").contains("\"x32\""));
+
+    for (boolean streaming : new boolean[] {false, true}) {
+      JsonImporter importer = new JsonImporter();
+      importer.setStreaming(streaming);
+      TransformTrack res =
+          (TransformTrack) importer.load(new ByteArrayInputStream(outputStream.toByteArray()));
+      Assertions.assertArrayEquals(times, res.getTimes());
+    }
+  }
+
+  @Test
+  void loadImageDecodedIntoDirectBuffer() throws IOException {
+    ByteBuffer data = BufferUtils.createByteBuffer(512 * 512 * 4);
+    for (int i = 0; i < data.capacity(); i++) {
+      data.put((byte) (i * 31));
+    }
+    // without mipmap sizes, which are looked for before the data
+    Image image = new Image(Image.Format.RGBA8, 512, 512, data, ColorSpace.sRGB);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    JsonExporter exporter = new JsonExporter();
+    exporter.setBinaryArrays(true);
+    exporter.save(image, outputStream);
+    byte[] json = outputStream.toByteArray();
+
+    JsonImporter importer = new JsonImporter();
+    importer.setStreaming(true);
+    importer.setDirectBuffers(true);
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+    long before = threads.getThreadAllocatedBytes(thread);
+    Image res = (Image) importer.load(new ByteArrayInputStream(json));
+    long allocated = threads.getThreadAllocatedBytes(thread) - before;
+    Assertions.assertTrue(res.getData(0).isDirect());
+    Assertions.assertEquals(data.rewind(), res.getData(0).rewind());
+    // neither the base64 text nor a copy of the bytes are on the heap
+    Assertions.assertTrue(allocated < data.capacity() / 2, allocated + " bytes allocated");
+  }
+
+  /** Byte arrays are only written by a few jME savables, such as fonts. */
+  public static class ByteArrays implements Savable {
+
+    byte[] bytes;
+    byte[][] bytes2D;
+
+    @Override
+    public void write(JmeExporter ex) throws IOException {
+      ex.getCapsule(this).write(bytes, "bytes", null);
+      ex.getCapsule(this).write(bytes2D, "bytes2D", null);
+    }
+
+    @Override
+    public void read(JmeImporter im) throws IOException {
+      bytes = im.getCapsule(this).readByteArray("bytes", null);
+      bytes2D = im.getCapsule(this).readByteArray2D("bytes2D", null);
+    }
+  }
+
+  @Test
+  void loadByteArrays() throws IOException {
+    ByteArrays byteArrays = new ByteArrays();
+    byteArrays.bytes = new byte[] {1, 2, 3, 4, 5, 6, 7, 8};
+    byteArrays.bytes2D = new byte[][] {{1, 2}, null, {3, 4, 5}};
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    new JsonExporter().save(byteArrays, outputStream);
+    Assertions.assertTrue(outputStream.toString("UTF-8").contains("\"AQIDBAUGBwg=\""));
+
+    for (boolean streaming : new boolean[] {false, true}) {
+      JsonImporter importer = new JsonImporter();
+      importer.setStreaming(streaming);
+      ByteArrays res =
+          (ByteArrays) importer.load(new ByteArrayInputStream(outputStream.toByteArray()));
+      Assertions.assertArrayEquals(byteArrays.bytes, res.bytes);
+      Assertions.assertArrayEquals(byteArrays.bytes2D, res.bytes2D);
+    }
+  }
+
+  @Test
+  void readNullFloats() throws IOException {
+    String json = "[\"com.jme3.math.Vector3f\",{\"x\":null,\"y\":[1.0],\"z\":3.0}]";
+    for (boolean streaming : new boolean[] {false, true}) {
+      JsonImporter importer = new JsonImporter();
+      importer.setStreaming(streaming);
+      Vector3f res = (Vector3f) importer.load(new ByteArrayInputStream(json.getBytes()));
+      Assertions.assertEquals(new Vector3f(0, 0, 3), res);
+    }
+  }
+
+  /** Savable arrays of two dimensions, whose rows may be null. */
+  public static class SavableArrays implements Savable {
+
+    Savable[][] savables2D;
+
+    @Override
+    public void write(JmeExporter ex) throws IOException {
+      ex.getCapsule(this).write(savables2D, "savables2D", null);
+    }
+
+    @Override
+    public void read(JmeImporter im) throws IOException {
+      savables2D = im.getCapsule(this).readSavableArray2D("savables2D", null);
+    }
+  }
+
+  @Test
+  void readNullSavableRow() throws IOException {
+    String json =
+        "[\"fr.exratio.jme.exporter.JsonStreamInputCapsuleTest$SavableArrays\",{\"savables2D\":[[[\"com.jme3.math.Vector3f\",{\"x\":1.0}]],null,[]]}]";
+    for (boolean streaming : new boolean[] {false, true}) {
+      JsonImporter importer = new JsonImporter();
+      importer.setStreaming(streaming);
+      SavableArrays res =
+          (SavableArrays) importer.load(new ByteArrayInputStream(json.getBytes()));
+      Assertions.assertArrayEquals(
+          new Savable[][] {{new Vector3f(1, 0, 0)}, null, {}}, res.savables2D);
+    }
+  }
+
+  @Test
+  void loadMeshAsDirectBuffers() throws IOException {
+    Box box = new Box(1, 2, 3);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    new JsonExporter().save(box, outputStream);
+
+    JsonImporter importer = new JsonImporter();
+    importer.setStreaming(true);
+    importer.setDirectBuffers(true);
+    Mesh res = (Mesh) importer.load(new ByteArrayInputStream(outputStream.toByteArray()));
+    FloatBuffer positions = res.getFloatBuffer(Type.Position);
+    Assertions.assertTrue(positions.isDirect());
+    Assertions.assertEquals(box.getFloatBuffer(Type.Position).rewind(), positions);
+    Assertions.assertEquals(
+        box.getShortBuffer(Type.Index).rewind(), res.getShortBuffer(Type.Index));
+  }
+
+  @Test
+  void loadBinaryMesh() throws IOException {
+    Box box = new Box(1, 2, 3);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    JsonExporter exporter = new JsonExporter();
+    exporter.setBinaryArrays(true);
+    exporter.save(box, outputStream);
+
+    JsonImporter importer = new JsonImporter();
+    importer.setStreaming(true);
+    Mesh res = (Mesh) importer.load(new ByteArrayInputStream(outputStream.toByteArray()));
+    Assertions.assertEquals(
+        box.getFloatBuffer(Type.Position).rewind(), res.getFloatBuffer(Type.Position).rewind());
+    Assertions.assertEquals(
+        box.getShortBuffer(Type.Index).rewind(), res.getShortBuffer(Type.Index).rewind());
+  }
+}
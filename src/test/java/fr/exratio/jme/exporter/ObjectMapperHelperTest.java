@@ -0,0 +1,62 @@
+package fr.exratio.jme.exporter;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.ClassIntrospector.MixInResolver;
+import com.jme3.math.Vector3f;
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ObjectMapperHelperTest {
+
+  private static void write(ObjectMapper mapper) throws IOException {
+    TestSavable savable = new TestSavable();
+    savable.vector3f = new Vector3f(1, 2, 3);
+    String json = mapper.writeValueAsString(savable);
+    Assertions.assertTrue(json.startsWith("[\"fr.exratio.jme.exporter.TestSavable\","));
+    Assertions.assertTrue(json.contains("\"vector3f\":[\"com.jme3.math.Vector3f\","));
+  }
+
+  @Test
+  void configure() throws IOException {
+    write(ObjectMapperHelper.configure(null, null, "fr.exratio.jme.exporter"));
+  }
+
+  @Test
+  void configureLazy() throws IOException {
+    write(ObjectMapperHelper.configureLazy(null, null, "fr.exratio.jme.exporter"));
+  }
+
+  /** A class the mapper of the test has its own mix-in for. */
+  public static class Point {
+
+    public int x = 1;
+    public int y = 2;
+  }
+
+  @JsonIgnoreProperties("y")
+  private abstract static class PointMixIn {}
+
+  @Test
+  void configureLazyKeepsMixIns() throws IOException {
+    ObjectMapper mapper = new ObjectMapper();
+    mapper.setMixInResolver(
+        new MixInResolver() {
+          @Override
+          public Class<?> findMixInClassFor(Class<?> cls) {
+            return cls == Point.class ? PointMixIn.class : null;
+          }
+
+          @Override
+          public MixInResolver copy() {
+            return this;
+          }
+        });
+    ObjectMapperHelper.configureLazy(mapper, null, "fr.exratio.jme.exporter");
+    write(mapper);
+    String json = mapper.writeValueAsString(new Point());
+    Assertions.assertTrue(json.contains("\"x\":1"), json);
+    Assertions.assertFalse(json.contains("\"y\""), json);
+  }
+}
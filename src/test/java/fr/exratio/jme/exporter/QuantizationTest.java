@@ -0,0 +1,40 @@
+package fr.exratio.jme.exporter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class QuantizationTest {
+
+  @Test
+  void toHalf() {
+    Assertions.assertEquals(0x3c00, Quantization.toHalf(1f));
+    Assertions.assertEquals((short) 0xc000, Quantization.toHalf(-2f));
+    Assertions.assertEquals(0x7bff, Quantization.toHalf(65504f));
+    Assertions.assertEquals(0x7c00, Quantization.toHalf(65520f));
+    Assertions.assertEquals(0x0001, Quantization.toHalf(0x1p-24f));
+    Assertions.assertEquals(0x0000, Quantization.toHalf(0x1p-26f));
+    // ties to even
+    Assertions.assertEquals(0x3c00, Quantization.toHalf(1f + 0x1p-11f));
+    Assertions.assertEquals(0x3c02, Quantization.toHalf(1f + 3 * 0x1p-11f));
+  }
+
+  @Test
+  void halfRoundTrip() {
+    for (int bits = 0; bits <= 0xffff; bits++) {
+      float value = Quantization.fromHalf((short) bits);
+      if (!Float.isNaN(value)) {
+        Assertions.assertEquals((short) bits, Quantization.toHalf(value), Float.toString(value));
+      }
+    }
+  }
+
+  @Test
+  void fixedPoint() {
+    Quantization quantization = Quantization.fixedPoint(16);
+    int fixed = quantization.toFixed(0.25f, -1f, 1f);
+    Assertions.assertEquals(0.25f, Quantization.fromFixed(fixed, -1f, 1f, 16), 2f / 65535);
+    Assertions.assertEquals(0, quantization.toFixed(-1f, -1f, 1f));
+    Assertions.assertEquals(65535, quantization.toFixed(1f, -1f, 1f));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> Quantization.fixedPoint(12));
+  }
+}
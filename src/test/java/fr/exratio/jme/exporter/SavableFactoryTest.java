@@ -0,0 +1,23 @@
+package fr.exratio.jme.exporter;
+
+import com.jme3.export.Savable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class SavableFactoryTest {
+
+  @Test
+  void newInstance() throws Exception {
+    Savable first = SavableFactory.newInstance(TestSavable.class.getName());
+    Savable second = SavableFactory.newInstance(TestSavable.class.getName());
+    Assertions.assertTrue(first instanceof TestSavable);
+    Assertions.assertTrue(second instanceof TestSavable);
+    Assertions.assertNotSame(first, second);
+  }
+
+  @Test
+  void newInstanceOfUnknownClass() {
+    Assertions.assertThrows(
+        ClassNotFoundException.class, () -> SavableFactory.newInstance("com.example.Unknown"));
+  }
+}
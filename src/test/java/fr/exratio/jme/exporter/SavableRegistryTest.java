@@ -0,0 +1,75 @@
+package fr.exratio.jme.exporter;
+
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SavableRegistryTest {
+
+  @TempDir File tempDir;
+
+  @Test
+  void generateAndLoad() throws IOException {
+    SavableRegistry.main(new String[] {tempDir.getPath(), "fr.exratio.jme.exporter"});
+    Assertions.assertTrue(new File(tempDir, SavableRegistry.RESOURCE).isFile());
+
+    try (URLClassLoader classLoader =
+        new URLClassLoader(new URL[] {tempDir.toURI().toURL()}, null)) {
+      Set<String> res = SavableRegistry.load(classLoader);
+      Assertions.assertNotNull(res);
+      Assertions.assertTrue(res.contains(TestSavable.class.getName()));
+    }
+  }
+
+  private URLClassLoader registry(String... lines) throws IOException {
+    File file = new File(tempDir, SavableRegistry.RESOURCE);
+    Files.createDirectories(file.getParentFile().toPath());
+    Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+    return new URLClassLoader(new URL[] {tempDir.toURI().toURL()}, null);
+  }
+
+  @Test
+  void findPartiallyRegistered() throws IOException {
+    // a registry of the package generated from other classes than the test ones
+    try (URLClassLoader classLoader =
+        registry("#package fr.exratio.jme.exporter", TestSavable.class.getName())) {
+      List<String> res = SavableRegistry.find(classLoader, "fr.exratio.jme.exporter");
+      Assertions.assertTrue(res.contains(TestSavable.class.getName()));
+      Assertions.assertTrue(res.contains(JsonImporterTest.BytesSavable.class.getName()));
+    }
+  }
+
+  @Test
+  void findRegisteredJar() throws IOException, URISyntaxException {
+    String jar =
+        new File(Vector3f.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+            .getName();
+    try (URLClassLoader classLoader =
+        registry("#package com.jme3", "#jar " + jar, Vector3f.class.getName())) {
+      List<String> res = SavableRegistry.find(classLoader, "com.jme3");
+      Assertions.assertTrue(res.contains(Vector3f.class.getName()));
+      // the jar the registry covers is not scanned
+      Assertions.assertFalse(res.contains(Node.class.getName()));
+    }
+  }
+
+  @Test
+  void loadWithoutRegistry() throws IOException {
+    try (URLClassLoader classLoader =
+        new URLClassLoader(new URL[] {tempDir.toURI().toURL()}, null)) {
+      Assertions.assertNull(SavableRegistry.load(classLoader));
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package fr.exratio.jme.exporter;
+
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ShortestDecimalTest {
+
+  private final char[] chars = new char[ShortestDecimal.MAX_LENGTH];
+
+  private String format(float value) {
+    return new String(chars, 0, ShortestDecimal.format(value, chars, 0));
+  }
+
+  private String format(double value) {
+    return new String(chars, 0, ShortestDecimal.format(value, chars, 0));
+  }
+
+  @Test
+  void formatLikeToString() {
+    Assertions.assertEquals("0.0", format(0f));
+    Assertions.assertEquals("-0.0", format(-0f));
+    Assertions.assertEquals("100.0", format(100f));
+    Assertions.assertEquals("0.001", format(0.001f));
+    Assertions.assertEquals("1.0E-4", format(0.0001f));
+    Assertions.assertEquals("1234567.0", format(1234567f));
+    Assertions.assertEquals("1.0E7", format(1e7f));
+    Assertions.assertEquals("-12.375", format(-12.375f));
+    Assertions.assertEquals("1.4E-45", format(Float.MIN_VALUE));
+    Assertions.assertEquals("3.4028235E38", format(Float.MAX_VALUE));
+    Assertions.assertEquals("4.9E-324", format(Double.MIN_VALUE));
+    Assertions.assertEquals("1.7976931348623157E308", format(Double.MAX_VALUE));
+  }
+
+  @Test
+  void formatShortest() {
+    // Float.toString and Double.toString write more digits before Java 19
+    Assertions.assertEquals("1.1754944E-38", format(Float.MIN_NORMAL));
+    Assertions.assertEquals("2.0E23", format(2e23));
+    Assertions.assertEquals("1.0E23", format(1e23));
+  }
+
+  @Test
+  void formatRoundTrip() {
+    Random random = new Random(11);
+    for (int i = 0; i < 200_000; i++) {
+      float floatValue = Float.intBitsToFloat(random.nextInt());
+      if (Float.isFinite(floatValue)) {
+        String text = format(floatValue);
+        Assertions.assertEquals(floatValue, Float.parseFloat(text), text);
+        Assertions.assertTrue(text.length() <= Float.toString(floatValue).length(), text);
+      }
+      double doubleValue = Double.longBitsToDouble(random.nextLong());
+      if (Double.isFinite(doubleValue)) {
+        String text = format(doubleValue);
+        Assertions.assertEquals(doubleValue, Double.parseDouble(text), text);
+        Assertions.assertTrue(text.length() <= Double.toString(doubleValue).length(), text);
+      }
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package fr.exratio.jme.exporter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class XorFloatsTest {
+
+  private static float[] roundTrip(float[] values) throws IOException {
+    return XorFloats.decode(XorFloats.encode(FloatBuffer.wrap(values)));
+  }
+
+  @Test
+  void encodeRepeatedValuesInOneBit() throws IOException {
+    float[] values = new float[64];
+    Arrays.fill(values, 12.5f);
+    ByteBuffer bytes = XorFloats.encode(FloatBuffer.wrap(values));
+    // the count, the first value then a bit per value
+    Assertions.assertEquals(4 + 4 + 8, bytes.remaining());
+    Assertions.assertArrayEquals(values, XorFloats.decode(bytes));
+  }
+
+  @Test
+  void roundTrip() throws IOException {
+    Random random = new Random(5);
+    float[] values = new float[10_000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] =
+          i % 10 == 0 ? Float.intBitsToFloat(random.nextInt()) : (float) Math.sin(i / 100.0);
+    }
+    values[1] = Float.NaN;
+    values[2] = -0f;
+    values[3] = Float.NEGATIVE_INFINITY;
+    float[] res = roundTrip(values);
+    for (int i = 0; i < values.length; i++) {
+      Assertions.assertEquals(
+          Float.floatToRawIntBits(values[i]), Float.floatToRawIntBits(res[i]), "index " + i);
+    }
+    Assertions.assertArrayEquals(new float[0], roundTrip(new float[0]));
+    Assertions.assertArrayEquals(new float[] {1f}, roundTrip(new float[] {1f}));
+  }
+
+  @Test
+  void decodeTruncated() {
+    ByteBuffer bytes = XorFloats.encode(FloatBuffer.wrap(new float[] {1f, 2f, 3f}));
+    bytes.limit(bytes.limit() - 1);
+    Assertions.assertThrows(IOException.class, () -> XorFloats.decode(bytes));
+  }
+}